@@ -0,0 +1,234 @@
+package org.lyf.testapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lyf.testapi.dto.Assistant;
+import org.lyf.testapi.dto.Challenge;
+import org.lyf.testapi.dto.PlayerInfo;
+import org.lyf.testapi.dto.Settings;
+import org.lyf.testapi.dto.UserGameDataPatchRequest;
+import org.lyf.testapi.dto.UserGameDataRequest;
+import org.lyf.testapi.dto.UserGameDataResponse;
+import org.lyf.testapi.entity.UserGameData;
+import org.lyf.testapi.mapper.UserGameDataMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserGameDataService 热点路径基准测试
+ * 数据库访问由内存中的 StubMapper 代替，只衡量服务层自身的CPU和内存分配开销；
+ * storageFormat 参数分别测试三个JSON列和紧凑格式（state_blob）两种存储方式
+ * 运行方式见 pom.xml 中的 jmh profile，默认开启 gc profiler（输出 gc.alloc.rate.norm 即每次调用分配的字节数）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserGameDataServiceBenchmark {
+
+    private static final String USER_ID = "oBenchmarkUser0000000000000";
+
+    @Param({"json", "binary"})
+    private String storageFormat;
+
+    private UserGameDataService service;
+    private UserGameDataRequest request;
+    private UserGameData storedEntity;
+
+    @Setup
+    public void setup() throws Exception {
+        request = buildRequest();
+
+        UserGameDataService encoder = newService(new StubMapper(null), storageFormat);
+        UserGameDataRequest copy = buildRequest();
+        storedEntity = encoder.convertToEntity(copy);
+        storedEntity.setId(1L);
+        storedEntity.setVersion(System.currentTimeMillis());
+        storedEntity.setLastUpdateTime(LocalDateTime.now());
+        storedEntity.setCreateTime(LocalDateTime.now());
+
+        service = newService(new StubMapper(storedEntity), storageFormat);
+    }
+
+    /**
+     * GET /api/game/user-data 的服务层开销（读缓存关闭）
+     */
+    @Benchmark
+    public UserGameDataResponse getUserGameData() {
+        return service.getUserGameData(USER_ID);
+    }
+
+    /**
+     * 实体转换为响应：解析三个JSON列或解码 state_blob
+     */
+    @Benchmark
+    public UserGameDataResponse convertToResponse() {
+        return service.convertToResponse(storedEntity);
+    }
+
+    /**
+     * 保存请求转换为实体：序列化三个JSON列或编码 state_blob
+     */
+    @Benchmark
+    public UserGameData convertToEntity() throws Exception {
+        return service.convertToEntity(request);
+    }
+
+    @Benchmark
+    public String validateRequest() {
+        return service.validateRequest(request);
+    }
+
+    @Benchmark
+    public UserGameDataResponse createDefaultData() {
+        return service.createDefaultData(USER_ID);
+    }
+
+    /**
+     * POST /api/game/user-data 的服务层开销（校验、转换、upsert）
+     */
+    @Benchmark
+    public UserGameDataService.SaveResult saveUserGameData() {
+        return service.saveUserGameData(request);
+    }
+
+    /**
+     * PATCH /api/game/user-data 的服务层开销（列级更新成功的路径）
+     */
+    @Benchmark
+    public UserGameDataService.SaveResult patchUserGameData() {
+        UserGameDataPatchRequest patch = new UserGameDataPatchRequest();
+        patch.setUserId(USER_ID);
+        patch.setMoneyDelta(10L);
+        return service.patchUserGameData(patch);
+    }
+
+    private static UserGameDataService newService(UserGameDataMapper mapper, String storageFormat) {
+        // 写缓冲、批量写入、读缓存、响应体缓存、重复保存检测均为默认的关闭状态
+        UserGameDataBatchWriter batchWriter = new UserGameDataBatchWriter(null, null, mapper);
+        UserGameDataCache cache = new UserGameDataCache();
+        UserGameDataBodyCache bodyCache = new UserGameDataBodyCache(new ObjectMapper());
+        UserGameDataFingerprints fingerprints = new UserGameDataFingerprints();
+        Leaderboard leaderboard = new Leaderboard(mapper);
+        UserGameDataWriteBuffer writeBuffer = new UserGameDataWriteBuffer(mapper, batchWriter, cache, bodyCache,
+                fingerprints, leaderboard);
+        UserGameDataService service = new UserGameDataService(mapper, writeBuffer, batchWriter, cache, bodyCache,
+                fingerprints, new OfflineIncomeCalculator(), leaderboard, new DefaultUserGameData(new ObjectMapper()),
+                new ApiMetrics());
+        ReflectionTestUtils.setField(service, "storageFormat", storageFormat);
+        return service;
+    }
+
+    private static UserGameDataRequest buildRequest() {
+        UserGameDataRequest request = new UserGameDataRequest();
+        request.setUserId(USER_ID);
+
+        PlayerInfo playerInfo = new PlayerInfo();
+        playerInfo.setPlayerLevel(37);
+        playerInfo.setMoney(1_234_567L);
+        playerInfo.setClickRewardBase(420L);
+        playerInfo.setClickMultiplier(2.5);
+        playerInfo.setUpgradeCost(9_800L);
+        playerInfo.setTrainingCount(3);
+        request.setPlayerInfo(playerInfo);
+
+        List<Assistant> assistants = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            Assistant assistant = new Assistant();
+            assistant.setId(i);
+            assistant.setUnlocked(i <= 3);
+            assistant.setLevel(i <= 3 ? 10 * i : 0);
+            assistants.add(assistant);
+        }
+        request.setAssistants(assistants);
+
+        List<Challenge> challenges = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Challenge challenge = new Challenge();
+            challenge.setId(i);
+            challenge.setCompleted(i % 2 == 1);
+            challenges.add(challenge);
+        }
+        request.setChallenges(challenges);
+
+        Settings settings = Settings.createDefault();
+        settings.setMusicEnabled(false);
+        request.setSettings(settings);
+        return request;
+    }
+
+    /**
+     * 不访问数据库的 Mapper：查询总是返回同一条数据，写入总是成功
+     */
+    private static class StubMapper implements UserGameDataMapper {
+
+        private final UserGameData stored;
+
+        StubMapper(UserGameData stored) {
+            this.stored = stored;
+        }
+
+        @Override
+        public UserGameData selectByUserId(String userId) {
+            return stored;
+        }
+
+        @Override
+        public int insert(UserGameData userGameData) {
+            return 1;
+        }
+
+        @Override
+        public int upsert(UserGameData userGameData, Long expectedVersion) {
+            return 2;
+        }
+
+        @Override
+        public Long selectVersionByUserId(String userId) {
+            return stored != null ? stored.getVersion() : null;
+        }
+
+        @Override
+        public int patchByUserId(UserGameDataPatchRequest patch, long version, LocalDateTime lastUpdateTime,
+                                 LocalDateTime incomeStartTime) {
+            return 1;
+        }
+
+        @Override
+        public UserGameData selectFingerprintByUserId(String userId) {
+            return stored;
+        }
+
+        @Override
+        public List<UserGameData> selectJsonStatePage(long afterId, int limit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int updateStateBlob(Long id, Long version, byte[] stateBlob) {
+            return 1;
+        }
+
+        @Override
+        public List<UserGameData> selectScorePage(long afterId, int limit) {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.lyf.testapi.config;
+
+import lombok.RequiredArgsConstructor;
+import org.lyf.testapi.service.AssetCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * 静态资源内存缓存拦截器
+ * 在静态资源处理器之前执行：文件在 AssetCache 中（或可以放入）时直接从内存返回并结束请求，
+ * 否则（缓存未开启、文件过大或不存在、Range 请求）交给静态资源处理器从磁盘读取
+ * 有gzip版本且请求头 Accept-Encoding 接受gzip时返回gzip版本
+ */
+@Component
+@RequiredArgsConstructor
+public class AssetCacheInterceptor implements HandlerInterceptor {
+
+    /**
+     * 与 WebMvcConfig 中静态资源的缓存时间一致
+     */
+    private static final String CACHE_CONTROL = "max-age=3600";
+
+    private final AssetCache assetCache;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 只处理静态资源处理器的请求，视频等由控制器处理的路径不经过缓存
+        if (!assetCache.isEnabled() || !(handler instanceof ResourceHttpRequestHandler)) {
+            return true;
+        }
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return true;
+        }
+        if (request.getHeader(HttpHeaders.RANGE) != null) {
+            return true;
+        }
+        Object path = request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        if (!(path instanceof String) || ((String) path).isEmpty()) {
+            return true;
+        }
+        AssetCache.Asset asset = assetCache.get((String) path);
+        if (asset == null) {
+            return true;
+        }
+
+        write(asset, CACHE_CONTROL, request, response);
+        return false;
+    }
+
+    /**
+     * 返回缓存的文件：按 Accept-Encoding 选择gzip版本，If-None-Match / If-Modified-Since 命中时返回304
+     *
+     * @param cacheControl Cache-Control 响应头
+     */
+    public void write(AssetCache.Asset asset, String cacheControl, HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        boolean gzip = asset.getGzipBytes() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (asset.getGzipBytes() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        String etag = gzip ? asset.getGzipEtag() : asset.getEtag();
+        // If-None-Match / If-Modified-Since 命中时已设置304
+        if (new ServletWebRequest(request, response).checkNotModified(etag, asset.getLastModified())) {
+            return;
+        }
+
+        byte[] body = gzip ? asset.getGzipBytes() : asset.getBytes();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, asset.getLastModified());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setContentType(asset.getContentType());
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            assetCache.recordGzipResponse();
+        }
+        response.setContentLength(body.length);
+        if (!"HEAD".equals(request.getMethod())) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    /**
+     * 请求头 Accept-Encoding 是否接受gzip
+     * 明确列出的 gzip 优先于通配符 *，q=0 表示不接受
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=") && param.substring(2).trim().matches("0(\\.0{0,3})?")) {
+                    accepted = false;
+                }
+            }
+            if ("gzip".equals(name) || "x-gzip".equals(name)) {
+                return accepted;
+            }
+            if ("*".equals(name)) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+}
@@ -0,0 +1,48 @@
+package org.lyf.testapi.config;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.lyf.testapi.service.ApiMetrics;
+import org.lyf.testapi.service.RequestDbTime;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mapper调用耗时统计插件
+ * 按语句ID记录每次查询和更新的耗时（MyBatis自动配置会注册容器中的插件），并累加到当前请求的数据库耗时；
+ * 批量执行器下 update 只是加入批次，实际执行耗时记录在 flushStatements 上
+ */
+@Component
+@RequiredArgsConstructor
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "flushStatements", args = {})
+})
+public class MapperMetricsInterceptor implements Interceptor {
+
+    private static final String FLUSH_STATEMENTS = "flushStatements";
+
+    private final ApiMetrics apiMetrics;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            Object[] args = invocation.getArgs();
+            String statementId = args.length > 0 ? ((MappedStatement) args[0]).getId() : FLUSH_STATEMENTS;
+            long duration = System.nanoTime() - start;
+            apiMetrics.recordMapperCall(statementId, duration);
+            RequestDbTime.add(duration);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.lyf.testapi.config;
+
+import lombok.RequiredArgsConstructor;
+import org.lyf.testapi.service.AccessLog;
+import org.lyf.testapi.service.ApiMetrics;
+import org.lyf.testapi.service.RequestDbTime;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求耗时统计拦截器
+ * 按"请求方法 路径模板"记录每个请求从进入拦截器到完成的耗时，并写一条访问日志；
+ * 异步请求在首次分发时记录开始时间，在异步结果写出后的再次分发完成时记录
+ * 需要排在token拦截器之前，token校验失败的请求也会被统计
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestMetricsInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".start";
+    private static final String DB_TIME_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".dbTime";
+
+    /**
+     * 响应体为 Result 时的业务响应码，由 ResultCodeAdvice 设置
+     */
+    static final String RESULT_CODE_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".resultCode";
+
+    private final ApiMetrics apiMetrics;
+    private final AccessLog accessLog;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+            AtomicLong dbTime = new AtomicLong();
+            request.setAttribute(DB_TIME_ATTRIBUTE, dbTime);
+            RequestDbTime.bind(dbTime);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        RequestDbTime.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestDbTime.clear();
+        // 异常转发到 /error 的分发不重复统计
+        if (request.getDispatcherType() == DispatcherType.ERROR) {
+            return;
+        }
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (start == null) {
+            return;
+        }
+        long duration = System.nanoTime() - (Long) start;
+        String endpoint = endpoint(request);
+        apiMetrics.recordRequest(endpoint, duration);
+
+        AtomicLong dbTime = (AtomicLong) request.getAttribute(DB_TIME_ATTRIBUTE);
+        accessLog.record(endpoint, (String) request.getAttribute("openid"),
+                ex != null ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(),
+                (Integer) request.getAttribute(RESULT_CODE_ATTRIBUTE), duration, dbTime != null ? dbTime.get() : 0);
+    }
+
+    /**
+     * 使用路径模板而不是实际路径，避免路径参数产生过多的统计项
+     */
+    private static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "UNMATCHED");
+    }
+}
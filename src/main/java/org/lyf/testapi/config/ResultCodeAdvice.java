@@ -0,0 +1,36 @@
+package org.lyf.testapi.config;
+
+import org.lyf.testapi.dto.Result;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * 记录响应的业务响应码
+ * 接口的HTTP状态码大多为200，实际结果在 Result.code 中；写出响应体前把它保存到请求属性，供访问日志使用
+ * （异步模式下同样在结果写出时执行）
+ */
+@ControllerAdvice
+public class ResultCodeAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body instanceof Result && request instanceof ServletServerHttpRequest) {
+            ((ServletServerHttpRequest) request).getServletRequest()
+                    .setAttribute(RequestMetricsInterceptor.RESULT_CODE_ATTRIBUTE, ((Result<?>) body).getCode());
+        }
+        return body;
+    }
+}
@@ -3,10 +3,12 @@ package org.lyf.testapi.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.lyf.testapi.service.ApiMetrics;
 import org.lyf.testapi.service.WechatLoginService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -23,10 +25,16 @@ import java.util.Map;
 public class TokenInterceptor implements HandlerInterceptor {
 
     private final WechatLoginService wechatLoginService;
+    private final ApiMetrics apiMetrics;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 异步请求完成后的再次分发，token已在首次分发时验证过
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
         // 排除登录接口，不需要token验证
         String requestURI = request.getRequestURI();
         if (requestURI.equals("/api/game/wx-login")) {
@@ -43,22 +51,27 @@ public class TokenInterceptor implements HandlerInterceptor {
         }
 
         if (token == null || token.isEmpty()) {
+            apiMetrics.recordTokenMissing();
             log.warn("token未提供, uri:{}", requestURI);
             writeErrorResponse(response, 401, "token未提供");
             return false;
         }
 
         // 通过token获取openid
+        long start = System.nanoTime();
         String openid = wechatLoginService.getOpenidByToken(token);
-        if (openid == null || openid.isEmpty()) {
+        boolean valid = openid != null && !openid.isEmpty();
+        apiMetrics.recordTokenValidation(valid, System.nanoTime() - start);
+        if (!valid) {
             log.warn("token无效或已过期, token:{}, uri:{}", token, requestURI);
             // 返回401错误，提示客户端需要重新登录
             writeErrorResponse(response, 401, "token无效或已过期，请重新登录");
             return false;
         }
 
-        // 将openid存储到request属性中，供后续使用
+        // 将openid和token存储到request属性中，供后续使用
         request.setAttribute("openid", openid);
+        request.setAttribute("token", token);
         log.debug("token验证成功, openid:{}, uri:{}", openid, requestURI);
         return true;
     }
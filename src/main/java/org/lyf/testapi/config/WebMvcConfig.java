@@ -16,6 +16,8 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebMvcConfig implements WebMvcConfigurer {
 
     private final TokenInterceptor tokenInterceptor;
+    private final RequestMetricsInterceptor requestMetricsInterceptor;
+    private final AssetCacheInterceptor assetCacheInterceptor;
 
     /**
      * 静态资源路径配置
@@ -27,6 +29,12 @@ public class WebMvcConfig implements WebMvcConfigurer {
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // 耗时统计排在token校验之前，校验失败的请求也计入
+        registry.addInterceptor(requestMetricsInterceptor)
+                .addPathPatterns("/**");
+        // 静态资源命中内存缓存时直接返回，不再由静态资源处理器读取磁盘
+        registry.addInterceptor(assetCacheInterceptor)
+                .addPathPatterns("/resources/**");
         registry.addInterceptor(tokenInterceptor)
                 .addPathPatterns("/api/game/**")
                 .excludePathPatterns("/api/game/wx-login"); // 排除登录接口
@@ -51,7 +59,8 @@ public class WebMvcConfig implements WebMvcConfigurer {
             location = "file:" + location;
         }
         
-        // 配置视频资源路径：/resources/assist/{challengeId}/success.mp4
+        // 图片、音频等静态资源（开启 app.asset-cache 时小文件由 AssetCacheInterceptor 从内存返回）；挑战成功视频 /resources/assist/{challengeId}/success.mp4 由 MediaController 处理（支持Range）
+        // 地址不带版本，只能缓存1小时；带内容哈希、可永久缓存的地址 /assets/{hash}/** 见 AssetController
         registry.addResourceHandler("/resources/**")
                 .addResourceLocations(location)
                 .setCachePeriod(3600); // 缓存1小时
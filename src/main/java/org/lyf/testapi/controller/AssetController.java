@@ -0,0 +1,110 @@
+package org.lyf.testapi.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.lyf.testapi.config.AssetCacheInterceptor;
+import org.lyf.testapi.dto.Result;
+import org.lyf.testapi.service.AssetCache;
+import org.lyf.testapi.service.AssetManifest;
+import org.lyf.testapi.service.ResourceFiles;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 带内容哈希的静态资源控制器
+ * 客户端启动时获取资源清单 /assets/manifest.json，之后通过清单中的地址 /assets/{hash}/{path} 加载资源；
+ * 地址随文件内容变化，因此可以返回 Cache-Control: immutable, max-age=1年，客户端不再重新验证
+ * 原地址 /resources/** 保持不变（缓存1小时），兼容未使用清单的客户端
+ */
+@Controller
+@RequiredArgsConstructor
+public class AssetController {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private final AssetManifest assetManifest;
+    private final AssetCache assetCache;
+    private final AssetCacheInterceptor assetCacheInterceptor;
+    private final ResourceFiles resourceFiles;
+    private final MediaController mediaController;
+
+    /**
+     * 资源清单
+     * GET /assets/manifest.json
+     * 文件变化后清单随之变化，响应带 ETag（清单版本号），客户端可以用 If-None-Match 检查是否变化
+     *
+     * @return 清单版本号和 文件相对路径 -> 带哈希的地址
+     */
+    @GetMapping("/assets/manifest.json")
+    @ResponseBody
+    public Result<AssetManifest.Manifest> manifest(HttpServletRequest request, HttpServletResponse response) {
+        AssetManifest.Manifest manifest = assetManifest.getManifest();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + manifest.getVersion() + "\"")) {
+            return null;
+        }
+        return Result.success(manifest);
+    }
+
+    /**
+     * 带哈希的资源
+     * GET /assets/{hash}/{path}
+     * 哈希与文件当前内容不一致（客户端的清单已过期）时重定向到当前地址
+     *
+     * @param hash 内容哈希（MD5前8位）
+     */
+    @GetMapping("/assets/{hash:[0-9a-f]{8}}/**")
+    public void asset(@PathVariable String hash, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        String lookupPath = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String relativePath = lookupPath.substring((AssetManifest.URL_PREFIX + hash + "/").length());
+
+        // Range 请求和不在内存缓存中的文件（大文件、缓存未开启）从磁盘返回
+        AssetCache.Asset asset = request.getHeader(HttpHeaders.RANGE) == null ? assetCache.get(relativePath) : null;
+        if (asset != null) {
+            String currentHash = asset.getEtag().substring(1, 1 + AssetManifest.HASH_LENGTH);
+            if (!redirectIfStale(hash, currentHash, relativePath, response)) {
+                assetCacheInterceptor.write(asset, IMMUTABLE, request, response);
+            }
+            return;
+        }
+
+        ResourceFiles.ResourceFile file = resourceFiles.get(relativePath);
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String currentHash = file.getContentHash().substring(0, AssetManifest.HASH_LENGTH);
+        if (!redirectIfStale(hash, currentHash, relativePath, response)) {
+            String contentType = MediaTypeFactory.getMediaType(file.getPath().getFileName().toString())
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+            mediaController.serve(file, contentType, IMMUTABLE, request, response);
+        }
+    }
+
+    /**
+     * 请求的哈希不是当前内容的哈希时重定向到当前地址（不能把新内容以旧地址永久缓存）
+     *
+     * @return 是否已重定向
+     */
+    private static boolean redirectIfStale(String hash, String currentHash, String relativePath,
+                                           HttpServletResponse response) {
+        if (hash.equals(currentHash)) {
+            return false;
+        }
+        response.setStatus(HttpServletResponse.SC_FOUND);
+        response.setHeader(HttpHeaders.LOCATION, AssetManifest.url(relativePath, currentHash));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        return true;
+    }
+}
@@ -3,21 +3,43 @@ package org.lyf.testapi.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.lyf.testapi.dto.ClickBatchRequest;
 import org.lyf.testapi.dto.Result;
+import org.lyf.testapi.dto.UserGameDataPatchRequest;
 import org.lyf.testapi.dto.UserGameDataRequest;
 import org.lyf.testapi.dto.UserGameDataResponse;
 import org.lyf.testapi.dto.WxLoginRequest;
 import org.lyf.testapi.dto.WxLoginResponse;
+import org.lyf.testapi.service.AsyncRequestExecutor;
+import org.lyf.testapi.service.ClickEconomyEngine;
+import org.lyf.testapi.service.DefaultUserGameData;
+import org.lyf.testapi.service.Leaderboard;
+import org.lyf.testapi.service.OfflineIncomeCalculator;
+import org.lyf.testapi.service.RankedIndex;
+import org.lyf.testapi.service.UserGameDataBodyCache;
 import org.lyf.testapi.service.UserGameDataService;
 import org.lyf.testapi.service.WechatLoginService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 /**
  * 游戏数据控制器
+ * 开启 app.async.enabled 后各接口返回 DeferredResult：数据库操作在 AsyncRequestExecutor 的线程池中执行，
+ * 微信登录在 WechatLoginService 的隔离线程池中执行，Tomcat线程不等待；线程池队列已满或处理超时返回503
+ * 未开启时接口直接返回 Result，与同步处理完全相同
  */
 @RestController
 @RequestMapping("/api/game")
@@ -25,8 +47,19 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class GameController {
 
+    /**
+     * 排行榜接口每次最多返回的条数
+     */
+    private static final int MAX_LEADERBOARD_LIMIT = 100;
+
     private final UserGameDataService userGameDataService;
     private final WechatLoginService wechatLoginService;
+    private final AsyncRequestExecutor asyncRequestExecutor;
+    private final UserGameDataBodyCache userGameDataBodyCache;
+    private final ClickEconomyEngine clickEconomyEngine;
+    private final OfflineIncomeCalculator offlineIncomeCalculator;
+    private final Leaderboard leaderboard;
+    private final DefaultUserGameData defaultUserGameData;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
@@ -34,101 +67,132 @@ public class GameController {
      * POST /api/game/wx-login
      *
      * @param wxLoginRequest 微信登录请求
-     * @return 登录结果，包含token和过期时间
+     * @return 登录结果，包含token和过期时间（异步模式下为 DeferredResult）
      */
     @PostMapping("/wx-login")
-    public Result<WxLoginResponse> wxLogin(@RequestBody WxLoginRequest wxLoginRequest) {
-        String interfaceName = "/api/game/wx-login";
-        String method = "POST";
-        
+    public Object wxLogin(@RequestBody WxLoginRequest wxLoginRequest) {
         try {
-            log.debug("========== 接口调用开始 ==========");
-            log.debug("接口名称: {}, 请求方式: {}", interfaceName, method);
-            
             if (wxLoginRequest == null || wxLoginRequest.getCode() == null || wxLoginRequest.getCode().trim().isEmpty()) {
-                Result<WxLoginResponse> result = Result.badRequest("code参数不能为空");
                 log.warn("微信登录失败: code参数不能为空");
-                log.debug("返回结果: code={}, message={}", result.getCode(), result.getMessage());
-                log.debug("========== 接口调用结束 ==========");
-                return result;
+                return Result.badRequest("code参数不能为空");
             }
 
             // 调用微信登录服务
-            WechatLoginService.TokenResult tokenResult = wechatLoginService.loginByCode(wxLoginRequest.getCode());
-            
-            if (!tokenResult.getSuccess()) {
-                Result<WxLoginResponse> result = Result.error(401, tokenResult.getError());
-                log.warn("微信登录失败: {}", tokenResult.getError());
-                log.debug("返回结果: code={}, message={}", result.getCode(), result.getMessage());
-                log.debug("========== 接口调用结束 ==========");
-                return result;
-            }
-
-            // 构建响应
-            WxLoginResponse wxLoginResponse = new WxLoginResponse();
-            wxLoginResponse.setToken(tokenResult.getToken());
-            wxLoginResponse.setExpiresIn(tokenResult.getExpiresIn());
-            
-            Result<WxLoginResponse> result = Result.success(wxLoginResponse);
-            
-            log.info("微信登录成功, token:{}", tokenResult.getToken());
-            log.debug("返回结果: code={}, message={}, data存在={}", 
-                result.getCode(), result.getMessage(), result.getData() != null);
-            log.debug("========== 接口调用结束 ==========");
-            
-            return result;
+            if (asyncRequestExecutor.isEnabled()) {
+                DeferredResult<Result<WxLoginResponse>> deferred = newDeferredResult();
+                wechatLoginService.loginByCodeAsync(wxLoginRequest.getCode())
+                        .thenApply(this::toLoginResult)
+                        .exceptionally(e -> {
+                            log.error("微信登录接口异常", e);
+                            return Result.error(500, "服务器内部错误");
+                        })
+                        .thenAccept(deferred::setResult);
+                return deferred;
+            }
+            return toLoginResult(wechatLoginService.loginByCode(wxLoginRequest.getCode()));
         } catch (Exception e) {
             log.error("微信登录接口异常", e);
-            Result<WxLoginResponse> result = Result.error(500, "服务器内部错误");
-            log.debug("返回结果: code={}, message={}", result.getCode(), result.getMessage());
-            log.debug("========== 接口调用结束 ==========");
-            return result;
+            return Result.error(500, "服务器内部错误");
         }
     }
 
+    /**
+     * 根据登录结果构建响应
+     */
+    private Result<WxLoginResponse> toLoginResult(WechatLoginService.TokenResult tokenResult) {
+        if (!tokenResult.getSuccess()) {
+            // 微信接口不可用（熔断、繁忙）返回503，客户端可稍后重试；其他登录失败返回401
+            log.warn("微信登录失败: {}", tokenResult.getError());
+            return Result.error(tokenResult.isUnavailable() ? 503 : 401, tokenResult.getError());
+        }
+
+        // 构建响应
+        WxLoginResponse wxLoginResponse = new WxLoginResponse();
+        wxLoginResponse.setToken(tokenResult.getToken());
+        wxLoginResponse.setExpiresIn(tokenResult.getExpiresIn());
+
+        log.info("微信登录成功, token:{}", tokenResult.getToken());
+        return Result.success(wxLoginResponse);
+    }
+
     /**
      * 获取用户游戏数据接口
      * GET /api/game/user-data
      * 注意：需要通过请求头传递token（X-Token 或 Authorization: Bearer {token}）
      *
+     * 开启 app.user-data-etag.enabled 后响应带有ETag，请求头 If-None-Match 与当前数据一致时返回304（无响应体）
+     *
      * @param request HTTP请求对象
-     * @return 用户游戏数据
+     * @return 用户游戏数据（异步模式下为 DeferredResult）
      */
     @GetMapping("/user-data")
-    public Result<UserGameDataResponse> getUserData(HttpServletRequest request) {
-        String interfaceName = "/api/game/user-data";
-        String method = "GET";
-        
+    public Object getUserData(HttpServletRequest request) {
+        String openid = (String) request.getAttribute("openid");
+        if (userGameDataBodyCache.isEnabled() && openid != null && !openid.trim().isEmpty()) {
+            String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+            return dispatchDb(() -> getUserDataWithEtag(openid, ifNoneMatch));
+        }
+        return dispatchDb(() -> doGetUserData(openid));
+    }
+
+    /**
+     * 使用缓存的响应体字节返回用户游戏数据
+     * 缓存的版本号与当前版本号一致时不再读取完整数据和序列化，否则重新序列化并缓存
+     */
+    private ResponseEntity<?> getUserDataWithEtag(String openid, String ifNoneMatch) {
         try {
-            log.debug("========== 接口调用开始 ==========");
-            log.debug("接口名称: {}, 请求方式: {}", interfaceName, method);
-            
-            // 从request属性中获取openid（由拦截器设置）
-            String openid = (String) request.getAttribute("openid");
+            UserGameDataBodyCache.Body body = userGameDataBodyCache.get(openid);
+            if (body != null && body.isValid(userGameDataService.getCurrentVersion(openid))) {
+                userGameDataBodyCache.recordHit();
+            } else {
+                UserGameDataResponse response = userGameDataService.getUserGameData(openid);
+                if (defaultUserGameData.isDefault(response)) {
+                    // 首次访问的用户使用预先序列化的默认数据，不缓存（第一次保存后版本号变化）
+                    body = UserGameDataBodyCache.Body.of(0L, defaultUserGameData.serialize(openid), 0L);
+                } else {
+                    // 离线收益随时间变化，只缓存开始产生离线收益之前的响应体
+                    body = userGameDataBodyCache.put(openid, response.getVersion(), Result.success(response),
+                            offlineIncomeCalculator.getStableUntil(response));
+                }
+            }
+
+            if (UserGameDataBodyCache.matches(ifNoneMatch, body.getEtag())) {
+                userGameDataBodyCache.recordNotModified();
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(body.getEtag())
+                        .cacheControl(CacheControl.noCache().cachePrivate())
+                        .build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(body.getEtag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(body.getBytes());
+        } catch (Exception e) {
+            log.error("获取用户游戏数据接口异常, openid:{}", openid, e);
+            return ResponseEntity.ok(Result.error(500, "服务器内部错误"));
+        }
+    }
+
+    private Object doGetUserData(String openid) {
+        try {
+            // openid由拦截器设置到request属性中
             if (openid == null || openid.trim().isEmpty()) {
-                Result<UserGameDataResponse> result = Result.error(401, "未获取到用户信息");
                 log.warn("获取用户游戏数据失败: 未获取到用户信息");
-                log.debug("返回结果: code={}, message={}", result.getCode(), result.getMessage());
-                log.debug("========== 接口调用结束 ==========");
-                return result;
+                return Result.error(401, "未获取到用户信息");
             }
 
-            log.debug("请求参数: openid={}", openid);
             UserGameDataResponse response = userGameDataService.getUserGameData(openid);
-            Result<UserGameDataResponse> result = Result.success(response);
-            
-            // 打印返回结果（DEBUG级别）
-            log.debug("返回结果: code={}, message={}, data存在={}", 
-                result.getCode(), result.getMessage(), result.getData() != null);
-            log.debug("========== 接口调用结束 ==========");
-            
-            return result;
+            if (defaultUserGameData.isDefault(response)) {
+                // 首次访问的用户直接返回预先序列化的默认数据
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(defaultUserGameData.serialize(openid));
+            }
+            return Result.success(response);
         } catch (Exception e) {
             log.error("获取用户游戏数据接口异常", e);
-            Result<UserGameDataResponse> result = Result.error(500, "服务器内部错误");
-            log.debug("返回结果: code={}, message={}", result.getCode(), result.getMessage());
-            log.debug("========== 接口调用结束 ==========");
-            return result;
+            return Result.error(500, "服务器内部错误");
         }
     }
 
@@ -140,67 +204,296 @@ public class GameController {
      *
      * @param request 保存请求（不包含userId）
      * @param httpRequest HTTP请求对象
-     * @return 保存结果
+     * @return 保存结果（异步模式下为 DeferredResult）
      */
     @PostMapping("/user-data")
-    public Result<Map<String, Object>> saveUserData(@RequestBody UserGameDataRequest request, HttpServletRequest httpRequest) {
-        String interfaceName = "/api/game/user-data";
-        String method = "POST";
-        
+    public Object saveUserData(@RequestBody UserGameDataRequest request, HttpServletRequest httpRequest) {
+        String openid = (String) httpRequest.getAttribute("openid");
+        return dispatchDb(() -> doSaveUserData(request, openid));
+    }
+
+    private Result<Map<String, Object>> doSaveUserData(UserGameDataRequest request, String openid) {
         try {
-            log.debug("========== 接口调用开始 ==========");
-            log.debug("接口名称: {}, 请求方式: {}", interfaceName, method);
-            
             if (request == null) {
                 log.warn("保存用户游戏数据失败: 请求参数不能为空");
-                Result<Map<String, Object>> result = Result.badRequest("请求参数不能为空");
-                log.debug("返回结果: code={}, message={}", result.getCode(), result.getMessage());
-                log.debug("========== 接口调用结束 ==========");
-                return result;
-            }
-            
-            // 从request属性中获取openid（由拦截器设置）
-            String openid = (String) httpRequest.getAttribute("openid");
+                return Result.badRequest("请求参数不能为空");
+            }
+
+            // openid由拦截器设置到request属性中
             if (openid == null || openid.trim().isEmpty()) {
-                Result<Map<String, Object>> result = Result.error(401, "未获取到用户信息");
                 log.warn("保存用户游戏数据失败: 未获取到用户信息");
-                log.debug("返回结果: code={}, message={}", result.getCode(), result.getMessage());
-                log.debug("========== 接口调用结束 ==========");
-                return result;
+                return Result.error(401, "未获取到用户信息");
             }
-            
+
             // 设置userId为openid
             request.setUserId(openid);
-            log.debug("请求参数: openid={}", openid);
 
             UserGameDataService.SaveResult saveResult = userGameDataService.saveUserGameData(request);
             if (!saveResult.getSuccess()) {
                 log.warn("保存用户游戏数据失败, openid:{}, error:{}", openid, saveResult.getError());
-                Result<Map<String, Object>> result = Result.badRequest(saveResult.getError());
-                log.debug("返回结果: code={}, message={}", result.getCode(), result.getMessage());
-                log.debug("========== 接口调用结束 ==========");
-                return result;
+                return saveResult.isConflict()
+                        ? Result.error(409, saveResult.getError())
+                        : Result.badRequest(saveResult.getError());
             }
 
             Map<String, Object> data = new HashMap<>();
             data.put("success", true);
             data.put("lastUpdateTime", saveResult.getLastUpdateTime());
-            Result<Map<String, Object>> result = Result.success(data);
-            
-            // 打印返回结果（DEBUG级别）
-            log.debug("返回结果: code={}, message={}, data存在={}", 
-                result.getCode(), result.getMessage(), result.getData() != null);
-            log.debug("========== 接口调用结束 ==========");
-            
-            return result;
+            data.put("version", saveResult.getVersion());
+            return Result.success(data);
         } catch (Exception e) {
-            log.error("保存用户游戏数据接口异常, openid:{}", 
-                httpRequest.getAttribute("openid") != null ? httpRequest.getAttribute("openid") : "null", e);
-            Result<Map<String, Object>> result = Result.error(500, "服务器内部错误");
-            log.debug("返回结果: code={}, message={}", result.getCode(), result.getMessage());
-            log.debug("========== 接口调用结束 ==========");
-            return result;
+            log.error("保存用户游戏数据接口异常, openid:{}", openid, e);
+            return Result.error(500, "服务器内部错误");
         }
     }
-}
 
+    /**
+     * 增量保存用户游戏数据接口
+     * PATCH /api/game/user-data
+     * 注意：需要通过请求头传递token（X-Token 或 Authorization: Bearer {token}）
+     * 注意：请求体只需包含发生变化的字段（金钱/等级变化量、单个助理、新完成的挑战、设置项等）
+     *
+     * @param request 增量保存请求（不包含userId）
+     * @param httpRequest HTTP请求对象
+     * @return 保存结果（异步模式下为 DeferredResult）
+     */
+    @PatchMapping("/user-data")
+    public Object patchUserData(@RequestBody UserGameDataPatchRequest request, HttpServletRequest httpRequest) {
+        String openid = (String) httpRequest.getAttribute("openid");
+        return dispatchDb(() -> doPatchUserData(request, openid));
+    }
+
+    private Result<Map<String, Object>> doPatchUserData(UserGameDataPatchRequest request, String openid) {
+        try {
+            if (request == null) {
+                log.warn("增量保存用户游戏数据失败: 请求参数不能为空");
+                return Result.badRequest("请求参数不能为空");
+            }
+
+            // openid由拦截器设置到request属性中
+            if (openid == null || openid.trim().isEmpty()) {
+                log.warn("增量保存用户游戏数据失败: 未获取到用户信息");
+                return Result.error(401, "未获取到用户信息");
+            }
+
+            // 设置userId为openid
+            request.setUserId(openid);
+
+            UserGameDataService.SaveResult saveResult = userGameDataService.patchUserGameData(request);
+            if (!saveResult.getSuccess()) {
+                log.warn("增量保存用户游戏数据失败, openid:{}, error:{}", openid, saveResult.getError());
+                return saveResult.isConflict()
+                        ? Result.error(409, saveResult.getError())
+                        : Result.badRequest(saveResult.getError());
+            }
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("success", true);
+            data.put("lastUpdateTime", saveResult.getLastUpdateTime());
+            data.put("version", saveResult.getVersion());
+            return Result.success(data);
+        } catch (Exception e) {
+            log.error("增量保存用户游戏数据接口异常, openid:{}", openid, e);
+            return Result.error(500, "服务器内部错误");
+        }
+    }
+
+    /**
+     * 点击批量上报接口
+     * POST /api/game/clicks
+     * 注意：需要通过请求头传递token（X-Token 或 Authorization: Bearer {token}）
+     * 注意：只需上报时间窗口内的点击次数，收益由服务器计算并记入金钱，不需要上传完整数据
+     *
+     * @param request 点击批量上报请求（不包含userId）
+     * @param httpRequest HTTP请求对象
+     * @return 计入的点击次数、收益、记入后的金钱和版本号（异步模式下为 DeferredResult）
+     */
+    @PostMapping("/clicks")
+    public Object reportClicks(@RequestBody ClickBatchRequest request, HttpServletRequest httpRequest) {
+        String openid = (String) httpRequest.getAttribute("openid");
+        return dispatchDb(() -> doReportClicks(request, openid));
+    }
+
+    private Result<Map<String, Object>> doReportClicks(ClickBatchRequest request, String openid) {
+        try {
+            if (request == null) {
+                log.warn("点击上报失败: 请求参数不能为空");
+                return Result.badRequest("请求参数不能为空");
+            }
+
+            // openid由拦截器设置到request属性中
+            if (openid == null || openid.trim().isEmpty()) {
+                log.warn("点击上报失败: 未获取到用户信息");
+                return Result.error(401, "未获取到用户信息");
+            }
+
+            // 设置userId为openid
+            request.setUserId(openid);
+
+            ClickEconomyEngine.ClickResult clickResult = clickEconomyEngine.applyClicks(request);
+            if (!clickResult.isSuccess()) {
+                log.warn("点击上报失败, openid:{}, error:{}", openid, clickResult.getError());
+                return clickResult.isConflict()
+                        ? Result.error(409, clickResult.getError())
+                        : Result.badRequest(clickResult.getError());
+            }
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("acceptedClicks", clickResult.getAcceptedClicks());
+            data.put("rewardPerClick", clickResult.getRewardPerClick());
+            data.put("reward", clickResult.getReward());
+            data.put("money", clickResult.getMoney());
+            data.put("lastUpdateTime", clickResult.getLastUpdateTime());
+            data.put("version", clickResult.getVersion());
+            return Result.success(data);
+        } catch (Exception e) {
+            log.error("点击上报接口异常, openid:{}", openid, e);
+            return Result.error(500, "服务器内部错误");
+        }
+    }
+
+    /**
+     * 排行榜接口（前N名）
+     * GET /api/game/leaderboard?type=money&offset=0&limit=20
+     * 注意：需要通过请求头传递token（X-Token 或 Authorization: Bearer {token}）
+     * 注意：排行榜在内存中维护，不访问数据库；其他玩家以 playerId（openid的哈希）标识
+     *
+     * @param type   排行榜类型：money（金钱榜）或 level（等级榜）
+     * @param offset 跳过的名次数
+     * @param limit  返回条数（1-100）
+     * @param httpRequest HTTP请求对象
+     * @return 排行榜总人数、本页条目和当前用户的排名
+     */
+    @GetMapping("/leaderboard")
+    public Result<Map<String, Object>> getLeaderboard(@RequestParam(defaultValue = "money") String type,
+                                                      @RequestParam(defaultValue = "0") int offset,
+                                                      @RequestParam(defaultValue = "20") int limit,
+                                                      HttpServletRequest httpRequest) {
+        String openid = (String) httpRequest.getAttribute("openid");
+        Leaderboard.Type leaderboardType = Leaderboard.Type.of(type);
+        String error = validateLeaderboardRequest(leaderboardType, openid);
+        if (error == null && (offset < 0 || limit < 1 || limit > MAX_LEADERBOARD_LIMIT)) {
+            error = "offset不能为负数，limit必须在1-" + MAX_LEADERBOARD_LIMIT + "之间";
+        }
+        if (error != null) {
+            log.warn("获取排行榜失败, openid:{}, error:{}", openid, error);
+            return "未获取到用户信息".equals(error) ? Result.error(401, error) : Result.badRequest(error);
+        }
+
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (RankedIndex.Entry entry : leaderboard.top(leaderboardType, offset, limit)) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("rank", entry.getRank());
+            item.put("playerId", Leaderboard.playerId(entry.getUserId()));
+            item.put("score", entry.getScore());
+            item.put("self", entry.getUserId().equals(openid));
+            entries.add(item);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("type", leaderboardType.name().toLowerCase());
+        data.put("total", leaderboard.size());
+        data.put("ready", leaderboard.isReady());
+        data.put("entries", entries);
+        data.put("self", toRankData(leaderboard.rankOf(leaderboardType, openid)));
+        return Result.success(data);
+    }
+
+    /**
+     * 当前用户排名接口
+     * GET /api/game/leaderboard/rank?type=money
+     * 注意：需要通过请求头传递token（X-Token 或 Authorization: Bearer {token}）
+     *
+     * @param type 排行榜类型：money（金钱榜）或 level（等级榜）
+     * @param httpRequest HTTP请求对象
+     * @return 当前用户的排名和分数（不在排行榜中时 rank 为0）、排行榜总人数
+     */
+    @GetMapping("/leaderboard/rank")
+    public Result<Map<String, Object>> getLeaderboardRank(@RequestParam(defaultValue = "money") String type,
+                                                          HttpServletRequest httpRequest) {
+        String openid = (String) httpRequest.getAttribute("openid");
+        Leaderboard.Type leaderboardType = Leaderboard.Type.of(type);
+        String error = validateLeaderboardRequest(leaderboardType, openid);
+        if (error != null) {
+            log.warn("获取排名失败, openid:{}, error:{}", openid, error);
+            return "未获取到用户信息".equals(error) ? Result.error(401, error) : Result.badRequest(error);
+        }
+
+        Map<String, Object> data = toRankData(leaderboard.rankOf(leaderboardType, openid));
+        data.put("type", leaderboardType.name().toLowerCase());
+        data.put("total", leaderboard.size());
+        data.put("ready", leaderboard.isReady());
+        return Result.success(data);
+    }
+
+    private String validateLeaderboardRequest(Leaderboard.Type type, String openid) {
+        if (openid == null || openid.trim().isEmpty()) {
+            return "未获取到用户信息";
+        }
+        if (!leaderboard.isEnabled()) {
+            return "排行榜未开启";
+        }
+        if (type == null) {
+            return "排行榜类型无效，可选值: money、level";
+        }
+        return null;
+    }
+
+    private static Map<String, Object> toRankData(RankedIndex.Entry entry) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("rank", entry != null ? entry.getRank() : 0);
+        data.put("score", entry != null ? entry.getScore() : null);
+        return data;
+    }
+
+    /**
+     * 退出登录接口
+     * POST /api/game/logout
+     * 注意：需要通过请求头传递token（X-Token 或 Authorization: Bearer {token}），调用后该token立即失效
+     *
+     * @param httpRequest HTTP请求对象
+     * @return 退出结果
+     */
+    @PostMapping("/logout")
+    public Result<Map<String, Object>> logout(HttpServletRequest httpRequest) {
+        try {
+            // 从request属性中获取token（由拦截器设置）
+            String token = (String) httpRequest.getAttribute("token");
+            if (!wechatLoginService.logout(token)) {
+                return Result.error(503, "退出登录失败，请稍后重试");
+            }
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("success", true);
+            log.info("退出登录成功, openid:{}", httpRequest.getAttribute("openid"));
+            return Result.success(data);
+        } catch (Exception e) {
+            log.error("退出登录接口异常", e);
+            return Result.error(500, "服务器内部错误");
+        }
+    }
+
+    /**
+     * 执行需要访问数据库的接口处理
+     * 未开启异步模式时在当前线程执行并直接返回结果；开启时提交到数据库线程池并返回 DeferredResult，
+     * 线程池队列已满时直接返回503
+     */
+    private Object dispatchDb(Supplier<?> handler) {
+        if (!asyncRequestExecutor.isEnabled()) {
+            return handler.get();
+        }
+        DeferredResult<Object> deferred = newDeferredResult();
+        try {
+            asyncRequestExecutor.executeDb(() -> deferred.setResult(handler.get()));
+        } catch (RejectedExecutionException e) {
+            return Result.error(503, "服务器繁忙，请稍后重试");
+        }
+        return deferred;
+    }
+
+    /**
+     * 创建异步结果，超时未完成时返回503
+     */
+    private <T> DeferredResult<T> newDeferredResult() {
+        return new DeferredResult<>(asyncRequestExecutor.getTimeoutMs(), Result.error(503, "服务器繁忙，请稍后重试"));
+    }
+}
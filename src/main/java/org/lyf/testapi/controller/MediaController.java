@@ -0,0 +1,227 @@
+package org.lyf.testapi.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.lyf.testapi.service.ResourceFiles;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * 视频资源控制器
+ * 挑战成功视频 /resources/assist/{challengeId}/success.mp4 不再经过通用的静态资源处理器：
+ * 支持单个范围的 Range 请求（206，拖动进度和断点续传）、If-Range、ETag/Last-Modified 条件请求；
+ * 运行在Tomcat且连接器支持时由容器通过 sendfile 直接从文件发送到socket（零拷贝），否则通过文件通道分块写出，
+ * 都不会把整个文件读入堆内存
+ * 多个范围的请求（multipart/byteranges）按规范忽略 Range 返回完整文件
+ */
+@Controller
+@Slf4j
+@RequiredArgsConstructor
+public class MediaController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 与 WebMvcConfig 中静态资源的缓存时间一致
+     */
+    private static final String CACHE_CONTROL = "max-age=3600";
+
+    /**
+     * 无法满足的范围（起始位置超出文件长度）
+     */
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    private final ResourceFiles resourceFiles;
+
+    /**
+     * 挑战成功视频
+     * GET /resources/assist/{challengeId}/success.mp4
+     *
+     * @param challengeId 挑战ID
+     */
+    @GetMapping("/resources/assist/{challengeId:\\d+}/success.mp4")
+    public void successVideo(@PathVariable String challengeId, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        ResourceFiles.ResourceFile file = resourceFiles.get("assist/" + challengeId + "/success.mp4");
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        serve(file, "video/mp4", CACHE_CONTROL, request, response);
+    }
+
+    /**
+     * 从磁盘返回文件，支持 Range 和条件请求
+     *
+     * @param cacheControl Cache-Control 响应头
+     */
+    void serve(ResourceFiles.ResourceFile file, String contentType, String cacheControl, HttpServletRequest request,
+               HttpServletResponse response) throws IOException {
+        String etag = file.getEtag();
+        // If-None-Match / If-Modified-Since 命中时设置304并返回true
+        if (new ServletWebRequest(request, response).checkNotModified(etag, file.getLastModified())) {
+            resourceFiles.recordNotModified();
+            return;
+        }
+
+        long length = file.getLength();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, file.getLastModified());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setContentType(contentType);
+
+        long start = 0;
+        long end = length - 1;
+        boolean partial = false;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), file)) {
+            long[] parsed = parseRange(range, length);
+            if (parsed == UNSATISFIABLE) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setContentLength(0);
+                return;
+            }
+            if (parsed != null) {
+                start = parsed[0];
+                end = parsed[1];
+                partial = true;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long contentLength = end - start + 1;
+        response.setContentLengthLong(contentLength);
+        if ("HEAD".equals(request.getMethod()) || contentLength == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由Tomcat在请求处理结束后直接发送文件，结束位置不包含
+            request.setAttribute(SENDFILE_FILENAME, file.getPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            resourceFiles.recordResponse(partial, true, contentLength);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = contentLength;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        } catch (IOException e) {
+            // 移动端拖动进度或切到后台时经常中断连接
+            log.debug("视频发送中断, path:{}, range:{}", file.getPath(), range, e);
+            return;
+        }
+        resourceFiles.recordResponse(partial, false, contentLength);
+    }
+
+    /**
+     * If-Range 与当前文件一致时才按 Range 返回部分内容，否则返回完整文件
+     * ETag 使用强比较（弱ETag不匹配），日期按秒比较
+     */
+    private static boolean ifRangeMatches(String ifRange, ResourceFiles.ResourceFile file) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(file.getEtag());
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date / 1000 == file.getLastModified() / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 解析 Range 请求头
+     * 支持 bytes=start-end、bytes=start-、bytes=-suffix
+     *
+     * @return 起止位置（包含），格式错误或包含多个范围时返回null（忽略 Range），起始位置超出文件长度时返回 UNSATISFIABLE
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0 || spec.indexOf(',') >= 0) {
+            return null;
+        }
+        long first = parseDigits(spec.substring(0, dash).trim());
+        long last = parseDigits(spec.substring(dash + 1).trim());
+
+        if (first == -1) {
+            // bytes=-suffix：最后 suffix 个字节
+            if (last < 0) {
+                return null;
+            }
+            if (last == 0 || length == 0) {
+                return UNSATISFIABLE;
+            }
+            return new long[]{Math.max(0, length - last), length - 1};
+        }
+        if (first < 0 || last == -2 || (last >= 0 && last < first)) {
+            return null;
+        }
+        if (first >= length) {
+            return UNSATISFIABLE;
+        }
+        long end = last == -1 ? length - 1 : Math.min(last, length - 1);
+        return new long[]{first, end};
+    }
+
+    /**
+     * 解析非负整数
+     *
+     * @return 解析结果，空字符串返回-1，包含非数字字符或溢出返回-2
+     */
+    private static long parseDigits(String value) {
+        if (value.isEmpty()) {
+            return -1;
+        }
+        if (value.length() > 18) {
+            return -2;
+        }
+        long result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -2;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
@@ -0,0 +1,178 @@
+package org.lyf.testapi.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.lyf.testapi.dto.Result;
+import org.lyf.testapi.service.AccessLog;
+import org.lyf.testapi.service.ApiMetrics;
+import org.lyf.testapi.service.AssetCache;
+import org.lyf.testapi.service.AssetManifest;
+import org.lyf.testapi.service.AsyncRequestExecutor;
+import org.lyf.testapi.service.ClickEconomyEngine;
+import org.lyf.testapi.service.DefaultUserGameData;
+import org.lyf.testapi.service.Leaderboard;
+import org.lyf.testapi.service.OfflineIncomeCalculator;
+import org.lyf.testapi.service.LatencyHistogram;
+import org.lyf.testapi.service.ResourceFiles;
+import org.lyf.testapi.service.TokenStore;
+import org.lyf.testapi.service.UserGameDataBatchWriter;
+import org.lyf.testapi.service.UserGameDataBodyCache;
+import org.lyf.testapi.service.UserGameDataCache;
+import org.lyf.testapi.service.UserGameDataFingerprints;
+import org.lyf.testapi.service.UserGameDataService;
+import org.lyf.testapi.service.UserGameDataWriteBuffer;
+import org.lyf.testapi.service.WechatApiClient;
+import org.lyf.testapi.service.WechatLoginService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 运行指标控制器
+ * 路径不在 /api/game/** 下，不经过token拦截器；
+ * 配置了 app.metrics.token 时需要通过请求头 X-Metrics-Token 传递相同的值
+ */
+@RestController
+@RequestMapping("/internal/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final UserGameDataService userGameDataService;
+    private final UserGameDataCache userGameDataCache;
+    private final UserGameDataBodyCache userGameDataBodyCache;
+    private final UserGameDataFingerprints userGameDataFingerprints;
+    private final UserGameDataWriteBuffer userGameDataWriteBuffer;
+    private final UserGameDataBatchWriter userGameDataBatchWriter;
+    private final WechatLoginService wechatLoginService;
+    private final WechatApiClient wechatApiClient;
+    private final AsyncRequestExecutor asyncRequestExecutor;
+    private final ApiMetrics apiMetrics;
+    private final AccessLog accessLog;
+    private final ResourceFiles resourceFiles;
+    private final AssetCache assetCache;
+    private final AssetManifest assetManifest;
+    private final ClickEconomyEngine clickEconomyEngine;
+    private final OfflineIncomeCalculator offlineIncomeCalculator;
+    private final Leaderboard leaderboard;
+    private final DefaultUserGameData defaultUserGameData;
+
+    /**
+     * 访问指标接口所需的token，为空表示不校验
+     */
+    @Value("${app.metrics.token:}")
+    private String metricsToken;
+
+    /**
+     * 获取运行指标
+     * GET /internal/metrics
+     *
+     * @param token 指标访问token
+     * @return 各组件的运行指标
+     */
+    @GetMapping
+    public Result<Map<String, Object>> metrics(@RequestHeader(value = "X-Metrics-Token", required = false) String token) {
+        if (!authorized(token)) {
+            return Result.error(403, "无权访问");
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("userDataCache", userGameDataCache.getStats());
+        data.put("userDataLoad", userGameDataService.getLoadStats());
+        data.put("userDataEtag", userGameDataBodyCache.getStats());
+        data.put("saveDedup", userGameDataFingerprints.getStats());
+        data.put("writeBehind", userGameDataWriteBuffer.getStats());
+        data.put("batchWrite", userGameDataBatchWriter.getStats());
+        data.put("tokens", wechatLoginService.getTokenStats());
+        data.put("wechatApi", wechatApiClient.getStats());
+        data.put("wechatLogin", wechatLoginService.getUpstreamStats());
+        data.put("asyncDb", asyncRequestExecutor.getStats());
+        data.put("api", apiMetrics.getStats());
+        data.put("accessLog", accessLog.getStats());
+        data.put("resourceFiles", resourceFiles.getStats());
+        data.put("assetCache", assetCache.getStats());
+        data.put("assetManifest", assetManifest.getStats());
+        data.put("clicks", clickEconomyEngine.getStats());
+        data.put("offlineIncome", offlineIncomeCalculator.getStats());
+        data.put("leaderboard", leaderboard.getStats());
+        data.put("defaultUserData", defaultUserGameData.getStats());
+        return Result.success(data);
+    }
+
+    /**
+     * 获取Prometheus文本格式的耗时指标
+     * GET /internal/metrics/prometheus
+     * 分位数按最近的统计窗口计算（app.metrics.window-seconds），_count 和 _sum 从启动开始累计
+     *
+     * @param token 指标访问token
+     * @return Prometheus文本格式的指标
+     */
+    @GetMapping(value = "/prometheus", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public ResponseEntity<String> prometheus(@RequestHeader(value = "X-Metrics-Token", required = false) String token) {
+        if (!authorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("无权访问\n");
+        }
+
+        ApiMetrics.ApiMetricsStats stats = apiMetrics.getStats();
+        StringBuilder out = new StringBuilder(4096);
+
+        writeSummaryHeader(out, "api_request_duration_seconds", "接口请求耗时");
+        stats.getRequests().forEach((endpoint, snapshot) ->
+                writeSummary(out, "api_request_duration_seconds", "endpoint", endpoint, snapshot));
+
+        writeSummaryHeader(out, "api_mapper_duration_seconds", "Mapper调用耗时");
+        stats.getMapperCalls().forEach((statement, snapshot) ->
+                writeSummary(out, "api_mapper_duration_seconds", "statement", statement, snapshot));
+
+        writeSummaryHeader(out, "api_json_duration_seconds", "游戏数据JSON解析/序列化耗时");
+        writeSummary(out, "api_json_duration_seconds", "operation", "parse", stats.getJsonParse());
+        writeSummary(out, "api_json_duration_seconds", "operation", "serialize", stats.getJsonSerialize());
+
+        writeSummaryHeader(out, "api_token_validation_duration_seconds", "token校验耗时");
+        writeSummary(out, "api_token_validation_duration_seconds", null, null, stats.getTokenValidation());
+
+        out.append("# HELP api_token_validations_total token校验次数\n");
+        out.append("# TYPE api_token_validations_total counter\n");
+        out.append("api_token_validations_total{result=\"valid\"} ").append(stats.getTokenValid()).append('\n');
+        out.append("api_token_validations_total{result=\"invalid\"} ").append(stats.getTokenInvalid()).append('\n');
+        out.append("api_token_validations_total{result=\"missing\"} ").append(stats.getTokenMissing()).append('\n');
+
+        TokenStore.TokenStats tokenStats = wechatLoginService.getTokenStats();
+        out.append("# HELP api_tokens_live 当前有效token数量（无状态token模式下为-1）\n");
+        out.append("# TYPE api_tokens_live gauge\n");
+        out.append("api_tokens_live ").append(tokenStats.getLive()).append('\n');
+
+        return ResponseEntity.ok(out.toString());
+    }
+
+    private boolean authorized(String token) {
+        return metricsToken.isEmpty() || metricsToken.equals(token);
+    }
+
+    private static void writeSummaryHeader(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" summary\n");
+    }
+
+    private static void writeSummary(StringBuilder out, String name, String label, String value,
+                                     LatencyHistogram.Snapshot snapshot) {
+        String labels = label != null ? label + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"" : "";
+        String separator = labels.isEmpty() ? "" : ",";
+        writeSample(out, name, "{" + labels + separator + "quantile=\"0.5\"}", snapshot.getP50Ms() / 1000);
+        writeSample(out, name, "{" + labels + separator + "quantile=\"0.99\"}", snapshot.getP99Ms() / 1000);
+        writeSample(out, name, "{" + labels + separator + "quantile=\"0.999\"}", snapshot.getP999Ms() / 1000);
+        String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_count").append(suffix).append(' ').append(snapshot.getCount()).append('\n');
+        writeSample(out, name + "_sum", suffix, snapshot.getSumMs() / 1000);
+    }
+
+    private static void writeSample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ').append(String.format(Locale.ROOT, "%.6f", value)).append('\n');
+    }
+}
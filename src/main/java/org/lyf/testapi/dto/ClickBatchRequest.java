@@ -0,0 +1,36 @@
+package org.lyf.testapi.dto;
+
+import lombok.Data;
+
+/**
+ * 点击批量上报请求DTO
+ * 客户端把一段时间内的点击次数合并为一次上报，收益由服务器根据玩家数据计算
+ */
+@Data
+public class ClickBatchRequest {
+    /**
+     * 用户ID（由服务器根据token设置）
+     */
+    private String userId;
+
+    /**
+     * 时间窗口内的点击次数
+     */
+    private Integer count;
+
+    /**
+     * 时间窗口开始时间（毫秒时间戳）
+     */
+    private Long startTime;
+
+    /**
+     * 时间窗口结束时间（毫秒时间戳）
+     */
+    private Long endTime;
+
+    /**
+     * 客户端当前持有的数据版本号（可选）
+     * 传入时只有服务器上的版本号与之一致才会记入收益，否则返回409，需要重新获取数据
+     */
+    private Long version;
+}
@@ -0,0 +1,25 @@
+package org.lyf.testapi.dto;
+
+import lombok.Data;
+
+/**
+ * 离线收益DTO
+ * 获取用户游戏数据时由服务器根据离线时长计算，已计入 playerInfo.money
+ */
+@Data
+public class OfflineIncome {
+    /**
+     * 离线收益金额
+     */
+    private Long amount;
+
+    /**
+     * 离线时长（秒）
+     */
+    private Long offlineSeconds;
+
+    /**
+     * 离线时长是否超过上限（超出部分不计收益）
+     */
+    private Boolean capped;
+}
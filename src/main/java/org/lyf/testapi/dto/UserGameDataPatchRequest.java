@@ -0,0 +1,68 @@
+package org.lyf.testapi.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 增量保存用户游戏数据请求DTO
+ * 只需要传入发生变化的字段，未传入的字段保持服务器上的数据不变
+ */
+@Data
+public class UserGameDataPatchRequest {
+    /**
+     * 用户ID（由服务器根据token设置）
+     */
+    private String userId;
+
+    /**
+     * 金钱变化量（可为负数，变化后金钱不能为负数）
+     */
+    private Long moneyDelta;
+
+    /**
+     * 玩家等级变化量（变化后等级必须在1-999之间）
+     */
+    private Integer playerLevelDelta;
+
+    /**
+     * 点击收益基础值（新值）
+     */
+    private Long clickRewardBase;
+
+    /**
+     * 点击收益倍率（新值）
+     */
+    private Double clickMultiplier;
+
+    /**
+     * 升级所需金币（新值）
+     */
+    private Long upgradeCost;
+
+    /**
+     * 助理培训次数（新值）
+     */
+    private Integer trainingCount;
+
+    /**
+     * 发生变化的助理，按id匹配，unlocked 和 level 只更新传入的项
+     */
+    private List<Assistant> assistants;
+
+    /**
+     * 新完成的挑战ID
+     */
+    private List<Integer> completedChallengeIds;
+
+    /**
+     * 发生变化的设置项，只更新传入的项
+     */
+    private Settings settings;
+
+    /**
+     * 客户端当前持有的数据版本号（可选）
+     * 传入时只有服务器上的版本号与之一致才会保存，否则返回409，需要重新获取数据
+     */
+    private Long version;
+}
@@ -33,5 +33,11 @@ public class UserGameDataRequest {
      * 用户设置（JSON格式，包含音效、背景音乐等设置项）
      */
     private Settings settings;
+
+    /**
+     * 客户端当前持有的数据版本号（可选）
+     * 传入时只有服务器上的版本号与之一致才会保存，否则返回409，需要重新获取数据
+     */
+    private Long version;
 }
 
@@ -1,5 +1,6 @@
 package org.lyf.testapi.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -39,5 +40,22 @@ public class UserGameDataResponse {
      * 最后更新时间
      */
     private LocalDateTime lastUpdateTime;
+
+    /**
+     * 数据版本号，保存时通过 version 字段回传可防止覆盖其他设备更新的数据
+     */
+    private Long version;
+
+    /**
+     * 离线收益（开启 app.offline-income.enabled 且离线时长超过阈值时返回，金额已计入 playerInfo.money），没有时为null
+     */
+    private OfflineIncome offlineIncome;
+
+    /**
+     * 是否为首次访问用户的默认数据（数据库中没有该用户，见 DefaultUserGameData），不返回给客户端
+     * 为true时接口直接返回预先序列化的默认响应体，修改数据后需要清除该标记
+     */
+    @JsonIgnore
+    private boolean defaultData;
 }
 
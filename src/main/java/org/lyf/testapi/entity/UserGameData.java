@@ -65,6 +65,21 @@ public class UserGameData {
      */
     private String settingsData;
 
+    /**
+     * 助理、挑战、设置数据的紧凑二进制编码（见 GameStateCodec），不为空时优先于三个JSON列
+     */
+    private byte[] stateBlob;
+
+    /**
+     * 玩家信息、助理、挑战、设置数据的指纹（见 UserGameDataFingerprints），用于识别重复保存；为空表示未知
+     */
+    private Long stateFingerprint;
+
+    /**
+     * 数据版本号（乐观锁，取值为写入时的毫秒时间戳）
+     */
+    private Long version;
+
     /**
      * 最后更新时间
      */
@@ -1,8 +1,12 @@
 package org.lyf.testapi.mapper;
 
 import org.apache.ibatis.annotations.Param;
+import org.lyf.testapi.dto.UserGameDataPatchRequest;
 import org.lyf.testapi.entity.UserGameData;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * 用户游戏数据Mapper接口
  */
@@ -24,11 +28,75 @@ public interface UserGameDataMapper {
     int insert(UserGameData userGameData);
 
     /**
-     * 更新用户游戏数据
+     * 插入或更新用户游戏数据（单条语句）
+     * expectedVersion 不为空时，只有数据库中的版本号与其一致才会更新，否则保持原数据不变
+     * 返回值遵循 MySQL INSERT ... ON DUPLICATE KEY UPDATE 的约定：插入为1，更新为2，
+     * 数据未变化时为1（默认的 found rows 模式）或0（useAffectedRows=true）
      *
-     * @param userGameData 用户游戏数据
+     * @param userGameData    用户游戏数据（version 为本次写入的新版本号）
+     * @param expectedVersion 期望的数据库当前版本号，为空表示不校验
      * @return 影响行数
      */
-    int updateByUserId(UserGameData userGameData);
-}
+    int upsert(@Param("data") UserGameData userGameData, @Param("expectedVersion") Long expectedVersion);
+
+    /**
+     * 查询用户数据的版本号
+     *
+     * @param userId 用户ID
+     * @return 版本号，用户不存在返回null
+     */
+    Long selectVersionByUserId(@Param("userId") String userId);
 
+    /**
+     * 查询用户数据的版本号、数据指纹和最后更新时间（只填充这三个字段）
+     *
+     * @param userId 用户ID
+     * @return 用户数据，用户不存在返回null
+     */
+    UserGameData selectFingerprintByUserId(@Param("userId") String userId);
+
+    /**
+     * 增量更新用户游戏数据，只修改请求中传入的列，助理、挑战和设置通过 JSON_SET 修改单个元素
+     * 以下情况不更新（返回0）：用户不存在、版本号不一致、金钱或等级变化后超出范围、
+     * 助理或挑战在JSON数组中的位置与id不对应（按 id-1 定位）、最后更新时间早于 incomeStartTime
+     * patch.version 为空时要求数据库中的版本号小于新版本号，保证返回给客户端的版本号就是写入的版本号
+     *
+     * @param patch           增量数据
+     * @param version         本次写入的新版本号
+     * @param lastUpdateTime  最后更新时间
+     * @param incomeStartTime 离线收益的起算时间，最后更新时间早于该时间的数据有未计入的离线收益，为空表示不校验
+     * @return 影响行数
+     */
+    int patchByUserId(@Param("patch") UserGameDataPatchRequest patch, @Param("version") long version,
+                      @Param("lastUpdateTime") LocalDateTime lastUpdateTime,
+                      @Param("incomeStartTime") LocalDateTime incomeStartTime);
+
+    /**
+     * 分页查询尚未转换为紧凑格式（state_blob 为空）的数据
+     *
+     * @param afterId 上一页最后一条数据的ID，第一页传0
+     * @param limit   每页条数
+     * @return 用户游戏数据，按ID升序
+     */
+    List<UserGameData> selectJsonStatePage(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 将数据转换为紧凑格式：写入 state_blob 并清空三个JSON列
+     * 数据在查询后被修改过（版本号变化）或已转换时不更新
+     *
+     * @param id        数据ID
+     * @param version   查询时的版本号
+     * @param stateBlob 紧凑格式数据
+     * @return 影响行数
+     */
+    int updateStateBlob(@Param("id") Long id, @Param("version") Long version, @Param("stateBlob") byte[] stateBlob);
+
+    /**
+     * 分页查询排行榜所需的数据（只填充 id、userId、playerLevel、money、version）
+     *
+     * @param afterId 上一页最后一条数据的ID，第一页传0
+     * @param limit   每页条数
+     * @return 用户游戏数据，按ID升序
+     */
+    List<UserGameData> selectScorePage(@Param("afterId") long afterId, @Param("limit") int limit);
+}
@@ -0,0 +1,232 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 访问日志
+ * 每个请求完成时记录一条结构化日志（接口、openid哈希、HTTP状态码、业务响应码、总耗时、数据库耗时），
+ * 请求线程只把记录放入有界无锁环形缓冲区，格式化和写文件由后台线程完成；缓冲区已满时丢弃新记录并计数，
+ * 不会阻塞请求线程
+ * 日志写入名为 ACCESS 的logger（logback-spring.xml 中输出到单独的访问日志文件）
+ */
+@Component
+@Slf4j
+public class AccessLog {
+
+    private static final Logger ACCESS_LOGGER = LoggerFactory.getLogger("ACCESS");
+
+    private static final DateTimeFormatter TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    /**
+     * 缓冲区为空时后台线程的等待时间
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 是否记录访问日志
+     */
+    @Value("${app.access-log.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓冲区容量（向上取整为2的幂）
+     */
+    @Value("${app.access-log.buffer-size:8192}")
+    private int bufferSize;
+
+    private RingBuffer<Entry> buffer;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        buffer = new RingBuffer<>(bufferSize);
+        running = true;
+        writer = new Thread(this::drain, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * 记录一次请求
+     *
+     * @param endpoint      请求方法和路径模板
+     * @param openid        用户openid，未登录为null（写日志时只输出哈希）
+     * @param status        HTTP状态码
+     * @param code          业务响应码，响应体不是 Result 时为null
+     * @param durationNanos 请求总耗时（纳秒）
+     * @param dbNanos       数据库耗时（纳秒）
+     */
+    public void record(String endpoint, String openid, int status, Integer code, long durationNanos, long dbNanos) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), endpoint, openid, status, code, durationNanos, dbNanos);
+        if (!buffer.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 后台线程：取出记录并写日志，缓冲区为空时短暂等待；停止时写完剩余的记录
+     */
+    private void drain() {
+        MessageDigest digest = sha256();
+        StringBuilder line = new StringBuilder(160);
+        while (true) {
+            Entry entry = buffer.poll();
+            if (entry == null) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                line.setLength(0);
+                format(entry, digest, line);
+                ACCESS_LOGGER.info(line.toString());
+                written.increment();
+            } catch (Exception e) {
+                log.error("写访问日志失败", e);
+            }
+        }
+    }
+
+    private static void format(Entry entry, MessageDigest digest, StringBuilder line) {
+        TIME_FORMATTER.formatTo(Instant.ofEpochMilli(entry.getTime()), line);
+        line.append(" endpoint=\"").append(entry.getEndpoint()).append('"');
+        line.append(" user=");
+        appendUserHash(entry.getOpenid(), digest, line);
+        line.append(" status=").append(entry.getStatus());
+        line.append(" code=").append(entry.getCode() != null ? entry.getCode().toString() : "-");
+        line.append(" duration_ms=");
+        appendMillis(entry.getDurationNanos(), line);
+        line.append(" db_ms=");
+        appendMillis(entry.getDbNanos(), line);
+    }
+
+    /**
+     * 输出openid的SHA-256前48位，同一用户的请求可以关联，但日志中不出现openid本身
+     */
+    private static void appendUserHash(String openid, MessageDigest digest, StringBuilder line) {
+        if (openid == null) {
+            line.append('-');
+            return;
+        }
+        byte[] hash = digest.digest(openid.getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < 6; i++) {
+            line.append(HEX[(hash[i] >> 4) & 0xF]).append(HEX[hash[i] & 0xF]);
+        }
+    }
+
+    private static void appendMillis(long nanos, StringBuilder line) {
+        long micros = nanos / 1000;
+        line.append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) {
+            line.append('0');
+        }
+        if (fraction < 10) {
+            line.append('0');
+        }
+        line.append(fraction);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public AccessLogStats getStats() {
+        AccessLogStats stats = new AccessLogStats();
+        stats.setEnabled(enabled);
+        if (buffer != null) {
+            stats.setCapacity(buffer.capacity());
+            stats.setQueued(buffer.size());
+        }
+        stats.setWritten(written.sum());
+        stats.setDropped(dropped.sum());
+        return stats;
+    }
+
+    /**
+     * 一条访问记录
+     */
+    @Data
+    private static class Entry {
+        private final long time;
+        private final String endpoint;
+        private final String openid;
+        private final int status;
+        private final Integer code;
+        private final long durationNanos;
+        private final long dbNanos;
+    }
+
+    /**
+     * 统计信息
+     */
+    @Data
+    public static class AccessLogStats {
+        private boolean enabled;
+        private int capacity;
+
+        /**
+         * 缓冲区中等待写入的记录数
+         */
+        private int queued;
+
+        /**
+         * 已写入的记录数
+         */
+        private long written;
+
+        /**
+         * 缓冲区已满被丢弃的记录数
+         */
+        private long dropped;
+    }
+}
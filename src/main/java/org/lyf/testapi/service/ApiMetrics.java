@@ -0,0 +1,174 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 接口热点路径的耗时指标
+ * 包括各接口的请求耗时、token校验、Mapper调用以及JSON解析/序列化耗时，
+ * 通过 /internal/metrics 和 /internal/metrics/prometheus 查看
+ * 记录路径只使用原子计数，不加锁
+ */
+@Component
+public class ApiMetrics {
+
+    private static final String JSON_PARSE = "jsonParse";
+    private static final String JSON_SERIALIZE = "jsonSerialize";
+    private static final String TOKEN_VALIDATION = "tokenValidation";
+
+    /**
+     * 分位数统计窗口（秒）
+     */
+    @Value("${app.metrics.window-seconds:60}")
+    private long windowSeconds = 60;
+
+    /**
+     * 请求耗时，Key 为"请求方法 路径模板"，如 GET /api/game/user-data
+     */
+    private final ConcurrentHashMap<String, LatencyHistogram> requests = new ConcurrentHashMap<>();
+
+    /**
+     * Mapper调用耗时，Key 为 MyBatis 语句ID
+     */
+    private final ConcurrentHashMap<String, LatencyHistogram> mapperCalls = new ConcurrentHashMap<>();
+
+    /**
+     * JSON解析/序列化、token校验耗时
+     */
+    private final ConcurrentHashMap<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+
+    private final LongAdder tokenValid = new LongAdder();
+    private final LongAdder tokenInvalid = new LongAdder();
+    private final LongAdder tokenMissing = new LongAdder();
+
+    /**
+     * 记录一次请求耗时
+     *
+     * @param endpoint      请求方法和路径模板
+     * @param durationNanos 耗时（纳秒）
+     */
+    public void recordRequest(String endpoint, long durationNanos) {
+        histogram(requests, endpoint).record(durationNanos);
+    }
+
+    /**
+     * 记录一次Mapper调用耗时
+     *
+     * @param statementId   MyBatis 语句ID
+     * @param durationNanos 耗时（纳秒）
+     */
+    public void recordMapperCall(String statementId, long durationNanos) {
+        histogram(mapperCalls, statementId).record(durationNanos);
+    }
+
+    /**
+     * 记录一次JSON解析耗时（助理、挑战、设置三列合计）
+     */
+    public void recordJsonParse(long durationNanos) {
+        histogram(timers, JSON_PARSE).record(durationNanos);
+    }
+
+    /**
+     * 记录一次JSON序列化耗时（助理、挑战、设置三列合计）
+     */
+    public void recordJsonSerialize(long durationNanos) {
+        histogram(timers, JSON_SERIALIZE).record(durationNanos);
+    }
+
+    /**
+     * 记录一次token校验
+     *
+     * @param valid         token是否有效
+     * @param durationNanos 校验耗时（纳秒）
+     */
+    public void recordTokenValidation(boolean valid, long durationNanos) {
+        if (valid) {
+            tokenValid.increment();
+        } else {
+            tokenInvalid.increment();
+        }
+        histogram(timers, TOKEN_VALIDATION).record(durationNanos);
+    }
+
+    /**
+     * 记录一次未提供token的请求
+     */
+    public void recordTokenMissing() {
+        tokenMissing.increment();
+    }
+
+    /**
+     * 已存在时只做一次无锁读取；首次出现时才进入 computeIfAbsent
+     * （JDK 8 的 computeIfAbsent 即使Key已存在也会锁住所在的桶）
+     */
+    private LatencyHistogram histogram(ConcurrentHashMap<String, LatencyHistogram> histograms, String key) {
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(key, k -> newHistogram());
+        }
+        return histogram;
+    }
+
+    private LatencyHistogram newHistogram() {
+        return new LatencyHistogram(windowSeconds * 1000);
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public ApiMetricsStats getStats() {
+        ApiMetricsStats stats = new ApiMetricsStats();
+        stats.setRequests(snapshot(requests));
+        stats.setMapperCalls(snapshot(mapperCalls));
+        stats.setJsonParse(snapshot(timers.get(JSON_PARSE)));
+        stats.setJsonSerialize(snapshot(timers.get(JSON_SERIALIZE)));
+        stats.setTokenValidation(snapshot(timers.get(TOKEN_VALIDATION)));
+        stats.setTokenValid(tokenValid.sum());
+        stats.setTokenInvalid(tokenInvalid.sum());
+        stats.setTokenMissing(tokenMissing.sum());
+        return stats;
+    }
+
+    private static Map<String, LatencyHistogram.Snapshot> snapshot(Map<String, LatencyHistogram> histograms) {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        histograms.forEach((key, histogram) -> snapshots.put(key, histogram.snapshot()));
+        return snapshots;
+    }
+
+    private static LatencyHistogram.Snapshot snapshot(LatencyHistogram histogram) {
+        return histogram != null ? histogram.snapshot() : new LatencyHistogram.Snapshot();
+    }
+
+    /**
+     * 统计信息
+     */
+    @Data
+    public static class ApiMetricsStats {
+        private Map<String, LatencyHistogram.Snapshot> requests;
+        private Map<String, LatencyHistogram.Snapshot> mapperCalls;
+        private LatencyHistogram.Snapshot jsonParse;
+        private LatencyHistogram.Snapshot jsonSerialize;
+        private LatencyHistogram.Snapshot tokenValidation;
+
+        /**
+         * token校验通过的次数
+         */
+        private long tokenValid;
+
+        /**
+         * token无效或已过期的次数
+         */
+        private long tokenInvalid;
+
+        /**
+         * 未提供token的次数
+         */
+        private long tokenMissing;
+    }
+}
@@ -0,0 +1,314 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 静态资源内存缓存
+ * 首次请求时把资源目录下的小文件（图片、音效等）读入内存，之后直接从内存返回；
+ * 压缩后明显变小的文件同时保存gzip版本，按请求头 Accept-Encoding 选择
+ * 按总字节数限制内存占用，超出时淘汰最久未访问的文件；
+ * 通过 ResourceFiles 监听资源目录（包括子目录）的文件变化，文件被修改、删除或替换时立即从缓存移除
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class AssetCache {
+
+    /**
+     * gzip版本不超过原文件的该比例时才保存（PNG、MP3等已压缩的格式通常不满足）
+     */
+    private static final double GZIP_MAX_RATIO = 0.9;
+
+    /**
+     * 是否开启静态资源内存缓存
+     */
+    @Value("${app.asset-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓存的最大总字节数（包括gzip版本）
+     */
+    @Value("${app.asset-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    /**
+     * 单个文件的最大字节数，超过的文件不缓存，由静态资源处理器从磁盘读取
+     */
+    @Value("${app.asset-cache.max-file-bytes:4194304}")
+    private long maxFileBytes;
+
+    private final ResourceFiles resourceFiles;
+
+    /**
+     * 按访问顺序排列，最久未访问的在最前面
+     */
+    private final LinkedHashMap<String, Asset> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * 每次移除缓存时加一；读取文件期间有文件变化时不放入缓存，避免放入变化前的内容
+     */
+    private long generation;
+
+    private final SingleFlight<String, Asset> loading = new SingleFlight<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder gzipResponses = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (!resourceFiles.isWatching()) {
+            // 无法监听时不使用缓存，避免返回过期的文件
+            log.warn("未监听资源目录，静态资源内存缓存不开启: {}", resourceFiles.getRoot());
+            enabled = false;
+            return;
+        }
+        resourceFiles.addListener(new ResourceFiles.ChangeListener() {
+            @Override
+            public void changed(String relativePath) {
+                invalidate(relativePath);
+            }
+
+            @Override
+            public void reset() {
+                invalidateAll();
+            }
+        });
+        log.info("静态资源内存缓存已开启, maxBytes:{}, maxFileBytes:{}", maxBytes, maxFileBytes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取缓存的文件，未缓存时读取并放入缓存
+     *
+     * @param relativePath 相对于资源目录的路径，如 back.png
+     * @return 缓存的文件，缓存未开启、文件不存在或超过单个文件大小限制时返回null
+     */
+    public Asset get(String relativePath) throws IOException {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (entries) {
+            Asset asset = entries.get(relativePath);
+            if (asset != null) {
+                hits.increment();
+                return asset;
+            }
+        }
+        misses.increment();
+        try {
+            return loading.execute(relativePath, () -> load(relativePath));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Asset load(String relativePath) throws IOException {
+        long loadGeneration;
+        synchronized (entries) {
+            loadGeneration = generation;
+        }
+        Path root = resourceFiles.getRoot();
+        Path path = root.resolve(relativePath).normalize();
+        if (!path.startsWith(root) || !Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attributes.size() > maxFileBytes) {
+            return null;
+        }
+
+        byte[] bytes = Files.readAllBytes(path);
+        byte[] gzip = gzip(bytes);
+        if (gzip.length > bytes.length * GZIP_MAX_RATIO) {
+            gzip = null;
+        }
+        String contentType = MediaTypeFactory.getMediaType(path.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+        Asset asset = new Asset(bytes, gzip, "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"",
+                attributes.lastModifiedTime().toMillis(), contentType);
+
+        synchronized (entries) {
+            if (generation != loadGeneration) {
+                // 读取期间有文件变化，本次直接返回，下次请求重新读取
+                return asset;
+            }
+            Asset previous = entries.put(relativePath, asset);
+            if (previous != null) {
+                totalBytes -= previous.getSize();
+            }
+            totalBytes += asset.getSize();
+            // 超出总大小时淘汰最久未访问的文件（刚放入的文件在最后）
+            Iterator<Asset> iterator = entries.values().iterator();
+            while (totalBytes > maxBytes && entries.size() > 1 && iterator.hasNext()) {
+                Asset evicted = iterator.next();
+                iterator.remove();
+                totalBytes -= evicted.getSize();
+                evictions.increment();
+            }
+        }
+        return asset;
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 移除缓存的文件；路径为目录时移除目录下的所有文件
+     *
+     * @param relativePath 相对于资源目录的路径
+     */
+    public void invalidate(String relativePath) {
+        String prefix = relativePath + "/";
+        synchronized (entries) {
+            generation++;
+            Iterator<Map.Entry<String, Asset>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Asset> entry = iterator.next();
+                if (entry.getKey().equals(relativePath) || entry.getKey().startsWith(prefix)) {
+                    iterator.remove();
+                    totalBytes -= entry.getValue().getSize();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation++;
+            invalidations.add(entries.size());
+            entries.clear();
+            totalBytes = 0;
+        }
+    }
+
+    /**
+     * 记录一次返回gzip版本的响应
+     */
+    public void recordGzipResponse() {
+        gzipResponses.increment();
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public AssetCacheStats getStats() {
+        AssetCacheStats stats = new AssetCacheStats();
+        stats.setEnabled(enabled);
+        synchronized (entries) {
+            stats.setSize(entries.size());
+            stats.setBytes(totalBytes);
+        }
+        stats.setHits(hits.sum());
+        stats.setMisses(misses.sum());
+        stats.setEvictions(evictions.sum());
+        stats.setInvalidations(invalidations.sum());
+        stats.setGzipResponses(gzipResponses.sum());
+        return stats;
+    }
+
+    /**
+     * 缓存的文件
+     */
+    @Data
+    public static class Asset {
+        private final byte[] bytes;
+
+        /**
+         * gzip版本，压缩效果不明显时为null
+         */
+        private final byte[] gzipBytes;
+
+        private final String etag;
+
+        /**
+         * 修改时间（毫秒）
+         */
+        private final long lastModified;
+
+        private final String contentType;
+
+        /**
+         * gzip版本的ETag（与原文件是不同的表示，ETag不能相同）
+         */
+        public String getGzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        long getSize() {
+            return bytes.length + (gzipBytes != null ? gzipBytes.length : 0);
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    @Data
+    public static class AssetCacheStats {
+        private boolean enabled;
+        private int size;
+
+        /**
+         * 缓存占用的字节数（包括gzip版本）
+         */
+        private long bytes;
+
+        private long hits;
+        private long misses;
+
+        /**
+         * 因超出总大小被淘汰的文件数
+         */
+        private long evictions;
+
+        /**
+         * 因文件变化被移除的文件数
+         */
+        private long invalidations;
+
+        /**
+         * 返回gzip版本的响应次数
+         */
+        private long gzipResponses;
+    }
+}
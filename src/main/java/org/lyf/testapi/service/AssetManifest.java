@@ -0,0 +1,231 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 静态资源清单
+ * 启动时扫描资源目录，为每个文件生成带内容哈希的地址，如 assist/1/egg.png -> /assets/3f2a9c1b/assist/1/egg.png；
+ * 文件内容变化后哈希随之变化，地址也就变化，因此带哈希的地址可以让客户端永久缓存（immutable）
+ * 文件变化时只重新计算变化的文件（由 ResourceFiles 的目录监听通知），不重新扫描整个目录
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class AssetManifest {
+
+    /**
+     * 带哈希地址的前缀
+     */
+    public static final String URL_PREFIX = "/assets/";
+
+    /**
+     * 地址中使用的哈希长度（MD5十六进制的前几位）
+     */
+    public static final int HASH_LENGTH = 8;
+
+    private final ResourceFiles resourceFiles;
+
+    /**
+     * 文件相对路径 -> 内容哈希（前 HASH_LENGTH 位）
+     */
+    private final ConcurrentHashMap<String, String> hashes = new ConcurrentHashMap<>();
+
+    /**
+     * 清单每次变化时加一
+     */
+    private final AtomicLong modifications = new AtomicLong();
+
+    /**
+     * 清单快照，清单变化后下次获取时重新生成
+     */
+    private volatile Snapshot snapshot;
+
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder fileUpdates = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!Files.isDirectory(resourceFiles.getRoot())) {
+            return;
+        }
+        // 先注册监听，扫描期间的变化不会丢失
+        resourceFiles.addListener(new ResourceFiles.ChangeListener() {
+            @Override
+            public void changed(String relativePath) {
+                update(relativePath);
+            }
+
+            @Override
+            public void reset() {
+                hashes.clear();
+                scan("");
+                modifications.incrementAndGet();
+            }
+        });
+        long start = System.currentTimeMillis();
+        scan("");
+        log.info("资源清单生成完成, files:{}, costMs:{}", hashes.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 扫描目录下的所有文件并计算哈希
+     *
+     * @param relativePath 相对于资源目录的路径，空字符串表示整个资源目录
+     */
+    private void scan(String relativePath) {
+        Path root = resourceFiles.getRoot();
+        try (Stream<Path> paths = Files.walk(root.resolve(relativePath))) {
+            paths.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                    .forEach(path -> updateFile(root.relativize(path).toString().replace('\\', '/')));
+        } catch (IOException e) {
+            log.warn("遍历资源文件目录失败: {}", relativePath, e);
+        }
+    }
+
+    /**
+     * 文件或目录变化：删除的移出清单，新建或修改的重新计算哈希
+     */
+    void update(String relativePath) {
+        String prefix = relativePath + "/";
+        hashes.keySet().removeIf(path -> path.equals(relativePath) || path.startsWith(prefix));
+        Path path = resourceFiles.getRoot().resolve(relativePath);
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            scan(relativePath);
+        } else {
+            updateFile(relativePath);
+        }
+        modifications.incrementAndGet();
+    }
+
+    private void updateFile(String relativePath) {
+        if (isHidden(relativePath)) {
+            return;
+        }
+        try {
+            ResourceFiles.ResourceFile file = resourceFiles.get(relativePath);
+            if (file != null) {
+                hashes.put(relativePath, file.getContentHash().substring(0, HASH_LENGTH));
+                fileUpdates.increment();
+            }
+        } catch (IOException e) {
+            log.warn("计算资源文件哈希失败: {}", relativePath, e);
+        }
+    }
+
+    /**
+     * 隐藏文件（.开头，如编辑器或同步工具的临时文件）不放入清单
+     */
+    private static boolean isHidden(String relativePath) {
+        return relativePath.startsWith(".") || relativePath.contains("/.");
+    }
+
+    /**
+     * 获取清单
+     */
+    public Manifest getManifest() {
+        long modification = modifications.get();
+        Snapshot current = snapshot;
+        if (current != null && current.getModification() == modification) {
+            return current.getManifest();
+        }
+        TreeMap<String, String> files = new TreeMap<>();
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : new TreeMap<>(hashes).entrySet()) {
+            files.put(entry.getKey(), url(entry.getKey(), entry.getValue()));
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        // 版本号由清单内容决定，重启后内容不变版本号也不变
+        String version = DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8))
+                .substring(0, 16);
+        Manifest manifest = new Manifest(version, Collections.unmodifiableMap(files));
+        // 生成期间清单又变化时，快照的变化次数较旧，下次获取会重新生成
+        snapshot = new Snapshot(modification, manifest);
+        rebuilds.increment();
+        return manifest;
+    }
+
+    /**
+     * 带哈希的地址
+     *
+     * @param relativePath 相对于资源目录的路径
+     * @param hash         内容哈希（前 HASH_LENGTH 位）
+     */
+    public static String url(String relativePath, String hash) {
+        return URL_PREFIX + hash + "/" + relativePath;
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public AssetManifestStats getStats() {
+        AssetManifestStats stats = new AssetManifestStats();
+        stats.setFiles(hashes.size());
+        Snapshot current = snapshot;
+        stats.setVersion(current != null ? current.getManifest().getVersion() : null);
+        stats.setRebuilds(rebuilds.sum());
+        stats.setFileUpdates(fileUpdates.sum());
+        return stats;
+    }
+
+    /**
+     * 资源清单
+     */
+    @Data
+    public static class Manifest {
+        /**
+         * 清单版本号（内容的哈希）
+         */
+        private final String version;
+
+        /**
+         * 文件相对路径 -> 带哈希的地址
+         */
+        private final Map<String, String> files;
+    }
+
+    /**
+     * 清单快照及其对应的变化次数
+     */
+    @Data
+    private static class Snapshot {
+        private final long modification;
+        private final Manifest manifest;
+    }
+
+    /**
+     * 统计信息
+     */
+    @Data
+    public static class AssetManifestStats {
+        private int files;
+        private String version;
+
+        /**
+         * 重新生成清单快照的次数
+         */
+        private long rebuilds;
+
+        /**
+         * 计算（或重新计算）文件哈希的次数
+         */
+        private long fileUpdates;
+    }
+}
@@ -0,0 +1,160 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步请求处理线程池
+ * 开启 app.async.enabled 后，游戏数据接口的数据库操作在该线程池中执行，Tomcat线程提交任务后立即返回；
+ * 线程数不超过数据库连接池大小，等待队列有长度上限，队列已满的请求直接拒绝（返回503），
+ * 不会在数据库变慢时无限堆积
+ * 微信登录接口在异步模式下使用 WechatLoginService 自己的隔离线程池，不经过这里
+ */
+@Component
+@Slf4j
+public class AsyncRequestExecutor {
+
+    /**
+     * 是否开启异步请求处理
+     */
+    @Value("${app.async.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 数据库操作线程数（建议与数据库连接池大小一致）
+     */
+    @Value("${app.async.db-threads:10}")
+    private int dbThreads;
+
+    /**
+     * 等待数据库线程的最大请求数，超过后直接拒绝
+     */
+    @Value("${app.async.db-queue-size:200}")
+    private int dbQueueSize;
+
+    /**
+     * 异步请求的超时时间（毫秒，包括排队时间），超时后返回503
+     */
+    @Value("${app.async.timeout-ms:10000}")
+    private long timeoutMs;
+
+    private ThreadPoolExecutor dbExecutor;
+
+    /**
+     * 等待队列已满被拒绝的请求数
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        dbExecutor = new ThreadPoolExecutor(dbThreads, dbThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(dbQueueSize), r -> {
+            Thread thread = new Thread(r, "game-db-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        dbExecutor.allowCoreThreadTimeOut(true);
+        log.info("异步请求处理已开启, dbThreads:{}, dbQueueSize:{}, timeoutMs:{}", dbThreads, dbQueueSize, timeoutMs);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (dbExecutor != null) {
+            dbExecutor.shutdown();
+            dbExecutor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    /**
+     * 在数据库线程池中执行任务
+     * 提交线程上绑定的请求数据库耗时累计（RequestDbTime）会带到执行线程
+     *
+     * @param task 任务
+     * @throws RejectedExecutionException 等待队列已满
+     */
+    public void executeDb(Runnable task) {
+        AtomicLong dbTime = RequestDbTime.current();
+        try {
+            dbExecutor.execute(() -> {
+                RequestDbTime.bind(dbTime);
+                try {
+                    task.run();
+                } finally {
+                    RequestDbTime.clear();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("数据库线程池已满，请求直接拒绝, active:{}, queued:{}",
+                    dbExecutor.getActiveCount(), dbExecutor.getQueue().size());
+            throw e;
+        }
+    }
+
+    /**
+     * 获取线程池统计信息
+     */
+    public ExecutorStats getStats() {
+        ExecutorStats stats = new ExecutorStats();
+        stats.setEnabled(enabled);
+        if (dbExecutor != null) {
+            stats.setActive(dbExecutor.getActiveCount());
+            stats.setQueued(dbExecutor.getQueue().size());
+            stats.setCompleted(dbExecutor.getCompletedTaskCount());
+        }
+        stats.setRejected(rejected.sum());
+        return stats;
+    }
+
+    /**
+     * 线程池统计信息
+     */
+    @Data
+    public static class ExecutorStats {
+        private boolean enabled;
+
+        /**
+         * 正在执行的任务数
+         */
+        private int active;
+
+        /**
+         * 排队等待的任务数
+         */
+        private int queued;
+
+        /**
+         * 已完成的任务数
+         */
+        private long completed;
+
+        /**
+         * 等待队列已满被拒绝的任务数
+         */
+        private long rejected;
+    }
+}
@@ -0,0 +1,246 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 熔断器
+ * 关闭状态下按最近 windowSize 次调用统计失败率和慢调用率，调用次数达到 minimumCalls 后任一比例超过阈值即打开；
+ * 打开状态下直接拒绝调用，经过 openDurationMs 后进入半开状态，放行 halfOpenPermittedCalls 次探测调用，
+ * 探测调用全部完成后按同样的阈值判断：未超过则关闭，否则重新打开
+ * 每次状态变化后之前放行的调用结果不再计入统计（通过 tryAcquire 返回的许可编号区分）
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDurationNanos;
+    private final long openDurationNanos;
+    private final int halfOpenPermittedCalls;
+
+    private State state = State.CLOSED;
+
+    /**
+     * 状态编号，每次状态变化加1
+     */
+    private long epoch;
+
+    /**
+     * 关闭状态下的滑动窗口（环形数组）
+     */
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private int windowIndex;
+    private int recordedCalls;
+    private int failureCount;
+    private int slowCallCount;
+
+    private long openedAt;
+    private int halfOpenAcquired;
+    private int halfOpenCompleted;
+    private int halfOpenFailures;
+    private int halfOpenSlowCalls;
+
+    private final LongAdder notPermitted = new LongAdder();
+    private final Map<String, LongAdder> transitions = new ConcurrentHashMap<>();
+
+    /**
+     * @param name                   名称（用于日志）
+     * @param windowSize             滑动窗口大小（调用次数）
+     * @param minimumCalls           开始计算比例所需的最少调用次数
+     * @param failureRateThreshold   失败率阈值（百分比）
+     * @param slowCallRateThreshold  慢调用率阈值（百分比）
+     * @param slowCallDurationMs     超过该耗时的调用记为慢调用（毫秒）
+     * @param openDurationMs         打开状态持续时间（毫秒）
+     * @param halfOpenPermittedCalls 半开状态放行的探测调用次数
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                          int slowCallRateThreshold, long slowCallDurationMs, long openDurationMs,
+                          int halfOpenPermittedCalls) {
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDurationMs);
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.halfOpenPermittedCalls = halfOpenPermittedCalls;
+        this.failures = new boolean[windowSize];
+        this.slowCalls = new boolean[windowSize];
+    }
+
+    /**
+     * 申请调用许可
+     *
+     * @return 许可编号，调用结束后传给 onSuccess / onError / release；不允许调用时返回-1
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return epoch;
+        }
+        if (state == State.HALF_OPEN && halfOpenAcquired < halfOpenPermittedCalls) {
+            halfOpenAcquired++;
+            return epoch;
+        }
+        notPermitted.increment();
+        return -1;
+    }
+
+    /**
+     * 记录成功的调用
+     *
+     * @param permit        tryAcquire 返回的许可编号
+     * @param durationNanos 调用耗时（纳秒）
+     */
+    public synchronized void onSuccess(long permit, long durationNanos) {
+        record(permit, false, durationNanos >= slowCallDurationNanos);
+    }
+
+    /**
+     * 记录失败的调用
+     *
+     * @param permit        tryAcquire 返回的许可编号
+     * @param durationNanos 调用耗时（纳秒）
+     */
+    public synchronized void onError(long permit, long durationNanos) {
+        record(permit, true, durationNanos >= slowCallDurationNanos);
+    }
+
+    /**
+     * 归还未实际执行的调用许可（不计入统计）
+     *
+     * @param permit tryAcquire 返回的许可编号
+     */
+    public synchronized void release(long permit) {
+        if (permit == epoch && state == State.HALF_OPEN) {
+            halfOpenAcquired--;
+        }
+    }
+
+    private void record(long permit, boolean failed, boolean slow) {
+        if (permit != epoch) {
+            return;
+        }
+        if (state == State.CLOSED) {
+            if (recordedCalls == windowSize) {
+                failureCount -= failures[windowIndex] ? 1 : 0;
+                slowCallCount -= slowCalls[windowIndex] ? 1 : 0;
+            } else {
+                recordedCalls++;
+            }
+            failures[windowIndex] = failed;
+            slowCalls[windowIndex] = slow;
+            failureCount += failed ? 1 : 0;
+            slowCallCount += slow ? 1 : 0;
+            windowIndex = (windowIndex + 1) % windowSize;
+            if (recordedCalls >= minimumCalls && exceedsThresholds(failureCount, slowCallCount, recordedCalls)) {
+                transitionTo(State.OPEN);
+            }
+        } else if (state == State.HALF_OPEN) {
+            halfOpenCompleted++;
+            halfOpenFailures += failed ? 1 : 0;
+            halfOpenSlowCalls += slow ? 1 : 0;
+            if (halfOpenCompleted >= halfOpenPermittedCalls) {
+                transitionTo(exceedsThresholds(halfOpenFailures, halfOpenSlowCalls, halfOpenCompleted)
+                        ? State.OPEN : State.CLOSED);
+            }
+        }
+    }
+
+    private boolean exceedsThresholds(int failed, int slow, int total) {
+        return failed * 100 >= failureRateThreshold * total || slow * 100 >= slowCallRateThreshold * total;
+    }
+
+    private void transitionTo(State newState) {
+        State oldState = state;
+        state = newState;
+        epoch++;
+        if (newState == State.OPEN) {
+            openedAt = System.nanoTime();
+            log.warn("熔断器打开, name:{}, from:{}, failureCount:{}, slowCallCount:{}, calls:{}", name, oldState,
+                    oldState == State.CLOSED ? failureCount : halfOpenFailures,
+                    oldState == State.CLOSED ? slowCallCount : halfOpenSlowCalls,
+                    oldState == State.CLOSED ? recordedCalls : halfOpenCompleted);
+        } else {
+            log.info("熔断器状态变化, name:{}, {} -> {}", name, oldState, newState);
+        }
+        if (newState == State.CLOSED) {
+            windowIndex = 0;
+            recordedCalls = 0;
+            failureCount = 0;
+            slowCallCount = 0;
+        }
+        halfOpenAcquired = 0;
+        halfOpenCompleted = 0;
+        halfOpenFailures = 0;
+        halfOpenSlowCalls = 0;
+        transitions.computeIfAbsent(oldState + "->" + newState, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * 当前状态
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 获取熔断器统计信息
+     */
+    public synchronized BreakerStats getStats() {
+        BreakerStats stats = new BreakerStats();
+        stats.setState(state.name());
+        stats.setFailureRate(recordedCalls == 0 ? 0 : failureCount * 100 / recordedCalls);
+        stats.setSlowCallRate(recordedCalls == 0 ? 0 : slowCallCount * 100 / recordedCalls);
+        stats.setNotPermitted(notPermitted.sum());
+        Map<String, Long> counts = new LinkedHashMap<>();
+        transitions.forEach((transition, count) -> counts.put(transition, count.sum()));
+        stats.setTransitions(counts);
+        return stats;
+    }
+
+    /**
+     * 熔断器统计信息
+     */
+    @Data
+    public static class BreakerStats {
+        private String state;
+
+        /**
+         * 关闭状态下滑动窗口内的失败率（百分比）
+         */
+        private int failureRate;
+
+        /**
+         * 关闭状态下滑动窗口内的慢调用率（百分比）
+         */
+        private int slowCallRate;
+
+        /**
+         * 被熔断直接拒绝的调用次数
+         */
+        private long notPermitted;
+
+        /**
+         * 各状态变化的次数，如 CLOSED->OPEN
+         */
+        private Map<String, Long> transitions;
+    }
+}
@@ -0,0 +1,342 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.lyf.testapi.dto.ClickBatchRequest;
+import org.lyf.testapi.dto.PlayerInfo;
+import org.lyf.testapi.dto.UserGameDataPatchRequest;
+import org.lyf.testapi.dto.UserGameDataResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 点击收益计算（服务器权威）
+ * 客户端只上报一段时间内的点击次数，每次点击的收益由服务器按玩家当前数据计算：
+ * clickRewardBase * clickMultiplier * 2^trainingCount（向下取整）
+ * 每个用户的点击速度由内存中的令牌桶限制（每秒最多 max-clicks-per-second 次，最多累积 max-window-ms 的额度），
+ * 超出的点击不计收益；收益通过增量保存记入金钱，开启写缓冲（app.write-behind）时只更新内存，由后台线程定期写入数据库
+ * 保存失败（版本冲突或其他错误）时取出的额度退回，客户端重新获取数据后可以再次上报
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ClickEconomyEngine {
+
+    /**
+     * 合并期间数据被其他请求修改时的最大重试次数
+     */
+    private static final int MAX_RETRIES = 3;
+
+    /**
+     * 培训次数的上限（2^62 已超过金钱的表示范围）
+     */
+    private static final int MAX_TRAINING_EXPONENT = 62;
+
+    private final UserGameDataService userGameDataService;
+
+    /**
+     * 每秒最多计入的点击次数
+     */
+    @Value("${app.clicks.max-clicks-per-second:20}")
+    private int maxClicksPerSecond;
+
+    /**
+     * 一次上报的最大时间窗口（毫秒），同时也是令牌桶最多累积的时长
+     */
+    @Value("${app.clicks.max-window-ms:60000}")
+    private long maxWindowMs;
+
+    /**
+     * 内存中最多保存的用户点击额度数量，超出时淘汰最久未点击的用户
+     */
+    @Value("${app.clicks.max-users:100000}")
+    private int maxUsers;
+
+    /**
+     * 每个用户的点击额度，按访问顺序排列，最久未点击的在最前面
+     */
+    private final LinkedHashMap<String, ClickBudget> budgets = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder clicks = new LongAdder();
+    private final LongAdder acceptedClicks = new LongAdder();
+    private final LongAdder reward = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+
+    /**
+     * 记入一批点击的收益
+     *
+     * @param request 点击批量上报请求
+     * @return 处理结果
+     */
+    public ClickResult applyClicks(ClickBatchRequest request) {
+        String validateError = validateRequest(request);
+        if (validateError != null) {
+            log.warn("点击数据校验失败, userId:{}, error:{}", request.getUserId(), validateError);
+            return ClickResult.error(validateError);
+        }
+        batches.increment();
+        clicks.add(request.getCount());
+
+        long window = Math.max(request.getEndTime() - request.getStartTime(), 1000L);
+        int requested = (int) Math.min(request.getCount(), window * maxClicksPerSecond / 1000);
+        int accepted = -1;
+        for (int attempt = 0; ; attempt++) {
+            UserGameDataResponse current = userGameDataService.getUserGameData(request.getUserId());
+            if (request.getVersion() != null && !request.getVersion().equals(current.getVersion())) {
+                conflicts.increment();
+                release(request.getUserId(), accepted);
+                return ClickResult.conflict();
+            }
+            if (accepted < 0) {
+                // 先按客户端时间窗口限制，再按服务器时间的令牌桶限制；重试时不再重复扣除
+                accepted = acquire(request.getUserId(), requested, System.currentTimeMillis());
+                if (accepted < request.getCount()) {
+                    log.debug("点击速度超出限制, userId:{}, count:{}, accepted:{}",
+                            request.getUserId(), request.getCount(), accepted);
+                }
+            }
+            long rewardPerClick = clickReward(current.getPlayerInfo());
+            long total = multiply(rewardPerClick, accepted);
+            long money = current.getPlayerInfo().getMoney();
+            if (total == 0) {
+                acceptedClicks.add(accepted);
+                return new ClickResult(accepted, rewardPerClick, 0, money, current.getVersion(),
+                        current.getLastUpdateTime());
+            }
+
+            UserGameDataPatchRequest patch = new UserGameDataPatchRequest();
+            patch.setUserId(request.getUserId());
+            patch.setMoneyDelta(Math.min(total, Long.MAX_VALUE - money));
+            // 以读取到的版本号保存，读取后数据被修改时按冲突处理，保证收益按读取到的数据计算
+            patch.setVersion(current.getVersion());
+            UserGameDataService.SaveResult result = userGameDataService.patchUserGameData(patch);
+            if (result.getSuccess()) {
+                acceptedClicks.add(accepted);
+                reward.add(patch.getMoneyDelta());
+                return new ClickResult(accepted, rewardPerClick, patch.getMoneyDelta(), money + patch.getMoneyDelta(),
+                        result.getVersion(), result.getLastUpdateTime());
+            }
+            if (!result.isConflict()) {
+                release(request.getUserId(), accepted);
+                return ClickResult.error(result.getError());
+            }
+            conflicts.increment();
+            if (request.getVersion() != null || attempt >= MAX_RETRIES) {
+                release(request.getUserId(), accepted);
+                return ClickResult.conflict();
+            }
+            log.debug("记入点击收益期间数据已变化, 重新计算, userId:{}, attempt:{}", request.getUserId(), attempt + 1);
+        }
+    }
+
+    /**
+     * 点击数据校验
+     */
+    private String validateRequest(ClickBatchRequest request) {
+        if (request.getUserId() == null || request.getUserId().trim().isEmpty()) {
+            return "用户ID不能为空";
+        }
+        if (request.getCount() == null || request.getCount() < 1) {
+            return "点击次数必须大于0";
+        }
+        if (request.getStartTime() == null || request.getEndTime() == null
+                || request.getEndTime() < request.getStartTime()) {
+            return "点击时间窗口无效";
+        }
+        if (request.getEndTime() - request.getStartTime() > maxWindowMs) {
+            return "点击时间窗口不能超过" + maxWindowMs / 1000 + "秒";
+        }
+        return null;
+    }
+
+    /**
+     * 每次点击的收益：clickRewardBase * clickMultiplier * 2^trainingCount（向下取整）
+     */
+    static long clickReward(PlayerInfo playerInfo) {
+        long base = playerInfo.getClickRewardBase() != null ? playerInfo.getClickRewardBase() : 0L;
+        double multiplier = playerInfo.getClickMultiplier() != null ? playerInfo.getClickMultiplier() : 1.0;
+        int trainingCount = playerInfo.getTrainingCount() != null ? playerInfo.getTrainingCount() : 0;
+        double value = base * multiplier * Math.pow(2, Math.min(trainingCount, MAX_TRAINING_EXPONENT));
+        if (value >= Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return value > 0 ? (long) Math.floor(value) : 0L;
+    }
+
+    private static long multiply(long value, int count) {
+        try {
+            return Math.multiplyExact(value, count);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 从用户的点击额度中取出最多 count 次
+     *
+     * @return 实际取得的次数
+     */
+    int acquire(String userId, int count, long now) {
+        synchronized (budgets) {
+            ClickBudget budget = budgets.get(userId);
+            if (budget == null) {
+                budget = new ClickBudget(capacity(), now);
+                budgets.put(userId, budget);
+                if (budgets.size() > maxUsers) {
+                    budgets.remove(budgets.keySet().iterator().next());
+                }
+            }
+            budget.refill(now, maxClicksPerSecond, capacity());
+            int granted = (int) Math.min(count, (long) budget.tokens);
+            budget.tokens -= granted;
+            return granted;
+        }
+    }
+
+    /**
+     * 退回未记入收益的点击额度（不超过令牌桶容量）
+     */
+    void release(String userId, int count) {
+        if (count <= 0) {
+            return;
+        }
+        synchronized (budgets) {
+            ClickBudget budget = budgets.get(userId);
+            if (budget != null) {
+                budget.tokens = Math.min(capacity(), budget.tokens + count);
+            }
+        }
+    }
+
+    private double capacity() {
+        return maxWindowMs / 1000.0 * maxClicksPerSecond;
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public ClickStats getStats() {
+        ClickStats stats = new ClickStats();
+        synchronized (budgets) {
+            stats.setUsers(budgets.size());
+        }
+        stats.setBatches(batches.sum());
+        stats.setClicks(clicks.sum());
+        stats.setAcceptedClicks(acceptedClicks.sum());
+        stats.setReward(reward.sum());
+        stats.setConflicts(conflicts.sum());
+        return stats;
+    }
+
+    /**
+     * 用户的点击额度（令牌桶），按经过的时间补充
+     */
+    private static class ClickBudget {
+        private double tokens;
+        private long updateTime;
+
+        ClickBudget(double tokens, long updateTime) {
+            this.tokens = tokens;
+            this.updateTime = updateTime;
+        }
+
+        void refill(long now, int perSecond, double capacity) {
+            if (now > updateTime) {
+                tokens = Math.min(capacity, tokens + (now - updateTime) / 1000.0 * perSecond);
+                updateTime = now;
+            }
+        }
+    }
+
+    /**
+     * 点击处理结果
+     */
+    @Data
+    public static class ClickResult {
+        private boolean success;
+
+        /**
+         * 计入收益的点击次数（超出速度限制的点击不计入）
+         */
+        private int acceptedClicks;
+
+        private long rewardPerClick;
+
+        /**
+         * 本次记入的收益
+         */
+        private long reward;
+
+        /**
+         * 记入收益后的金钱
+         */
+        private long money;
+
+        private Long version;
+        private LocalDateTime lastUpdateTime;
+        private String error;
+
+        /**
+         * 是否因版本冲突失败（客户端需要重新获取数据）
+         */
+        private boolean conflict;
+
+        public ClickResult(int acceptedClicks, long rewardPerClick, long reward, long money, Long version,
+                           LocalDateTime lastUpdateTime) {
+            this.success = true;
+            this.acceptedClicks = acceptedClicks;
+            this.rewardPerClick = rewardPerClick;
+            this.reward = reward;
+            this.money = money;
+            this.version = version;
+            this.lastUpdateTime = lastUpdateTime;
+        }
+
+        private ClickResult(String error) {
+            this.error = error;
+        }
+
+        static ClickResult error(String error) {
+            return new ClickResult(error);
+        }
+
+        static ClickResult conflict() {
+            ClickResult result = new ClickResult("数据已在其他设备更新，请重新获取数据后再上报");
+            result.setConflict(true);
+            return result;
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    @Data
+    public static class ClickStats {
+        /**
+         * 内存中保存点击额度的用户数
+         */
+        private int users;
+
+        private long batches;
+        private long clicks;
+
+        /**
+         * 计入收益的点击次数
+         */
+        private long acceptedClicks;
+
+        /**
+         * 记入的总收益
+         */
+        private long reward;
+
+        private long conflicts;
+    }
+}
@@ -0,0 +1,181 @@
+package org.lyf.testapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.lyf.testapi.dto.Assistant;
+import org.lyf.testapi.dto.Challenge;
+import org.lyf.testapi.dto.PlayerInfo;
+import org.lyf.testapi.dto.Result;
+import org.lyf.testapi.dto.Settings;
+import org.lyf.testapi.dto.UserGameDataResponse;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 首次访问用户的默认数据
+ * 数据库中没有用户数据时不再插入默认数据，而是返回默认数据（版本号为0，最后更新时间为null），
+ * 用户第一次保存时才写入数据库；只打开一次游戏就离开的用户不会产生任何写入
+ * 默认数据的响应体在启动时序列化一次，所有用户共用，之后只替换其中的 userId；
+ * create 每次返回新的对象，调用方可以修改，不影响其他用户和共用的响应体
+ */
+@Component
+@RequiredArgsConstructor
+public class DefaultUserGameData {
+
+    /**
+     * 序列化模板时使用的 userId，之后替换为实际的 userId
+     */
+    private static final String USER_ID_PLACEHOLDER = "__default_user_id__";
+
+    /**
+     * 与Spring MVC使用同一个ObjectMapper，保证与正常序列化的结果一致
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 响应体模板中 userId 之前和之后的部分
+     */
+    private byte[] bodyPrefix;
+    private byte[] bodySuffix;
+
+    private final LongAdder served = new LongAdder();
+
+    @PostConstruct
+    public void init() throws Exception {
+        byte[] template = objectMapper.writeValueAsBytes(Result.success(create(USER_ID_PLACEHOLDER)));
+        byte[] placeholder = objectMapper.writeValueAsBytes(USER_ID_PLACEHOLDER);
+        int index = indexOf(template, placeholder);
+        bodyPrefix = new byte[index];
+        System.arraycopy(template, 0, bodyPrefix, 0, index);
+        bodySuffix = new byte[template.length - index - placeholder.length];
+        System.arraycopy(template, index + placeholder.length, bodySuffix, 0, bodySuffix.length);
+    }
+
+    /**
+     * 创建用户的默认数据
+     *
+     * @param userId 用户ID
+     */
+    public UserGameDataResponse create(String userId) {
+        UserGameDataResponse response = new UserGameDataResponse();
+        response.setUserId(userId);
+        response.setPlayerInfo(newPlayerInfo());
+        response.setAssistants(newAssistants());
+        response.setChallenges(newChallenges());
+        response.setSettings(Settings.createDefault());
+        response.setVersion(0L);
+        response.setDefaultData(true);
+        return response;
+    }
+
+    /**
+     * 是否为 create 返回的默认数据（可以直接使用 serialize 返回的响应体）
+     */
+    public boolean isDefault(UserGameDataResponse response) {
+        return response.isDefaultData();
+    }
+
+    /**
+     * 默认数据的完整响应体（Result.success 序列化后的字节）
+     *
+     * @param userId 用户ID
+     */
+    public byte[] serialize(String userId) throws Exception {
+        byte[] quoted = objectMapper.writeValueAsBytes(userId);
+        byte[] body = new byte[bodyPrefix.length + quoted.length + bodySuffix.length];
+        System.arraycopy(bodyPrefix, 0, body, 0, bodyPrefix.length);
+        System.arraycopy(quoted, 0, body, bodyPrefix.length, quoted.length);
+        System.arraycopy(bodySuffix, 0, body, bodyPrefix.length + quoted.length, bodySuffix.length);
+        served.increment();
+        return body;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target) {
+        for (int i = 0; i + target.length <= bytes.length; i++) {
+            int j = 0;
+            while (j < target.length && bytes[i + j] == target[j]) {
+                j++;
+            }
+            if (j == target.length) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("默认数据模板中未找到 userId: "
+                + new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 默认玩家信息：等级1，金钱0
+     */
+    static PlayerInfo newPlayerInfo() {
+        PlayerInfo playerInfo = new PlayerInfo();
+        playerInfo.setPlayerLevel(1);
+        playerInfo.setMoney(0L);
+        playerInfo.setClickRewardBase(100L);
+        playerInfo.setClickMultiplier(1.0);
+        playerInfo.setUpgradeCost(10L);
+        playerInfo.setTrainingCount(0); // 默认培训次数为 0
+        return playerInfo;
+    }
+
+    /**
+     * 默认助理数据：4个，全部未解锁
+     */
+    static List<Assistant> newAssistants() {
+        List<Assistant> assistants = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            Assistant assistant = new Assistant();
+            assistant.setId(i);
+            assistant.setUnlocked(false);
+            assistant.setLevel(0);
+            assistants.add(assistant);
+        }
+        return assistants;
+    }
+
+    /**
+     * 默认挑战数据：5个，全部未完成
+     */
+    static List<Challenge> newChallenges() {
+        List<Challenge> challenges = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Challenge challenge = new Challenge();
+            challenge.setId(i);
+            challenge.setCompleted(false);
+            challenges.add(challenge);
+        }
+        return challenges;
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public DefaultUserGameDataStats getStats() {
+        DefaultUserGameDataStats stats = new DefaultUserGameDataStats();
+        stats.setServed(served.sum());
+        stats.setBodyBytes(bodyPrefix != null ? bodyPrefix.length + bodySuffix.length : 0);
+        return stats;
+    }
+
+    /**
+     * 统计信息
+     */
+    @Data
+    public static class DefaultUserGameDataStats {
+        /**
+         * 返回默认数据响应体的次数（数据库中没有数据的用户）
+         */
+        private long served;
+
+        /**
+         * 默认数据响应体模板的字节数（不含 userId）
+         */
+        private int bodyBytes;
+    }
+}
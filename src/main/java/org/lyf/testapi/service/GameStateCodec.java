@@ -0,0 +1,147 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import org.lyf.testapi.dto.Assistant;
+import org.lyf.testapi.dto.Challenge;
+import org.lyf.testapi.dto.Settings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 助理、挑战、设置数据的紧凑二进制编码（对应 state_blob 列）
+ * 格式（版本1）：
+ * <pre>
+ * [0]        格式版本，固定为1
+ * [1]        助理数量 N
+ * [2]        挑战数量 M
+ * [3, 3+N)   每个助理一个字节：最高位为是否解锁，低6位为等级（0-63）
+ * 之后 (M+7)/8 字节   挑战完成位图，第 i 个挑战对应第 i/8 字节的第 i%8 位
+ * 最后1字节  设置位图：bit0 音效开关，bit1 背景音乐开关
+ * </pre>
+ * 助理和挑战的ID不单独存储，按数组顺序从1开始编号；ID不连续的数据无法编码，仍按JSON存储
+ * 默认的4个助理、5个挑战编码后共9字节
+ */
+public final class GameStateCodec {
+
+    private static final byte FORMAT_V1 = 1;
+    private static final int HEADER_SIZE = 3;
+    private static final int MAX_COUNT = 255;
+    private static final int MAX_LEVEL = 0x3F;
+    private static final int UNLOCKED_BIT = 0x80;
+    private static final int SOUND_BIT = 0x01;
+    private static final int MUSIC_BIT = 0x02;
+
+    private GameStateCodec() {
+    }
+
+    /**
+     * 编码
+     *
+     * @param assistants 助理数据
+     * @param challenges 挑战数据
+     * @param settings   设置数据（缺失项按开启处理）
+     * @return 编码后的字节，数据无法用紧凑格式表示（ID不连续、等级超出范围、数量过多）时返回null
+     */
+    public static byte[] encode(List<Assistant> assistants, List<Challenge> challenges, Settings settings) {
+        if (assistants == null || challenges == null
+                || assistants.size() > MAX_COUNT || challenges.size() > MAX_COUNT) {
+            return null;
+        }
+        int assistantCount = assistants.size();
+        int challengeCount = challenges.size();
+        byte[] bytes = new byte[HEADER_SIZE + assistantCount + (challengeCount + 7) / 8 + 1];
+        bytes[0] = FORMAT_V1;
+        bytes[1] = (byte) assistantCount;
+        bytes[2] = (byte) challengeCount;
+
+        int pos = HEADER_SIZE;
+        for (int i = 0; i < assistantCount; i++) {
+            Assistant assistant = assistants.get(i);
+            Integer level = assistant.getLevel();
+            if (assistant.getId() == null || assistant.getId() != i + 1 || level == null || level < 0 || level > MAX_LEVEL) {
+                return null;
+            }
+            bytes[pos++] = (byte) ((Boolean.TRUE.equals(assistant.getUnlocked()) ? UNLOCKED_BIT : 0) | level);
+        }
+
+        for (int i = 0; i < challengeCount; i++) {
+            Challenge challenge = challenges.get(i);
+            if (challenge.getId() == null || challenge.getId() != i + 1) {
+                return null;
+            }
+            if (Boolean.TRUE.equals(challenge.getCompleted())) {
+                bytes[pos + i / 8] |= (byte) (1 << (i % 8));
+            }
+        }
+        pos += (challengeCount + 7) / 8;
+
+        int settingsBits = 0;
+        if (settings == null || !Boolean.FALSE.equals(settings.getSoundEnabled())) {
+            settingsBits |= SOUND_BIT;
+        }
+        if (settings == null || !Boolean.FALSE.equals(settings.getMusicEnabled())) {
+            settingsBits |= MUSIC_BIT;
+        }
+        bytes[pos] = (byte) settingsBits;
+        return bytes;
+    }
+
+    /**
+     * 解码
+     *
+     * @param bytes 编码后的字节
+     * @return 解码后的数据
+     * @throws IllegalArgumentException 格式版本未知或长度不正确
+     */
+    public static GameState decode(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_SIZE || bytes[0] != FORMAT_V1) {
+            throw new IllegalArgumentException("未知的数据格式");
+        }
+        int assistantCount = bytes[1] & 0xFF;
+        int challengeCount = bytes[2] & 0xFF;
+        if (bytes.length != HEADER_SIZE + assistantCount + (challengeCount + 7) / 8 + 1) {
+            throw new IllegalArgumentException("数据长度不正确: " + bytes.length);
+        }
+
+        int pos = HEADER_SIZE;
+        List<Assistant> assistants = new ArrayList<>(assistantCount);
+        for (int i = 0; i < assistantCount; i++) {
+            int value = bytes[pos++] & 0xFF;
+            Assistant assistant = new Assistant();
+            assistant.setId(i + 1);
+            assistant.setUnlocked((value & UNLOCKED_BIT) != 0);
+            assistant.setLevel(value & MAX_LEVEL);
+            assistants.add(assistant);
+        }
+
+        List<Challenge> challenges = new ArrayList<>(challengeCount);
+        for (int i = 0; i < challengeCount; i++) {
+            Challenge challenge = new Challenge();
+            challenge.setId(i + 1);
+            challenge.setCompleted((bytes[pos + i / 8] & (1 << (i % 8))) != 0);
+            challenges.add(challenge);
+        }
+        pos += (challengeCount + 7) / 8;
+
+        Settings settings = new Settings();
+        settings.setSoundEnabled((bytes[pos] & SOUND_BIT) != 0);
+        settings.setMusicEnabled((bytes[pos] & MUSIC_BIT) != 0);
+
+        GameState state = new GameState();
+        state.setAssistants(assistants);
+        state.setChallenges(challenges);
+        state.setSettings(settings);
+        return state;
+    }
+
+    /**
+     * 解码后的数据
+     */
+    @Data
+    public static class GameState {
+        private List<Assistant> assistants;
+        private List<Challenge> challenges;
+        private Settings settings;
+    }
+}
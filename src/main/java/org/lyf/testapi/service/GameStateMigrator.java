@@ -0,0 +1,90 @@
+package org.lyf.testapi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.lyf.testapi.entity.UserGameData;
+import org.lyf.testapi.mapper.UserGameDataMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 存量数据迁移：把仍按JSON列存储的助理、挑战、设置数据转换为紧凑格式（state_blob）
+ * 在 app.storage.format=binary 且开启 app.storage.migrate-on-startup 时，应用启动后在后台线程按ID分页执行；
+ * 转换时校验版本号，迁移期间被保存过的数据跳过（保存时已按紧凑格式写入）
+ * 未开启时存量数据在下一次保存时自动转换
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class GameStateMigrator {
+
+    private final UserGameDataMapper userGameDataMapper;
+    private final UserGameDataService userGameDataService;
+
+    @Value("${app.storage.format:json}")
+    private String storageFormat;
+
+    /**
+     * 启动时是否迁移存量数据
+     */
+    @Value("${app.storage.migrate-on-startup:false}")
+    private boolean migrateOnStartup;
+
+    /**
+     * 每页条数
+     */
+    @Value("${app.storage.migrate-page-size:500}")
+    private int pageSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!migrateOnStartup || !"binary".equalsIgnoreCase(storageFormat)) {
+            return;
+        }
+        Thread thread = new Thread(this::migrateQuietly, "state-migrator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void migrateQuietly() {
+        try {
+            migrate();
+        } catch (Exception e) {
+            log.error("存量数据迁移为紧凑格式失败", e);
+        }
+    }
+
+    /**
+     * 迁移全部存量数据
+     *
+     * @return 成功转换的条数
+     */
+    public int migrate() {
+        log.info("开始迁移存量数据为紧凑格式, pageSize:{}", pageSize);
+        long afterId = 0;
+        int converted = 0;
+        int skipped = 0;
+        while (true) {
+            List<UserGameData> page = userGameDataMapper.selectJsonStatePage(afterId, pageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            for (UserGameData userGameData : page) {
+                byte[] stateBlob = userGameDataService.encodeStateBlob(userGameData);
+                if (stateBlob != null
+                        && userGameDataMapper.updateStateBlob(userGameData.getId(), userGameData.getVersion(), stateBlob) > 0) {
+                    converted++;
+                } else {
+                    skipped++;
+                }
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+        log.info("存量数据迁移完成, converted:{}, skipped:{}", converted, skipped);
+        return converted;
+    }
+}
@@ -0,0 +1,181 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁耗时直方图
+ * 按微秒记录耗时，桶按2的幂分段，每段再等分为16个子桶（相对误差不超过约6%），覆盖 0 ~ 2^41 微秒；
+ * 记录只做一次原子自增，不加锁，可以在每个请求上调用
+ * 分位数按最近一到两个统计窗口内的数据计算（窗口到期时整体切换，不阻塞记录），总次数和总耗时从启动开始累计
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+
+    /**
+     * 桶数量：0~15 微秒每微秒一个桶，之后每个2的幂区间16个桶
+     */
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long windowNanos;
+
+    /**
+     * 当前窗口和上一个窗口，切换时整体替换
+     */
+    private volatile Windows windows = new Windows(new AtomicLongArray(BUCKETS), new AtomicLongArray(BUCKETS));
+
+    /**
+     * 下一次切换窗口的时间（System.nanoTime）
+     */
+    private final AtomicLong rotateAt;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Long::max, 0);
+
+    /**
+     * @param windowMillis 统计窗口长度（毫秒）
+     */
+    public LatencyHistogram(long windowMillis) {
+        this.windowNanos = Math.max(windowMillis, 1) * 1_000_000L;
+        this.rotateAt = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param durationNanos 耗时（纳秒）
+     */
+    public void record(long durationNanos) {
+        long micros = Math.max(durationNanos, 0) / 1000;
+        rotateIfDue(System.nanoTime());
+        windows.current.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    /**
+     * 窗口到期时切换；只有CAS成功的线程执行切换，其他线程继续写入原窗口
+     */
+    private void rotateIfDue(long now) {
+        long due = rotateAt.get();
+        if (now - due < 0 || !rotateAt.compareAndSet(due, now + windowNanos)) {
+            return;
+        }
+        Windows old = windows;
+        // 超过一个窗口没有切换（长时间没有请求），上一个窗口的数据已经过时
+        AtomicLongArray previous = now - due < windowNanos ? old.current : new AtomicLongArray(BUCKETS);
+        windows = new Windows(new AtomicLongArray(BUCKETS), previous);
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 桶内最大的值（微秒），分位数按桶上界报告
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * 获取统计快照
+     */
+    public Snapshot snapshot() {
+        rotateIfDue(System.nanoTime());
+        Windows current = windows;
+        long[] buckets = new long[BUCKETS];
+        long windowCount = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = current.current.get(i) + current.previous.get(i);
+            windowCount += buckets[i];
+        }
+
+        Snapshot snapshot = new Snapshot();
+        snapshot.setCount(count.sum());
+        snapshot.setSumMs(sumMicros.sum() / 1000.0);
+        snapshot.setMaxMs(maxMicros.get() / 1000.0);
+        snapshot.setWindowCount(windowCount);
+        snapshot.setP50Ms(quantile(buckets, windowCount, 0.5) / 1000.0);
+        snapshot.setP99Ms(quantile(buckets, windowCount, 0.99) / 1000.0);
+        snapshot.setP999Ms(quantile(buckets, windowCount, 0.999) / 1000.0);
+        return snapshot;
+    }
+
+    private static long quantile(long[] buckets, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(buckets.length - 1);
+    }
+
+    private static class Windows {
+        private final AtomicLongArray current;
+        private final AtomicLongArray previous;
+
+        private Windows(AtomicLongArray current, AtomicLongArray previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * 统计快照，耗时单位为毫秒
+     */
+    @Data
+    public static class Snapshot {
+        /**
+         * 启动以来的总次数
+         */
+        private long count;
+
+        /**
+         * 启动以来的总耗时
+         */
+        private double sumMs;
+
+        /**
+         * 启动以来的最大耗时
+         */
+        private double maxMs;
+
+        /**
+         * 最近统计窗口内的次数，以下分位数按这些数据计算
+         */
+        private long windowCount;
+
+        private double p50Ms;
+        private double p99Ms;
+        private double p999Ms;
+    }
+}
@@ -0,0 +1,286 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.lyf.testapi.entity.UserGameData;
+import org.lyf.testapi.mapper.UserGameDataMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内存排行榜（金钱榜、等级榜）
+ * 应用启动后在后台线程按ID分页读取全部用户的金钱和等级建立索引（RankedIndex），之后由 UserGameDataService
+ * 在保存成功时更新；查询前N名和用户排名都只访问内存，不执行 ORDER BY（表上没有金钱和等级的索引）
+ * 每个用户记录最近一次更新的版本号，版本号更旧的数据（如启动加载时读到的旧数据）不会覆盖较新的数据
+ * 注意：多实例部署时其他节点的保存不会更新本节点的排行榜，重启后重新加载
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class Leaderboard {
+
+    /**
+     * 排行榜类型
+     */
+    public enum Type {
+        MONEY, LEVEL;
+
+        /**
+         * 按名称（money、level，不区分大小写）查找类型
+         *
+         * @return 类型，名称无效时返回null
+         */
+        public static Type of(String name) {
+            for (Type type : values()) {
+                if (type.name().equalsIgnoreCase(name)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 是否开启排行榜（默认关闭，开启后启动时会把全部用户的金钱和等级读入内存）
+     */
+    @Value("${app.leaderboard.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 启动加载时每页读取的条数
+     */
+    @Value("${app.leaderboard.load-page-size:1000}")
+    private int loadPageSize;
+
+    private final UserGameDataMapper userGameDataMapper;
+
+    /**
+     * 以下索引和版本号都由 lock 保护
+     */
+    private final Object lock = new Object();
+    private final RankedIndex moneyIndex = new RankedIndex();
+    private final RankedIndex levelIndex = new RankedIndex();
+    private final HashMap<String, Long> versions = new HashMap<>();
+
+    /**
+     * 启动加载是否已完成（完成前排行榜中可能缺少部分用户）
+     */
+    private volatile boolean ready;
+    private volatile long loadCostMs;
+
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::loadQuietly, "leaderboard-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void loadQuietly() {
+        try {
+            load();
+        } catch (Exception e) {
+            log.error("加载排行榜失败", e);
+        }
+    }
+
+    /**
+     * 读取全部用户数据建立排行榜
+     *
+     * @return 读取的条数
+     */
+    public int load() {
+        long start = System.currentTimeMillis();
+        long afterId = 0;
+        int loaded = 0;
+        while (true) {
+            List<UserGameData> page = userGameDataMapper.selectScorePage(afterId, loadPageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            synchronized (lock) {
+                for (UserGameData data : page) {
+                    put(data.getUserId(), data.getMoney() != null ? data.getMoney() : 0L,
+                            data.getPlayerLevel() != null ? data.getPlayerLevel() : 1,
+                            data.getVersion() != null ? data.getVersion() : 0L);
+                }
+            }
+            loaded += page.size();
+            afterId = page.get(page.size() - 1).getId();
+        }
+        loadCostMs = System.currentTimeMillis() - start;
+        ready = true;
+        log.info("排行榜加载完成, users:{}, costMs:{}", loaded, loadCostMs);
+        return loaded;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 保存成功后更新用户的金钱和等级
+     *
+     * @param version 保存后的版本号，比已记录的版本号旧时忽略
+     */
+    public void update(String userId, long money, int playerLevel, long version) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            put(userId, money, playerLevel, version);
+        }
+        updates.increment();
+    }
+
+    /**
+     * 增量保存成功后按变化量更新（排行榜中还没有该用户时忽略，由启动加载或之后的完整保存补上）
+     *
+     * @param version 保存后的版本号
+     */
+    public void add(String userId, long moneyDelta, int playerLevelDelta, long version) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            Long money = moneyIndex.getScore(userId);
+            if (money == null) {
+                return;
+            }
+            moneyIndex.put(userId, money + moneyDelta);
+            levelIndex.put(userId, levelIndex.getScore(userId) + playerLevelDelta);
+            versions.put(userId, Math.max(version, versions.get(userId)));
+        }
+        updates.increment();
+    }
+
+    /**
+     * 移除用户（保存的数据被丢弃时，排行榜中的数据已不再对应数据库中的数据）
+     */
+    public void remove(String userId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            moneyIndex.remove(userId);
+            levelIndex.remove(userId);
+            versions.remove(userId);
+        }
+    }
+
+    private void put(String userId, long money, int playerLevel, long version) {
+        Long current = versions.get(userId);
+        if (current != null && current > version) {
+            return;
+        }
+        versions.put(userId, version);
+        moneyIndex.put(userId, money);
+        levelIndex.put(userId, playerLevel);
+    }
+
+    /**
+     * 按排名取出一段
+     *
+     * @param offset 跳过的名次数（0表示从第1名开始）
+     * @param limit  最多返回的条数
+     */
+    public List<RankedIndex.Entry> top(Type type, int offset, int limit) {
+        queries.increment();
+        synchronized (lock) {
+            return index(type).range(offset, limit);
+        }
+    }
+
+    /**
+     * 获取用户的排名
+     *
+     * @return 排名和分数，用户不在排行榜中时返回null
+     */
+    public RankedIndex.Entry rankOf(Type type, String userId) {
+        queries.increment();
+        synchronized (lock) {
+            RankedIndex index = index(type);
+            int rank = index.rank(userId);
+            return rank > 0 ? new RankedIndex.Entry(rank, userId, index.getScore(userId)) : null;
+        }
+    }
+
+    /**
+     * 排行榜中的用户数
+     */
+    public int size() {
+        synchronized (lock) {
+            return moneyIndex.size();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 排行榜中展示的玩家标识（openid的哈希，不直接返回其他用户的openid）
+     */
+    public static String playerId(String userId) {
+        return DigestUtils.md5DigestAsHex(userId.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    private RankedIndex index(Type type) {
+        return type == Type.MONEY ? moneyIndex : levelIndex;
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public LeaderboardStats getStats() {
+        LeaderboardStats stats = new LeaderboardStats();
+        stats.setEnabled(enabled);
+        stats.setReady(ready);
+        stats.setUsers(size());
+        stats.setLoadCostMs(loadCostMs);
+        stats.setUpdates(updates.sum());
+        stats.setQueries(queries.sum());
+        return stats;
+    }
+
+    /**
+     * 统计信息
+     */
+    @Data
+    public static class LeaderboardStats {
+        private boolean enabled;
+
+        /**
+         * 启动加载是否已完成
+         */
+        private boolean ready;
+
+        private int users;
+
+        /**
+         * 启动加载耗时（毫秒）
+         */
+        private long loadCostMs;
+
+        /**
+         * 保存时更新排行榜的次数
+         */
+        private long updates;
+
+        private long queries;
+    }
+}
@@ -0,0 +1,513 @@
+package org.lyf.testapi.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的持久化token存储
+ * token的签发和吊销以追加方式写入内存映射的日志文件，查询只访问内存索引；
+ * 启动时重放日志文件恢复未过期的token，重启后客户端无需重新登录。
+ * 日志文件写满时把有效token写入新一代文件（压缩），切换成功后删除旧文件
+ *
+ * 文件格式：文件头 [int magic][int 格式版本]，之后为若干条记录
+ * 记录格式：[byte 类型][int 记录体长度][记录体][int CRC32]，类型为0表示文件结尾
+ * 记录体：[long 过期时间毫秒][short token长度][token][short openid长度][openid]
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.token.mode", havingValue = "mmap")
+public class MappedFileTokenStore implements TokenStore {
+
+    private static final int MAGIC = 0x544F4B31;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final byte TYPE_END = 0;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_REMOVE = 2;
+    private static final Pattern FILE_NAME = Pattern.compile("tokens-(\\d+)\\.dat");
+
+    /**
+     * token文件目录
+     */
+    @Value("${app.token.store-dir:./data/tokens}")
+    private String storeDir;
+
+    /**
+     * 单个token文件的初始大小（MB）
+     */
+    @Value("${app.token.store-file-size-mb:16}")
+    private int fileSizeMb;
+
+    /**
+     * 时间轮每个时间槽的时长（毫秒）
+     */
+    @Value("${app.token.wheel-tick-ms:1000}")
+    private long tickMs;
+
+    /**
+     * token有效期（秒），用于确定时间轮跨度
+     */
+    @Value("${app.token.expires-in:7200}")
+    private int expiresIn;
+
+    /**
+     * 最多保存的token数量
+     */
+    @Value("${app.token.max-tokens:200000}")
+    private int maxTokens;
+
+    /**
+     * 内存索引
+     * Key: token
+     * Value: token信息
+     */
+    private final Map<String, TokenEntry> tokens = new ConcurrentHashMap<>();
+
+    /**
+     * 写锁，文件追加、压缩以及索引的修改都在锁内进行
+     */
+    private final Object writeLock = new Object();
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder revoked = new LongAdder();
+
+    private long generation;
+    private Path currentFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean dirty;
+
+    private TokenExpiryWheel wheel;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * token信息
+     */
+    private static class TokenEntry {
+        private final String openid;
+        private final long expireTime;
+
+        /**
+         * 时间轮中的节点，吊销时从时间轮摘除
+         */
+        private volatile TokenExpiryWheel.Node node;
+
+        TokenEntry(String openid, long expireTime) {
+            this.openid = openid;
+            this.expireTime = expireTime;
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        int wheelSize = (int) (expiresIn * 1000L / tickMs) + 2;
+        wheel = new TokenExpiryWheel(tickMs, wheelSize, this::expire);
+
+        Path dir = Paths.get(storeDir);
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "tokens-*.dat")) {
+            for (Path file : stream) {
+                if (FILE_NAME.matcher(file.getFileName().toString()).matches()) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort((a, b) -> Long.compare(generationOf(b), generationOf(a)));
+
+        synchronized (writeLock) {
+            // 使用文件头完整的最新一代文件，压缩中途退出留下的不完整文件和旧文件都删除
+            for (Path file : files) {
+                if (currentFile == null && hasValidHeader(file)) {
+                    replay(file);
+                } else {
+                    deleteQuietly(file);
+                }
+            }
+            if (currentFile == null) {
+                generation = files.isEmpty() ? 1 : generationOf(files.get(0)) + 1;
+                currentFile = fileOf(generation);
+                channel = FileChannel.open(currentFile, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                buffer = mapNewFile(channel, (long) fileSizeMb * 1024 * 1024);
+                writeHeader(buffer);
+            }
+        }
+        for (Map.Entry<String, TokenEntry> entry : tokens.entrySet()) {
+            entry.getValue().node = wheel.schedule(entry.getKey(), entry.getValue().expireTime);
+        }
+        log.info("持久化token存储已启用, file:{}, 恢复token数量:{}", currentFile, tokens.size());
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-expiry-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String issue(String openid, String sessionKey, int expiresIn) {
+        String token = UUID.randomUUID().toString().replace("-", "");
+        long expireTime = System.currentTimeMillis() + expiresIn * 1000L;
+        TokenEntry tokenEntry = new TokenEntry(openid, expireTime);
+        synchronized (writeLock) {
+            while (tokens.size() >= maxTokens) {
+                String victim = wheel.pollEarliest();
+                if (victim == null) {
+                    break;
+                }
+                if (tokens.remove(victim) != null) {
+                    append(TYPE_REMOVE, victim, "", 0);
+                    evicted.increment();
+                }
+            }
+            append(TYPE_PUT, token, openid, expireTime);
+            tokens.put(token, tokenEntry);
+        }
+        tokenEntry.node = wheel.schedule(token, expireTime);
+        // 登记期间token已被吊销时，吊销操作没有拿到节点，由这里摘除
+        if (tokens.get(token) != tokenEntry) {
+            wheel.cancel(tokenEntry.node);
+        }
+        return token;
+    }
+
+    @Override
+    public String resolve(String token) {
+        TokenEntry entry = tokens.get(token);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireTime < System.currentTimeMillis()) {
+            expire(token);
+            return null;
+        }
+        return entry.openid;
+    }
+
+    @Override
+    public boolean revoke(String token) {
+        synchronized (writeLock) {
+            TokenEntry tokenEntry = tokens.remove(token);
+            if (tokenEntry != null) {
+                wheel.cancel(tokenEntry.node);
+                append(TYPE_REMOVE, token, "", 0);
+                revoked.increment();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public TokenStats getStats() {
+        TokenStats stats = new TokenStats();
+        stats.setLive(tokens.size());
+        stats.setExpired(expired.sum());
+        stats.setEvicted(evicted.sum());
+        stats.setRevoked(revoked.sum());
+        return stats;
+    }
+
+    /**
+     * 过期token只从索引中移除，不写文件，重放时会根据过期时间跳过
+     */
+    private void expire(String token) {
+        TokenEntry tokenEntry = tokens.remove(token);
+        if (tokenEntry != null) {
+            wheel.cancel(tokenEntry.node);
+            expired.increment();
+        }
+    }
+
+    private void tick() {
+        try {
+            int count = wheel.advance(System.currentTimeMillis());
+            if (count > 0) {
+                log.debug("清理过期token, count:{}, live:{}", count, tokens.size());
+            }
+            synchronized (writeLock) {
+                if (dirty) {
+                    buffer.force();
+                    dirty = false;
+                }
+            }
+        } catch (Exception e) {
+            log.error("token存储定时任务异常", e);
+        }
+    }
+
+    /**
+     * 追加一条记录，文件剩余空间不足时先压缩到新文件
+     * 调用方需持有写锁
+     */
+    private void append(byte type, String token, String openid, long expireTime) {
+        byte[] body = encodeBody(token, openid, expireTime);
+        // 类型 + 长度 + 记录体 + CRC，并为结尾标记预留1字节
+        int recordSize = 1 + 4 + body.length + 4;
+        if (buffer.remaining() < recordSize + 1) {
+            compact(recordSize);
+        }
+        writeRecord(buffer, type, body);
+        dirty = true;
+    }
+
+    /**
+     * 把当前有效token写入新一代文件，新文件完整写入后再切换
+     * 压缩失败时删除不完整的新文件，继续使用当前文件
+     * 调用方需持有写锁
+     */
+    private void compact(int extraBytes) {
+        long now = System.currentTimeMillis();
+        List<byte[]> bodies = new ArrayList<>(tokens.size());
+        long liveBytes = 0;
+        for (Map.Entry<String, TokenEntry> entry : tokens.entrySet()) {
+            TokenEntry tokenEntry = entry.getValue();
+            if (tokenEntry.expireTime < now) {
+                continue;
+            }
+            byte[] body = encodeBody(entry.getKey(), tokenEntry.openid, tokenEntry.expireTime);
+            bodies.add(body);
+            liveBytes += 1 + 4 + body.length + 4;
+        }
+        // 有效数据超过初始大小的一半时按两倍扩容，避免频繁压缩
+        long capacity = Math.max((long) fileSizeMb * 1024 * 1024, (HEADER_SIZE + liveBytes + extraBytes) * 2);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("token文件超过最大映射大小");
+        }
+
+        Path newFile = fileOf(generation + 1);
+        FileChannel newChannel;
+        try {
+            newChannel = FileChannel.open(newFile, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new IllegalStateException("token文件压缩失败", e);
+        }
+        MappedByteBuffer newBuffer = null;
+        try {
+            newBuffer = mapNewFile(newChannel, capacity);
+            for (byte[] body : bodies) {
+                writeRecord(newBuffer, TYPE_PUT, body);
+            }
+            // 记录全部落盘后再写文件头，文件头完整才说明新文件可用
+            newBuffer.force();
+            writeHeader(newBuffer);
+            newBuffer.force();
+        } catch (IOException | RuntimeException e) {
+            if (newBuffer != null) {
+                unmap(newBuffer);
+            }
+            closeQuietly(newChannel);
+            deleteQuietly(newFile);
+            throw new IllegalStateException("token文件压缩失败", e);
+        }
+
+        Path oldFile = currentFile;
+        FileChannel oldChannel = channel;
+        MappedByteBuffer oldBuffer = buffer;
+        generation++;
+        currentFile = newFile;
+        channel = newChannel;
+        buffer = newBuffer;
+        // 切换后旧的映射不再被访问（读写都在写锁内），立即释放，不等待GC
+        unmap(oldBuffer);
+        closeQuietly(oldChannel);
+        deleteQuietly(oldFile);
+        log.info("token文件压缩完成, file:{}, live:{}, capacity:{}", currentFile, bodies.size(), capacity);
+    }
+
+    /**
+     * 重放token文件，恢复未过期的token
+     * 调用方需持有写锁
+     */
+    private void replay(Path file) throws IOException {
+        generation = generationOf(file);
+        currentFile = file;
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+
+        long now = System.currentTimeMillis();
+        int position = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (position + 5 <= buffer.capacity()) {
+            byte type = buffer.get(position);
+            int length = buffer.getInt(position + 1);
+            int end = position + 5 + length + 4;
+            if (type == TYPE_END || length < 12 || end > buffer.capacity()) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.position(position + 5);
+            buffer.get(body);
+            crc.reset();
+            crc.update(body, 0, body.length);
+            if ((int) crc.getValue() != buffer.getInt(position + 5 + length)) {
+                // 进程在写入过程中退出留下的不完整记录，之后的内容全部丢弃
+                log.warn("token文件记录校验失败, 丢弃后续内容, file:{}, position:{}", file, position);
+                break;
+            }
+            applyRecord(type, body, now);
+            position = end;
+        }
+        // 清除损坏或残留的内容，保证追加位置之后是结尾标记
+        buffer.position(position);
+        if (position < buffer.capacity()) {
+            buffer.put(position, TYPE_END);
+        }
+    }
+
+    private void applyRecord(byte type, byte[] body, long now) {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        long expireTime = in.getLong();
+        byte[] tokenBytes = new byte[in.getShort()];
+        in.get(tokenBytes);
+        byte[] openidBytes = new byte[in.getShort()];
+        in.get(openidBytes);
+        String token = new String(tokenBytes, StandardCharsets.UTF_8);
+        if (type == TYPE_PUT && expireTime >= now) {
+            tokens.put(token, new TokenEntry(new String(openidBytes, StandardCharsets.UTF_8), expireTime));
+        } else if (type == TYPE_REMOVE) {
+            tokens.remove(token);
+        }
+    }
+
+    private static boolean hasValidHeader(Path file) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && fileChannel.read(header) > 0) {
+                // 读满文件头
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION;
+        }
+    }
+
+    private Path fileOf(long fileGeneration) {
+        return Paths.get(storeDir, "tokens-" + fileGeneration + ".dat");
+    }
+
+    /**
+     * 映射新创建的文件，追加位置在文件头之后（文件头由调用方在内容写完后写入）
+     */
+    private static MappedByteBuffer mapNewFile(FileChannel fileChannel, long capacity) throws IOException {
+        MappedByteBuffer newBuffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        newBuffer.position(HEADER_SIZE);
+        return newBuffer;
+    }
+
+    private static void writeHeader(MappedByteBuffer target) {
+        target.putInt(0, MAGIC);
+        target.putInt(4, FORMAT_VERSION);
+    }
+
+    private static byte[] encodeBody(String token, String openid, long expireTime) {
+        byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+        byte[] openidBytes = openid.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(8 + 2 + tokenBytes.length + 2 + openidBytes.length);
+        out.putLong(expireTime);
+        out.putShort((short) tokenBytes.length);
+        out.put(tokenBytes);
+        out.putShort((short) openidBytes.length);
+        out.put(openidBytes);
+        return out.array();
+    }
+
+    /**
+     * 写入一条记录，类型字节最后写入，作为记录完整的标记
+     */
+    private static void writeRecord(MappedByteBuffer target, byte type, byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        int start = target.position();
+        target.position(start + 1);
+        target.putInt(body.length);
+        target.put(body);
+        target.putInt((int) crc.getValue());
+        target.put(start, type);
+    }
+
+    private static long generationOf(Path file) {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    /**
+     * 释放内存映射（JDK没有公开的接口，Java 9+ 通过 Unsafe.invokeCleaner，Java 8 通过 DirectBuffer.cleaner）
+     * 释放后不能再访问该缓冲区，否则进程会崩溃
+     */
+    private static void unmap(MappedByteBuffer target) {
+        try {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), target);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = target.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(target);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // 释放失败时映射在缓冲区被GC回收后释放
+            log.warn("释放token文件映射失败", e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel fileChannel) {
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            log.warn("关闭token文件失败", e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Windows下仍被映射的文件无法删除，下次启动时会再次清理
+            log.warn("删除旧token文件失败, file:{}", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        synchronized (writeLock) {
+            buffer.force();
+            closeQuietly(channel);
+        }
+    }
+}
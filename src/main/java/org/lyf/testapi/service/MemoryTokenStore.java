@@ -0,0 +1,179 @@
+package org.lyf.testapi.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内存token存储
+ * token与openid的映射保存在内存中，过期时间由时间轮索引，后台线程按时间槽增量清理过期token；
+ * token数量达到上限时淘汰最早过期的token
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.token.mode", havingValue = "memory", matchIfMissing = true)
+public class MemoryTokenStore implements TokenStore {
+
+    /**
+     * 时间轮每个时间槽的时长（毫秒）
+     */
+    @Value("${app.token.wheel-tick-ms:1000}")
+    private long tickMs;
+
+    /**
+     * token有效期（秒），用于确定时间轮跨度
+     */
+    @Value("${app.token.expires-in:7200}")
+    private int expiresIn;
+
+    /**
+     * 最多保存的token数量
+     */
+    @Value("${app.token.max-tokens:200000}")
+    private int maxTokens;
+
+    /**
+     * Token存储
+     * Key: token
+     * Value: token信息
+     */
+    private final Map<String, TokenInfo> tokens = new ConcurrentHashMap<>();
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder revoked = new LongAdder();
+
+    private TokenExpiryWheel wheel;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Token信息内部类
+     */
+    private static class TokenInfo {
+        private final String openid;
+        private final String sessionKey;
+        private final long expireTime;
+
+        /**
+         * 时间轮中的节点，吊销时从时间轮摘除
+         */
+        private volatile TokenExpiryWheel.Node node;
+
+        TokenInfo(String openid, String sessionKey, long expireTime) {
+            this.openid = openid;
+            this.sessionKey = sessionKey;
+            this.expireTime = expireTime;
+        }
+
+        boolean isExpired(long now) {
+            return now > expireTime;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        // 时间轮跨度覆盖整个token有效期，保证每个token只会在过期时被访问一次
+        int wheelSize = (int) (expiresIn * 1000L / tickMs) + 2;
+        wheel = new TokenExpiryWheel(tickMs, wheelSize, this::expire);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-expiry-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String issue(String openid, String sessionKey, int expiresIn) {
+        while (tokens.size() >= maxTokens) {
+            String victim = wheel.pollEarliest();
+            if (victim == null) {
+                break;
+            }
+            if (tokens.remove(victim) != null) {
+                evicted.increment();
+            }
+        }
+
+        String token = UUID.randomUUID().toString().replace("-", "");
+        long expireTime = System.currentTimeMillis() + expiresIn * 1000L;
+        TokenInfo tokenInfo = new TokenInfo(openid, sessionKey, expireTime);
+        tokens.put(token, tokenInfo);
+        tokenInfo.node = wheel.schedule(token, expireTime);
+        // 登记期间token已被吊销时，吊销操作没有拿到节点，由这里摘除
+        if (tokens.get(token) != tokenInfo) {
+            wheel.cancel(tokenInfo.node);
+        }
+        return token;
+    }
+
+    @Override
+    public String resolve(String token) {
+        TokenInfo tokenInfo = tokens.get(token);
+        if (tokenInfo == null) {
+            return null;
+        }
+        if (tokenInfo.isExpired(System.currentTimeMillis())) {
+            // 时间轮还没走到的过期token在访问时直接移除
+            expire(token);
+            return null;
+        }
+        return tokenInfo.openid;
+    }
+
+    @Override
+    public boolean revoke(String token) {
+        TokenInfo tokenInfo = tokens.remove(token);
+        if (tokenInfo != null) {
+            wheel.cancel(tokenInfo.node);
+            revoked.increment();
+        }
+        return true;
+    }
+
+    @Override
+    public TokenStats getStats() {
+        TokenStats stats = new TokenStats();
+        stats.setLive(tokens.size());
+        stats.setExpired(expired.sum());
+        stats.setEvicted(evicted.sum());
+        stats.setRevoked(revoked.sum());
+        return stats;
+    }
+
+    private void expire(String token) {
+        TokenInfo tokenInfo = tokens.remove(token);
+        if (tokenInfo != null) {
+            // 访问时发现过期的token还在时间槽中
+            wheel.cancel(tokenInfo.node);
+            expired.increment();
+        }
+    }
+
+    private void tick() {
+        try {
+            int count = wheel.advance(System.currentTimeMillis());
+            if (count > 0) {
+                log.debug("清理过期token, count:{}, live:{}", count, tokens.size());
+            }
+        } catch (Exception e) {
+            log.error("清理过期token异常", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,205 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.lyf.testapi.dto.Assistant;
+import org.lyf.testapi.dto.OfflineIncome;
+import org.lyf.testapi.dto.PlayerInfo;
+import org.lyf.testapi.dto.UserGameDataResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 离线收益计算
+ * 获取用户游戏数据时根据最后更新时间到现在的离线时长计算助理产生的收益：
+ * 每秒收益 = reward-per-level-second * 已解锁助理的等级之和 * 2^trainingCount，离线时长最多按 max-offline-ms 计算
+ * 离线收益只计入返回的数据，不单独写入数据库：完整保存时客户端上传的金钱已包含离线收益，
+ * 增量保存时由 UserGameDataService 读取当前数据重新计算并与增量一起写入，因此客户端获取数据后不需要立即保存
+ * 离线时长不足 min-offline-ms 时视为在线，不计离线收益（在线期间的收益由客户端计算并保存）
+ */
+@Component
+@Slf4j
+public class OfflineIncomeCalculator {
+
+    /**
+     * 培训次数的上限（2^62 已超过金钱的表示范围）
+     */
+    private static final int MAX_TRAINING_EXPONENT = 62;
+
+    /**
+     * 是否开启离线收益（开启后客户端不应再自行计算离线收益，否则会重复计入）
+     */
+    @Value("${app.offline-income.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 每级助理每秒产生的收益
+     */
+    @Value("${app.offline-income.reward-per-level-second:1}")
+    private long rewardPerLevelSecond;
+
+    /**
+     * 计算离线收益的最短离线时长（毫秒）
+     */
+    @Value("${app.offline-income.min-offline-ms:60000}")
+    private long minOfflineMs;
+
+    /**
+     * 离线收益最多计算的离线时长（毫秒）
+     */
+    @Value("${app.offline-income.max-offline-ms:28800000}")
+    private long maxOfflineMs;
+
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder capped = new LongAdder();
+    private final LongAdder income = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 将离线收益计入用户数据
+     *
+     * @param data 用户数据（不会被修改，可以是读缓存中的对象）
+     * @param now  当前时间
+     * @return 计入离线收益后的新对象；没有离线收益时返回原对象
+     */
+    public UserGameDataResponse apply(UserGameDataResponse data, LocalDateTime now) {
+        OfflineIncome offlineIncome = calculate(data, now);
+        if (offlineIncome == null) {
+            return data;
+        }
+        applied.increment();
+        income.add(offlineIncome.getAmount());
+        if (offlineIncome.getCapped()) {
+            capped.increment();
+        }
+        log.debug("计入离线收益, userId:{}, offlineSeconds:{}, amount:{}",
+                data.getUserId(), offlineIncome.getOfflineSeconds(), offlineIncome.getAmount());
+
+        PlayerInfo source = data.getPlayerInfo();
+        PlayerInfo playerInfo = new PlayerInfo();
+        playerInfo.setPlayerLevel(source.getPlayerLevel());
+        playerInfo.setMoney(source.getMoney() + offlineIncome.getAmount());
+        playerInfo.setClickRewardBase(source.getClickRewardBase());
+        playerInfo.setClickMultiplier(source.getClickMultiplier());
+        playerInfo.setUpgradeCost(source.getUpgradeCost());
+        playerInfo.setTrainingCount(source.getTrainingCount());
+
+        UserGameDataResponse response = new UserGameDataResponse();
+        response.setUserId(data.getUserId());
+        response.setPlayerInfo(playerInfo);
+        response.setAssistants(data.getAssistants());
+        response.setChallenges(data.getChallenges());
+        response.setSettings(data.getSettings());
+        response.setLastUpdateTime(data.getLastUpdateTime());
+        // 离线收益未写入数据库，版本号不变；客户端按该版本号保存时数据库中的数据仍是计算收益时的数据
+        response.setVersion(data.getVersion());
+        response.setOfflineIncome(offlineIncome);
+        return response;
+    }
+
+    /**
+     * 计算离线收益
+     *
+     * @return 离线收益，未开启、离线时长不足或收益为0时返回null
+     */
+    OfflineIncome calculate(UserGameDataResponse data, LocalDateTime now) {
+        if (!enabled || data.getLastUpdateTime() == null || data.getPlayerInfo() == null
+                || data.getPlayerInfo().getMoney() == null || data.getAssistants() == null) {
+            return null;
+        }
+        long offlineMs = Duration.between(data.getLastUpdateTime(), now).toMillis();
+        if (offlineMs < minOfflineMs) {
+            return null;
+        }
+        long levels = 0;
+        for (Assistant assistant : data.getAssistants()) {
+            if (Boolean.TRUE.equals(assistant.getUnlocked()) && assistant.getLevel() != null) {
+                levels += assistant.getLevel();
+            }
+        }
+        Integer trainingCount = data.getPlayerInfo().getTrainingCount();
+        long seconds = Math.min(offlineMs, maxOfflineMs) / 1000;
+        double value = (double) rewardPerLevelSecond * levels * seconds
+                * Math.pow(2, Math.min(trainingCount != null ? trainingCount : 0, MAX_TRAINING_EXPONENT));
+        long money = data.getPlayerInfo().getMoney();
+        long amount = value >= Long.MAX_VALUE - money ? Long.MAX_VALUE - money : (long) Math.floor(value);
+        if (amount <= 0) {
+            return null;
+        }
+
+        OfflineIncome offlineIncome = new OfflineIncome();
+        offlineIncome.setAmount(amount);
+        offlineIncome.setOfflineSeconds(offlineMs / 1000);
+        offlineIncome.setCapped(offlineMs > maxOfflineMs);
+        return offlineIncome;
+    }
+
+    /**
+     * 最后更新时间早于该时间的数据有未计入的离线收益
+     *
+     * @param now 当前时间
+     * @return 离线收益的起算时间，未开启时返回null
+     */
+    public LocalDateTime getIncomeStartTime(LocalDateTime now) {
+        return enabled ? now.minusNanos(minOfflineMs * 1_000_000) : null;
+    }
+
+    /**
+     * 数据在该时间之前不会产生离线收益（用于判断缓存的响应体是否仍然有效）
+     *
+     * @param data 返回给客户端的用户数据
+     * @return 毫秒时间戳；未开启时返回 Long.MAX_VALUE，已计入离线收益（收益随时间增加）时返回0
+     */
+    public long getStableUntil(UserGameDataResponse data) {
+        if (!enabled) {
+            return Long.MAX_VALUE;
+        }
+        if (data.getOfflineIncome() != null || data.getLastUpdateTime() == null) {
+            return 0L;
+        }
+        return data.getLastUpdateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + minOfflineMs;
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public OfflineIncomeStats getStats() {
+        OfflineIncomeStats stats = new OfflineIncomeStats();
+        stats.setEnabled(enabled);
+        stats.setApplied(applied.sum());
+        stats.setCapped(capped.sum());
+        stats.setIncome(income.sum());
+        return stats;
+    }
+
+    /**
+     * 统计信息
+     */
+    @Data
+    public static class OfflineIncomeStats {
+        private boolean enabled;
+
+        /**
+         * 返回数据时计入离线收益的次数
+         */
+        private long applied;
+
+        /**
+         * 离线时长超过上限的次数
+         */
+        private long capped;
+
+        /**
+         * 计入的离线收益总额（同一段离线时间在保存前多次获取数据时会重复统计）
+         */
+        private long income;
+    }
+}
@@ -0,0 +1,218 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带排名的有序索引（可索引跳表）
+ * 按 (分数降序, 用户ID升序) 排列，每层指针记录跨过的元素个数，
+ * 更新分数、查询用户排名、按排名定位均为 O(log n)，取前N名为 O(log n + N)
+ * 非线程安全，由调用方加锁
+ */
+public class RankedIndex {
+
+    private static final int MAX_LEVEL = 32;
+
+    /**
+     * 每个元素出现在上一层的概率
+     */
+    private static final double LEVEL_PROBABILITY = 0.25;
+
+    private final Node head = new Node(null, 0, MAX_LEVEL);
+    private final HashMap<String, Node> nodes = new HashMap<>();
+    private int level = 1;
+    private int length;
+
+    /**
+     * 设置用户的分数，用户不存在时加入
+     */
+    public void put(String userId, long score) {
+        Node existing = nodes.get(userId);
+        if (existing != null) {
+            if (existing.score == score) {
+                return;
+            }
+            delete(existing);
+        }
+        nodes.put(userId, insert(userId, score));
+    }
+
+    /**
+     * 移除用户
+     */
+    public void remove(String userId) {
+        Node existing = nodes.remove(userId);
+        if (existing != null) {
+            delete(existing);
+        }
+    }
+
+    /**
+     * 获取用户的分数
+     *
+     * @return 分数，用户不存在时返回null
+     */
+    public Long getScore(String userId) {
+        Node node = nodes.get(userId);
+        return node != null ? node.score : null;
+    }
+
+    /**
+     * 获取用户的排名
+     *
+     * @return 排名（从1开始），用户不存在时返回0
+     */
+    public int rank(String userId) {
+        Node target = nodes.get(userId);
+        if (target == null) {
+            return 0;
+        }
+        Node x = head;
+        int rank = 0;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && !after(x.next[i], target.userId, target.score)) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x == target) {
+                return rank;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 按排名取出一段
+     *
+     * @param offset 跳过的名次数（0表示从第1名开始）
+     * @param limit  最多返回的条数
+     */
+    public List<Entry> range(int offset, int limit) {
+        List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(limit, size() - offset)));
+        if (offset < 0 || offset >= size() || limit <= 0) {
+            return entries;
+        }
+        // 先定位到第 offset+1 名，再沿最底层向后遍历
+        Node x = head;
+        int traversed = 0;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= offset + 1) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+        }
+        for (int rank = offset + 1; x != null && entries.size() < limit; rank++, x = x.next[0]) {
+            entries.add(new Entry(rank, x.userId, x.score));
+        }
+        return entries;
+    }
+
+    public int size() {
+        return length;
+    }
+
+    /**
+     * 节点是否排在 (userId, score) 之后
+     */
+    private static boolean after(Node node, String userId, long score) {
+        return node.score < score || (node.score == score && node.userId.compareTo(userId) > 0);
+    }
+
+    private Node insert(String userId, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && !after(x.next[i], userId, score)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                update[i].span[i] = length;
+            }
+            level = nodeLevel;
+        }
+
+        Node node = new Node(userId, score, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            // 新节点之前跨过的元素数为 rank[0] - rank[i]
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        length++;
+        return node;
+    }
+
+    private void delete(Node node) {
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i] != node && !after(x.next[i], node.userId, node.score)) {
+                x = x.next[i];
+            }
+            if (x.next[i] == node) {
+                x.span[i] += node.span[i] - 1;
+                x.next[i] = node.next[i];
+            } else {
+                x.span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        length--;
+    }
+
+    private static int randomLevel() {
+        int nodeLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+
+    private static class Node {
+        private final String userId;
+        private final long score;
+        private final Node[] next;
+
+        /**
+         * 每层指针跨过的元素个数（指向的节点算1个）
+         */
+        private final int[] span;
+
+        Node(String userId, long score, int level) {
+            this.userId = userId;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    /**
+     * 排名条目
+     */
+    @Data
+    public static class Entry {
+        private final int rank;
+        private final String userId;
+        private final long score;
+    }
+}
@@ -0,0 +1,56 @@
+package org.lyf.testapi.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 当前请求的数据库耗时累计
+ * 请求开始时由 RequestMetricsInterceptor 绑定到请求线程，异步模式下由 AsyncRequestExecutor 带到数据库线程；
+ * Mapper调用耗时由 MapperMetricsInterceptor 累加，最终写入访问日志
+ * 没有绑定时（定时任务、后台写入线程）不累计
+ */
+public final class RequestDbTime {
+
+    private static final ThreadLocal<AtomicLong> CURRENT = new ThreadLocal<>();
+
+    private RequestDbTime() {
+    }
+
+    /**
+     * 当前线程绑定的累计值，没有时返回null
+     */
+    public static AtomicLong current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 绑定累计值到当前线程
+     *
+     * @param dbTime 累计值，为null时解除绑定
+     */
+    public static void bind(AtomicLong dbTime) {
+        if (dbTime == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(dbTime);
+        }
+    }
+
+    /**
+     * 解除当前线程的绑定
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 累加一次数据库调用耗时
+     *
+     * @param durationNanos 耗时（纳秒）
+     */
+    public static void add(long durationNanos) {
+        AtomicLong dbTime = CURRENT.get();
+        if (dbTime != null) {
+            dbTime.addAndGet(durationNanos);
+        }
+    }
+}
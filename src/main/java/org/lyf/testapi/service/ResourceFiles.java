@@ -0,0 +1,373 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 静态资源文件元数据
+ * 解析 app.resources.path 下的文件，缓存每个文件的大小、修改时间和内容哈希（MD5，用作ETag）；
+ * 每次获取时检查文件大小和修改时间，文件变化后重新计算哈希，同一文件的并发计算只执行一次
+ * 同时监听资源目录（包括子目录）的文件变化并通知 ChangeListener（静态资源内存缓存、资源清单）
+ */
+@Component
+@Slf4j
+public class ResourceFiles {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 资源文件目录（与 WebMvcConfig 使用同一个配置）
+     */
+    @Value("${app.resources.path:./resources/}")
+    private String resourcesPath;
+
+    private Path root;
+
+    private final ConcurrentHashMap<String, ResourceFile> files = new ConcurrentHashMap<>();
+    private final SingleFlight<String, ResourceFile> hashing = new SingleFlight<>();
+
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder bytesHashed = new LongAdder();
+    private final LongAdder fullResponses = new LongAdder();
+    private final LongAdder partialResponses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder sendfileResponses = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        String location = resourcesPath.startsWith("file:") ? resourcesPath.substring("file:".length()) : resourcesPath;
+        root = Paths.get(location).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            log.warn("资源文件目录不存在: {}", root);
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerAll(root);
+        } catch (IOException e) {
+            log.warn("无法监听资源文件目录: {}", root, e);
+            watchService = null;
+            return;
+        }
+        Thread watcher = new Thread(this::watch, "resource-files-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * 是否在监听资源目录的文件变化（目录不存在或不支持监听时为false）
+     */
+    public boolean isWatching() {
+        return watchService != null;
+    }
+
+    /**
+     * 添加文件变化监听器，回调在监听线程中执行
+     */
+    public void addListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 注册目录及其所有子目录的监听
+     */
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 监听线程：通知文件变化，新建的子目录加入监听
+     */
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                    // 事件丢失，无法确定哪些文件变化了
+                    files.clear();
+                    listeners.forEach(this::notifyReset);
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                String relativePath = root.relativize(changed).toString().replace('\\', '/');
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        registerAll(changed);
+                    } catch (IOException e) {
+                        log.warn("监听新建的资源目录失败: {}", changed, e);
+                    }
+                }
+                String prefix = relativePath + "/";
+                files.keySet().removeIf(path -> path.equals(relativePath) || path.startsWith(prefix));
+                for (ChangeListener listener : listeners) {
+                    try {
+                        listener.changed(relativePath);
+                    } catch (RuntimeException e) {
+                        log.warn("处理资源文件变化失败: {}", relativePath, e);
+                    }
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+
+    private void notifyReset(ChangeListener listener) {
+        try {
+            listener.reset();
+        } catch (RuntimeException e) {
+            log.warn("处理资源文件变化失败", e);
+        }
+    }
+
+    /**
+     * 资源文件目录
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * 获取文件元数据
+     *
+     * @param relativePath 相对于资源目录的路径，如 assist/1/success.mp4
+     * @return 文件元数据，文件不存在、不是普通文件或不在资源目录下时返回null
+     */
+    public ResourceFile get(String relativePath) throws IOException {
+        Path path = root.resolve(relativePath).normalize();
+        if (!path.startsWith(root)) {
+            return null;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            files.remove(relativePath);
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        ResourceFile cached = files.get(relativePath);
+        if (cached != null && cached.getLength() == length && cached.getLastModified() == lastModified) {
+            return cached;
+        }
+        try {
+            return hashing.execute(relativePath, () -> {
+                ResourceFile file = new ResourceFile(path, length, lastModified, md5(path));
+                files.put(relativePath, file);
+                return file;
+            });
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * 使用直接缓冲区分块读取文件计算MD5，不把整个文件读入堆内存
+     */
+    private String md5(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                bytesHashed.add(buffer.remaining());
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * 记录一次文件响应
+     *
+     * @param partial  是否为范围请求（206）
+     * @param sendfile 是否由容器零拷贝发送
+     * @param bytes    响应体字节数
+     */
+    public void recordResponse(boolean partial, boolean sendfile, long bytes) {
+        if (partial) {
+            partialResponses.increment();
+        } else {
+            fullResponses.increment();
+        }
+        if (sendfile) {
+            sendfileResponses.increment();
+        }
+        bytesServed.add(bytes);
+    }
+
+    /**
+     * 记录一次304响应
+     */
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public ResourceFileStats getStats() {
+        ResourceFileStats stats = new ResourceFileStats();
+        stats.setFiles(files.size());
+        stats.setHashComputations(hashing.getExecutions());
+        stats.setBytesHashed(bytesHashed.sum());
+        stats.setFullResponses(fullResponses.sum());
+        stats.setPartialResponses(partialResponses.sum());
+        stats.setNotModified(notModified.sum());
+        stats.setSendfileResponses(sendfileResponses.sum());
+        stats.setBytesServed(bytesServed.sum());
+        return stats;
+    }
+
+    /**
+     * 资源文件变化监听器
+     */
+    public interface ChangeListener {
+
+        /**
+         * 文件或目录被创建、修改或删除
+         *
+         * @param relativePath 相对于资源目录的路径；为目录时目录下的文件都可能变化
+         */
+        void changed(String relativePath);
+
+        /**
+         * 监听事件丢失，所有文件都可能变化
+         */
+        void reset();
+    }
+
+    /**
+     * 文件元数据
+     */
+    @Data
+    public static class ResourceFile {
+        private final Path path;
+        private final long length;
+
+        /**
+         * 修改时间（毫秒）
+         */
+        private final long lastModified;
+
+        /**
+         * 文件内容的MD5（十六进制）
+         */
+        private final String contentHash;
+
+        public String getEtag() {
+            return "\"" + contentHash + "\"";
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    @Data
+    public static class ResourceFileStats {
+        /**
+         * 已缓存元数据的文件数
+         */
+        private int files;
+
+        /**
+         * 计算文件哈希的次数
+         */
+        private long hashComputations;
+        private long bytesHashed;
+
+        /**
+         * 完整文件响应（200）次数
+         */
+        private long fullResponses;
+
+        /**
+         * 范围请求响应（206）次数
+         */
+        private long partialResponses;
+
+        private long notModified;
+
+        /**
+         * 由容器零拷贝（sendfile）发送的响应次数
+         */
+        private long sendfileResponses;
+
+        private long bytesServed;
+    }
+}
@@ -0,0 +1,203 @@
+package org.lyf.testapi.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无状态签名token
+ * token格式：{keyId}.{base64url(openid)}.{过期时间秒}.{base64url(HMAC-SHA256签名)}
+ * token自身携带openid和过期时间，任意节点使用相同密钥即可校验，重启后仍然有效；
+ * 支持配置多个密钥轮换：使用 active-key 签发，所有已配置的密钥都可用于校验
+ * 主动注销的token记录在本节点的吊销集合中，直到token过期；其他节点不知道该吊销，仍然接受该token
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.token.mode", havingValue = "stateless")
+public class SignedTokenStore implements TokenStore {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * Mac实例不是线程安全的，每个线程复用一个
+     */
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(HMAC_ALGORITHM);
+        } catch (Exception e) {
+            throw new IllegalStateException("不支持的签名算法: " + HMAC_ALGORITHM, e);
+        }
+    });
+
+    /**
+     * 签名密钥列表，格式：keyId:base64密钥,keyId:base64密钥
+     */
+    @Value("${app.token.hmac-keys:}")
+    private String hmacKeys;
+
+    /**
+     * 用于签发新token的密钥ID，为空时使用列表中的最后一个
+     */
+    @Value("${app.token.hmac-active-key:}")
+    private String activeKeyId;
+
+    /**
+     * 吊销集合最大容量
+     */
+    @Value("${app.token.max-revoked:10000}")
+    private int maxRevoked;
+
+    /**
+     * 密钥ID -> 密钥
+     */
+    private final Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+
+    /**
+     * 已吊销的token
+     * Key: token
+     * Value: token过期时间（秒），过期后从集合中移除
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder revokedTotal = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        for (String item : hmacKeys.split(",")) {
+            item = item.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            int index = item.indexOf(':');
+            String keyId = index > 0 ? item.substring(0, index) : "";
+            if (keyId.isEmpty() || keyId.contains(".")) {
+                throw new IllegalStateException("app.token.hmac-keys 格式错误，应为 keyId:base64密钥，keyId中不能包含'.'");
+            }
+            byte[] secret = Base64.getDecoder().decode(item.substring(index + 1));
+            if (secret.length < 32) {
+                throw new IllegalStateException("token签名密钥长度不能小于32字节, keyId:" + keyId);
+            }
+            keys.put(keyId, new SecretKeySpec(secret, HMAC_ALGORITHM));
+        }
+
+        if (keys.isEmpty()) {
+            // 未配置密钥时生成进程内随机密钥，token无法跨节点校验，重启后也会失效
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            keys.put("local", new SecretKeySpec(secret, HMAC_ALGORITHM));
+            log.warn("未配置 app.token.hmac-keys，使用随机生成的临时密钥，重启后token将失效");
+        }
+
+        if (activeKeyId == null || activeKeyId.isEmpty()) {
+            for (String keyId : keys.keySet()) {
+                activeKeyId = keyId;
+            }
+        } else if (!keys.containsKey(activeKeyId)) {
+            throw new IllegalStateException("app.token.hmac-active-key 不在已配置的密钥列表中: " + activeKeyId);
+        }
+        log.info("无状态token已启用, activeKeyId:{}, keyIds:{}", activeKeyId, keys.keySet());
+    }
+
+    @Override
+    public String issue(String openid, String sessionKey, int expiresIn) {
+        long expireSeconds = System.currentTimeMillis() / 1000 + expiresIn;
+        String payload = activeKeyId + "." + encode(openid.getBytes(StandardCharsets.UTF_8)) + "." + expireSeconds;
+        return payload + "." + encode(sign(keys.get(activeKeyId), payload));
+    }
+
+    @Override
+    public String resolve(String token) {
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        SecretKeySpec key = keys.get(parts[0]);
+        if (key == null) {
+            return null;
+        }
+
+        byte[] signature;
+        long expireSeconds;
+        try {
+            signature = Base64.getUrlDecoder().decode(parts[3]);
+            expireSeconds = Long.parseLong(parts[2]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        // 常量时间比较签名，避免通过响应时间猜测签名
+        String payload = parts[0] + "." + parts[1] + "." + parts[2];
+        if (!MessageDigest.isEqual(sign(key, payload), signature)) {
+            return null;
+        }
+        if (expireSeconds * 1000 < System.currentTimeMillis()) {
+            expired.increment();
+            return null;
+        }
+        if (!revoked.isEmpty() && revoked.containsKey(token)) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean revoke(String token) {
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 4 || resolve(token) == null) {
+            return true;
+        }
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        if (revoked.size() >= maxRevoked) {
+            revoked.values().removeIf(expireSeconds -> expireSeconds < nowSeconds);
+        }
+        if (revoked.size() >= maxRevoked) {
+            log.warn("token吊销集合已满, 本次吊销未生效, maxRevoked:{}", maxRevoked);
+            return false;
+        }
+        revoked.put(token, Long.parseLong(parts[2]));
+        revokedTotal.increment();
+        return true;
+    }
+
+    @Override
+    public TokenStats getStats() {
+        TokenStats stats = new TokenStats();
+        // 无状态token不在服务端保存，无法统计有效数量
+        stats.setLive(-1);
+        stats.setExpired(expired.sum());
+        stats.setRevoked(revokedTotal.sum());
+        return stats;
+    }
+
+    private static byte[] sign(SecretKeySpec key, String payload) {
+        try {
+            Mac mac = MAC.get();
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException("token签名失败", e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,88 @@
+package org.lyf.testapi.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并同一个Key上的并发调用
+ * 同一时刻同一个Key只有第一个调用真正执行，执行期间到达的调用等待并共享它的结果（返回值或异常）；
+ * 执行结束后结果不保留，之后的调用重新执行
+ *
+ * @param <K> Key类型
+ * @param <V> 结果类型
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 真正执行的次数
+     */
+    private final LongAdder executions = new LongAdder();
+
+    /**
+     * 被合并（等待其他调用结果）的次数
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 执行调用，同一个Key已有调用在执行时等待其结果
+     *
+     * @param key    Key
+     * @param loader 实际执行的调用
+     * @return 调用结果
+     * @throws Exception 调用抛出的异常（等待的调用收到相同的异常）
+     */
+    public V execute(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw (Error) cause;
+            }
+        }
+
+        executions.increment();
+        try {
+            V value = loader.call();
+            created.complete(value);
+            return value;
+        } catch (Throwable t) {
+            created.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * 真正执行的次数
+     */
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * 被合并的次数
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * 正在执行的Key数量
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,186 @@
+package org.lyf.testapi.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * token过期时间轮（hashed timing wheel）
+ * 按过期时间把token放入对应的时间槽，时间推进时只处理已经走过的时间槽，
+ * 时间轮跨度不小于token有效期时，每次推进的工作量只与过期的token数量成正比；
+ * 吊销的token通过登记时返回的节点从时间槽中摘除，时间轮中的节点数不超过存储中的token数
+ */
+class TokenExpiryWheel {
+
+    /**
+     * 时间槽中的节点，时间槽内以双向链表相连，读写都在所属时间槽的锁内进行
+     */
+    static final class Node {
+        private final String token;
+        private final long expireTime;
+        private final Bucket bucket;
+        private Node prev;
+        private Node next;
+        private boolean linked;
+
+        private Node(String token, long expireTime, Bucket bucket) {
+            this.token = token;
+            this.expireTime = expireTime;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * 时间槽
+     */
+    private static final class Bucket {
+        private Node head;
+        private Node tail;
+
+        void add(Node node) {
+            node.prev = tail;
+            if (tail != null) {
+                tail.next = node;
+            } else {
+                head = node;
+            }
+            tail = node;
+            node.linked = true;
+        }
+
+        void unlink(Node node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                tail = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.linked = false;
+        }
+    }
+
+    private final long tickMs;
+    private final Bucket[] buckets;
+    private final Consumer<String> expiryListener;
+
+    /**
+     * 已处理完的最后一个时间刻度
+     */
+    private volatile long cursorTick;
+
+    /**
+     * @param tickMs         每个时间槽的时长（毫秒）
+     * @param wheelSize      时间槽数量
+     * @param expiryListener token过期回调
+     */
+    TokenExpiryWheel(long tickMs, int wheelSize, Consumer<String> expiryListener) {
+        this.tickMs = tickMs;
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.expiryListener = expiryListener;
+        this.cursorTick = System.currentTimeMillis() / tickMs - 1;
+    }
+
+    /**
+     * 登记token的过期时间
+     *
+     * @param token      token
+     * @param expireTime 过期时间戳（毫秒）
+     * @return 时间槽中的节点，token提前失效时传给 cancel
+     */
+    Node schedule(String token, long expireTime) {
+        // 落在已处理过的时间槽上的token放到下一个待处理的时间槽，避免多等一整轮
+        long tick = Math.max(expireTime / tickMs, cursorTick + 1);
+        Bucket bucket = bucketOf(tick);
+        Node node = new Node(token, expireTime, bucket);
+        synchronized (bucket) {
+            bucket.add(node);
+        }
+        return node;
+    }
+
+    /**
+     * 把已失效（吊销、淘汰）的token从时间槽中摘除，节点已过期或已摘除时不做处理
+     *
+     * @param node schedule 返回的节点，为null时不做处理
+     */
+    void cancel(Node node) {
+        if (node == null) {
+            return;
+        }
+        synchronized (node.bucket) {
+            if (node.linked) {
+                node.bucket.unlink(node);
+            }
+        }
+    }
+
+    /**
+     * 推进时间轮，处理所有已经完整走过的时间槽
+     * 只允许单线程调用
+     *
+     * @param now 当前时间戳（毫秒）
+     * @return 本次过期的token数量
+     */
+    int advance(long now) {
+        long lastTick = now / tickMs - 1;
+        long from = Math.max(cursorTick + 1, lastTick - buckets.length + 1);
+        int expired = 0;
+        List<String> expiredTokens = new ArrayList<>();
+        for (long tick = from; tick <= lastTick; tick++) {
+            Bucket bucket = bucketOf(tick);
+            synchronized (bucket) {
+                Node node = bucket.head;
+                while (node != null) {
+                    Node next = node.next;
+                    // 过期时间更晚的节点属于后面的轮次，保留在槽中
+                    if (node.expireTime <= now) {
+                        bucket.unlink(node);
+                        expiredTokens.add(node.token);
+                    }
+                    node = next;
+                }
+            }
+            // 回调在时间槽的锁外执行，回调中可以再操作时间轮
+            for (String token : expiredTokens) {
+                expiryListener.accept(token);
+            }
+            expired += expiredTokens.size();
+            expiredTokens.clear();
+            cursorTick = tick;
+        }
+        return expired;
+    }
+
+    /**
+     * 取出最早过期的一个token（容量超限时淘汰使用）
+     *
+     * @return token，时间轮为空时返回null
+     */
+    String pollEarliest() {
+        long start = cursorTick + 1;
+        for (long tick = start; tick < start + buckets.length; tick++) {
+            Bucket bucket = bucketOf(tick);
+            synchronized (bucket) {
+                Node node = bucket.head;
+                if (node != null) {
+                    bucket.unlink(node);
+                    return node.token;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Bucket bucketOf(long tick) {
+        return buckets[(int) (tick % buckets.length)];
+    }
+}
@@ -0,0 +1,67 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+
+/**
+ * 登录态token存储
+ * 负责token的签发、解析以及过期清理
+ */
+public interface TokenStore {
+
+    /**
+     * 签发token并保存与openid的映射关系
+     *
+     * @param openid     微信openid
+     * @param sessionKey 微信session_key
+     * @param expiresIn  有效期（秒）
+     * @return 新签发的token
+     */
+    String issue(String openid, String sessionKey, int expiresIn);
+
+    /**
+     * 通过token获取openid
+     *
+     * @param token 登录态token
+     * @return openid，如果token无效或已过期返回null
+     */
+    String resolve(String token);
+
+    /**
+     * 吊销token（主动退出登录）
+     *
+     * @param token 登录态token
+     * @return 吊销后token是否已失效（token本来就无效时也返回true），无法记录吊销、token仍然有效时返回false
+     */
+    boolean revoke(String token);
+
+    /**
+     * 获取token统计信息
+     */
+    TokenStats getStats();
+
+    /**
+     * token统计信息
+     */
+    @Data
+    class TokenStats {
+        /**
+         * 当前有效token数量（无状态token模式下为-1）
+         */
+        private long live;
+
+        /**
+         * 累计过期清理的token数量
+         */
+        private long expired;
+
+        /**
+         * 累计因容量上限被淘汰的token数量
+         */
+        private long evicted;
+
+        /**
+         * 累计主动吊销的token数量
+         */
+        private long revoked;
+    }
+}
@@ -0,0 +1,300 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.lyf.testapi.entity.UserGameData;
+import org.lyf.testapi.mapper.UserGameDataMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户游戏数据批量写入器
+ * 开启后并发请求的 upsert 先进入队列，由写入线程在一个很短的时间窗口内（或攒够一批后）
+ * 以 JDBC batch 方式在同一个事务中执行并一次提交，每个调用方在所在批次提交后拿到自己的影响行数；
+ * 负载越高每批的行数越多，提交次数不再随请求数线性增长
+ * 批次执行失败时逐条重试，避免一条数据出错导致整批请求失败；队列已满时调用方直接写数据库
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UserGameDataBatchWriter {
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final PlatformTransactionManager transactionManager;
+    private final UserGameDataMapper userGameDataMapper;
+
+    /**
+     * 是否开启批量写入（默认关闭，每次保存单独执行并提交）
+     */
+    @Value("${app.batch-write.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 攒批时间窗口（毫秒），从批次中第一条数据到达时开始计算
+     */
+    @Value("${app.batch-write.window-ms:5}")
+    private long windowMs;
+
+    /**
+     * 每批最多条数，攒够后立即执行
+     */
+    @Value("${app.batch-write.max-batch-size:100}")
+    private int maxBatchSize;
+
+    /**
+     * 等待写入的最大条数，超出时调用方直接写数据库
+     */
+    @Value("${app.batch-write.max-queue:10000}")
+    private int maxQueue;
+
+    /**
+     * 调用方等待批次提交的超时时间（毫秒）
+     */
+    @Value("${app.batch-write.timeout-ms:10000}")
+    private long timeoutMs;
+
+    private BlockingQueue<PendingUpsert> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 等待写入的数据
+     */
+    private static class PendingUpsert {
+        private final UserGameData data;
+        private final Long expectedVersion;
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        PendingUpsert(UserGameData data, Long expectedVersion) {
+            this.data = data;
+            this.expectedVersion = expectedVersion;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        queue = new LinkedBlockingQueue<>(maxQueue);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        running = true;
+        writerThread = new Thread(this::runLoop, "batch-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("用户游戏数据批量写入已开启, windowMs:{}, maxBatchSize:{}, maxQueue:{}", windowMs, maxBatchSize, maxQueue);
+    }
+
+    /**
+     * 是否开启批量写入
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交一条 upsert，所在批次提交后完成
+     * 未开启、已关闭或队列已满时直接在当前线程写入数据库
+     *
+     * @param userGameData    用户游戏数据
+     * @param expectedVersion 期望的数据库当前版本号，为空表示不校验
+     * @return 影响行数（含义同 UserGameDataMapper.upsert，批量执行时驱动可能返回 Statement.SUCCESS_NO_INFO）
+     */
+    public CompletableFuture<Integer> submit(UserGameData userGameData, Long expectedVersion) {
+        PendingUpsert pending = new PendingUpsert(userGameData, expectedVersion);
+        if (running) {
+            if (queue.offer(pending)) {
+                // 放入队列前可能已开始关闭，写入线程退出、shutdown 也已取走剩余数据后就不会再有人处理；
+                // 这时仍在队列中的数据取回由当前线程写入，已不在队列中说明已被写入线程或 shutdown 取走
+                if (running || !queue.remove(pending)) {
+                    return pending.future;
+                }
+            } else {
+                rejected.increment();
+            }
+        }
+        try {
+            pending.future.complete(userGameDataMapper.upsert(userGameData, expectedVersion));
+        } catch (Exception e) {
+            pending.future.completeExceptionally(e);
+        }
+        return pending.future;
+    }
+
+    /**
+     * 提交一条 upsert 并等待所在批次提交
+     *
+     * @param userGameData    用户游戏数据
+     * @param expectedVersion 期望的数据库当前版本号，为空表示不校验
+     * @return 影响行数
+     */
+    public int upsert(UserGameData userGameData, Long expectedVersion) throws Exception {
+        try {
+            return submit(userGameData, expectedVersion).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private void runLoop() {
+        List<PendingUpsert> batch = new ArrayList<>(maxBatchSize);
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        long pollNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingUpsert first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    // 开始关闭后不再等待攒批，立即写入
+                    if (batch.size() >= maxBatchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    PendingUpsert next = queue.poll(Math.min(remaining, pollNanos), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                executeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("批量写入线程异常", e);
+            } finally {
+                for (PendingUpsert pending : batch) {
+                    if (!pending.future.isDone()) {
+                        pending.future.completeExceptionally(new IllegalStateException("批量写入未完成"));
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中以 JDBC batch 执行整批 upsert
+     */
+    private void executeBatch(List<PendingUpsert> batch) {
+        try {
+            List<Integer> counts = transactionTemplate.execute(status -> {
+                try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+                    UserGameDataMapper mapper = session.getMapper(UserGameDataMapper.class);
+                    for (PendingUpsert pending : batch) {
+                        mapper.upsert(pending.data, pending.expectedVersion);
+                    }
+                    // 每个 BatchResult 对应一段连续的相同SQL，按提交顺序展开即为每条数据的影响行数
+                    List<Integer> result = new ArrayList<>(batch.size());
+                    for (BatchResult batchResult : session.flushStatements()) {
+                        for (int count : batchResult.getUpdateCounts()) {
+                            result.add(count);
+                        }
+                    }
+                    return result;
+                }
+            });
+            if (counts == null || counts.size() != batch.size()) {
+                throw new IllegalStateException("批量写入结果数量不一致");
+            }
+            // 先更新统计再完成结果，等待结果的调用方能看到本批次的统计
+            batches.increment();
+            rows.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(counts.get(i));
+            }
+            log.debug("批量写入用户游戏数据完成, size:{}", batch.size());
+        } catch (Exception e) {
+            // 整批已回滚，逐条重试，各自返回结果
+            log.warn("批量写入用户游戏数据失败, 逐条重试, size:{}", batch.size(), e);
+            fallbacks.increment();
+            for (PendingUpsert pending : batch) {
+                try {
+                    pending.future.complete(userGameDataMapper.upsert(pending.data, pending.expectedVersion));
+                } catch (Exception ex) {
+                    pending.future.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取批量写入统计信息
+     */
+    public BatchStats getStats() {
+        BatchStats stats = new BatchStats();
+        stats.setEnabled(enabled);
+        stats.setQueued(queue != null ? queue.size() : 0);
+        stats.setBatches(batches.sum());
+        stats.setRows(rows.sum());
+        stats.setAvgBatchSize(stats.getBatches() == 0 ? 0.0 : (double) stats.getRows() / stats.getBatches());
+        stats.setFallbacks(fallbacks.sum());
+        stats.setRejected(rejected.sum());
+        return stats;
+    }
+
+    /**
+     * 应用关闭时停止接收新数据，写完队列中剩余的数据
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 停止过程中才进入队列的数据由当前线程写入
+        List<PendingUpsert> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            executeBatch(remaining);
+        }
+        log.info("批量写入线程已停止, remaining:{}", remaining.size());
+    }
+
+    /**
+     * 批量写入统计信息
+     */
+    @Data
+    public static class BatchStats {
+        private boolean enabled;
+        private int queued;
+        private long batches;
+        private long rows;
+        private double avgBatchSize;
+        private long fallbacks;
+        private long rejected;
+    }
+}
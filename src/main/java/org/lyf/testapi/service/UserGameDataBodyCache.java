@@ -0,0 +1,229 @@
+package org.lyf.testapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 获取用户游戏数据接口的响应体缓存
+ * 缓存每个用户最近一次序列化好的响应体字节和对应的ETag（响应体的MD5），Key 为 openid；
+ * 数据版本号未变化时直接写出缓存的字节或返回304，不再经过Jackson序列化
+ * 本节点保存数据时由 UserGameDataService 使缓存失效；其他节点的保存通过版本号变化发现
+ */
+@Component
+@RequiredArgsConstructor
+public class UserGameDataBodyCache {
+
+    /**
+     * 是否开启ETag和响应体缓存
+     */
+    @Value("${app.user-data-etag.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 最大缓存条数
+     */
+    @Value("${app.user-data-etag.max-size:10000}")
+    private int maxSize;
+
+    /**
+     * 与Spring MVC使用同一个ObjectMapper，保证缓存的字节与正常序列化的结果一致
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 按访问顺序排列的缓存，最久未访问的在最前面
+     */
+    private final LinkedHashMap<String, Body> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder serializations = new LongAdder();
+
+    /**
+     * 是否开启ETag和响应体缓存
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取缓存的响应体
+     *
+     * @param userId 用户ID
+     * @return 缓存的响应体，未命中返回null（调用方需自行校验版本号）
+     */
+    public Body get(String userId) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (entries) {
+            return entries.get(userId);
+        }
+    }
+
+    /**
+     * 序列化响应并放入缓存
+     *
+     * @param userId  用户ID
+     * @param version 响应数据的版本号，为0（未写入数据库的默认数据）时不缓存
+     * @param result  完整的响应对象
+     * @return 序列化后的响应体
+     */
+    public Body put(String userId, long version, Object result) throws Exception {
+        return put(userId, version, result, Long.MAX_VALUE);
+    }
+
+    /**
+     * 序列化响应并放入缓存
+     *
+     * @param userId     用户ID
+     * @param version    响应数据的版本号，为0（未写入数据库的默认数据）时不缓存
+     * @param result     完整的响应对象
+     * @param validUntil 版本号不变时响应体的有效期（毫秒时间戳，如开始产生离线收益的时间），已过期时不缓存
+     * @return 序列化后的响应体
+     */
+    public Body put(String userId, long version, Object result, long validUntil) throws Exception {
+        byte[] bytes = objectMapper.writeValueAsBytes(result);
+        serializations.increment();
+        Body body = Body.of(version, bytes, validUntil);
+        if (!enabled || version == 0 || validUntil <= System.currentTimeMillis()) {
+            return body;
+        }
+        synchronized (entries) {
+            entries.put(userId, body);
+            // 超出容量时淘汰最久未访问的条目
+            Iterator<Body> iterator = entries.values().iterator();
+            while (entries.size() > maxSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return body;
+    }
+
+    /**
+     * 使缓存失效
+     *
+     * @param userId 用户ID
+     */
+    public void invalidate(String userId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (entries) {
+            entries.remove(userId);
+        }
+    }
+
+    /**
+     * 记录一次版本号未变化、直接使用缓存字节的响应
+     */
+    public void recordHit() {
+        hits.increment();
+    }
+
+    /**
+     * 记录一次304响应
+     */
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    /**
+     * 判断请求头 If-None-Match 是否与ETag匹配（弱比较，支持多个值和 *）
+     *
+     * @param ifNoneMatch 请求头 If-None-Match 的值
+     * @param etag        当前ETag
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public BodyCacheStats getStats() {
+        BodyCacheStats stats = new BodyCacheStats();
+        stats.setEnabled(enabled);
+        synchronized (entries) {
+            stats.setSize(entries.size());
+        }
+        stats.setHits(hits.sum());
+        stats.setNotModified(notModified.sum());
+        stats.setSerializations(serializations.sum());
+        return stats;
+    }
+
+    /**
+     * 序列化好的响应体
+     */
+    @Data
+    public static class Body {
+        private final long version;
+        private final String etag;
+        private final byte[] bytes;
+
+        /**
+         * 有效期（毫秒时间戳），之后即使版本号不变也需要重新生成
+         */
+        private final long validUntil;
+
+        /**
+         * 根据响应体生成（ETag为响应体的MD5）
+         */
+        public static Body of(long version, byte[] bytes, long validUntil) {
+            return new Body(version, "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"", bytes, validUntil);
+        }
+
+        /**
+         * 版本号一致且未过期时缓存的响应体仍然有效
+         */
+        public boolean isValid(Long currentVersion) {
+            return Long.valueOf(version).equals(currentVersion) && System.currentTimeMillis() < validUntil;
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    @Data
+    public static class BodyCacheStats {
+        private boolean enabled;
+        private int size;
+
+        /**
+         * 版本号未变化、直接使用缓存字节的次数（包括返回304的次数）
+         */
+        private long hits;
+
+        /**
+         * 返回304的次数
+         */
+        private long notModified;
+
+        /**
+         * 序列化响应体的次数
+         */
+        private long serializations;
+    }
+}
@@ -0,0 +1,186 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import org.lyf.testapi.dto.UserGameDataResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户游戏数据读缓存
+ * 缓存组装好的 UserGameDataResponse，Key 为 openid；按容量（LRU）和过期时间淘汰，
+ * 保存数据时由 UserGameDataService 刷新缓存内容
+ * 注意：多实例部署时其他节点的保存不会刷新本节点缓存，只能依赖过期时间
+ */
+@Component
+public class UserGameDataCache {
+
+    /**
+     * 是否开启读缓存
+     */
+    @Value("${app.user-data-cache.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 最大缓存条数
+     */
+    @Value("${app.user-data-cache.max-size:10000}")
+    private int maxSize;
+
+    /**
+     * 缓存过期时间（毫秒）
+     */
+    @Value("${app.user-data-cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    /**
+     * 按访问顺序排列的缓存，最久未访问的在最前面
+     */
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 缓存条目，response 为null时表示该版本号之前的数据已失效（读取时视为未命中）
+     */
+    private static class CacheEntry {
+        private final UserGameDataResponse response;
+        private final long version;
+        private final long expireTime;
+
+        CacheEntry(UserGameDataResponse response, long version, long expireTime) {
+            this.response = response;
+            this.version = version;
+            this.expireTime = expireTime;
+        }
+    }
+
+    /**
+     * 是否开启读缓存
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取缓存的用户游戏数据
+     *
+     * @param userId 用户ID
+     * @return 缓存数据，未命中或已过期返回null
+     */
+    public UserGameDataResponse get(String userId) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (entries) {
+            CacheEntry entry = entries.get(userId);
+            if (entry != null && entry.expireTime < System.currentTimeMillis()) {
+                entries.remove(userId);
+                evictions.increment();
+                entry = null;
+            }
+            if (entry == null || entry.response == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.response;
+        }
+    }
+
+    /**
+     * 放入或刷新缓存
+     * 已缓存的数据版本号更新时保留已缓存的数据：加载可能在并发的保存提交前读取数据库、在保存刷新缓存后才放入
+     *
+     * @param userId   用户ID
+     * @param response 组装好的用户游戏数据（放入后不应再修改）
+     */
+    public void put(String userId, UserGameDataResponse response) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long version = response.getVersion() != null ? response.getVersion() : 0L;
+        putEntry(userId, new CacheEntry(response, version, now + ttlMs), now);
+    }
+
+    /**
+     * 使指定版本号之前的缓存数据失效
+     * 与 invalidate 不同，失效期间（过期时间内）放入的旧版本数据会被忽略：
+     * 增量保存只更新数据库中的部分列、无法得到完整数据时使用，避免保存前开始的加载把旧数据放回缓存
+     *
+     * @param userId  用户ID
+     * @param version 已写入数据库的新版本号
+     */
+    public void invalidate(String userId, long version) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        putEntry(userId, new CacheEntry(null, version, now + ttlMs), now);
+    }
+
+    private void putEntry(String userId, CacheEntry entry, long now) {
+        synchronized (entries) {
+            CacheEntry existing = entries.get(userId);
+            if (existing != null && existing.expireTime >= now && existing.version > entry.version) {
+                return;
+            }
+            entries.put(userId, entry);
+            // 超出容量时淘汰最久未访问的条目
+            Iterator<CacheEntry> iterator = entries.values().iterator();
+            while (entries.size() > maxSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 使缓存失效
+     *
+     * @param userId 用户ID
+     */
+    public void invalidate(String userId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (entries) {
+            entries.remove(userId);
+        }
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public CacheStats getStats() {
+        CacheStats stats = new CacheStats();
+        synchronized (entries) {
+            stats.setSize(entries.size());
+        }
+        stats.setHits(hits.sum());
+        stats.setMisses(misses.sum());
+        stats.setEvictions(evictions.sum());
+        long total = stats.getHits() + stats.getMisses();
+        stats.setHitRate(total == 0 ? 0.0 : (double) stats.getHits() / total);
+        return stats;
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    @Data
+    public static class CacheStats {
+        private int size;
+        private long hits;
+        private long misses;
+        private long evictions;
+        private double hitRate;
+    }
+}
@@ -0,0 +1,210 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import org.lyf.testapi.dto.Assistant;
+import org.lyf.testapi.dto.Challenge;
+import org.lyf.testapi.dto.PlayerInfo;
+import org.lyf.testapi.dto.Settings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户游戏数据指纹
+ * 记录每个用户最近一次读取或保存的数据指纹（玩家信息、助理、挑战、设置的64位哈希）及对应的版本号，
+ * 用于识别与数据库中数据完全相同的重复保存（客户端定时自动保存），Key 为 openid；按容量（LRU）淘汰
+ * 这里的指纹只说明"本节点上次看到的数据"，用于预先筛选；跳过保存前还需要确认数据库中记录的指纹
+ * （state_fingerprint 列）和版本号没有变化
+ */
+@Component
+public class UserGameDataFingerprints {
+
+    /**
+     * 是否开启重复保存检测
+     */
+    @Value("${app.save-dedup.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 最大记录条数
+     */
+    @Value("${app.save-dedup.max-size:10000}")
+    private int maxSize;
+
+    /**
+     * 按访问顺序排列，最久未访问的在最前面
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 是否开启重复保存检测
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取记录的指纹
+     *
+     * @param userId 用户ID
+     * @return 指纹记录，不存在返回null
+     */
+    public Entry get(String userId) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (entries) {
+            return entries.get(userId);
+        }
+    }
+
+    /**
+     * 记录指纹
+     *
+     * @param userId      用户ID
+     * @param fingerprint 数据指纹
+     * @param version     数据版本号
+     */
+    public void put(String userId, long fingerprint, long version) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(fingerprint, version);
+        synchronized (entries) {
+            entries.put(userId, entry);
+            // 超出容量时淘汰最久未访问的条目
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maxSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 删除指纹记录
+     *
+     * @param userId 用户ID
+     */
+    public void invalidate(String userId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (entries) {
+            entries.remove(userId);
+        }
+    }
+
+    /**
+     * 记录一次检测结果
+     *
+     * @param unchanged 是否为重复保存（已跳过写入）
+     */
+    public void record(boolean unchanged) {
+        if (unchanged) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    /**
+     * 计算数据指纹
+     * 缺省值按保存时的规则处理（trainingCount 为空视为0，设置为空视为默认设置），
+     * 因此缺省字段与显式传入默认值的请求指纹相同
+     */
+    public static long fingerprint(PlayerInfo playerInfo, List<Assistant> assistants, List<Challenge> challenges,
+                                   Settings settings) {
+        long h = 0x6A09E667F3BCC909L;
+        h = mix(h, playerInfo.getPlayerLevel());
+        h = mix(h, playerInfo.getMoney());
+        h = mix(h, playerInfo.getClickRewardBase());
+        h = mix(h, Double.doubleToLongBits(playerInfo.getClickMultiplier()));
+        h = mix(h, playerInfo.getUpgradeCost());
+        h = mix(h, playerInfo.getTrainingCount() != null ? playerInfo.getTrainingCount() : 0);
+
+        h = mix(h, assistants.size());
+        for (Assistant assistant : assistants) {
+            h = mix(h, assistant.getId());
+            h = mix(h, flag(assistant.getUnlocked()));
+            h = mix(h, assistant.getLevel() != null ? assistant.getLevel() : -1);
+        }
+
+        h = mix(h, challenges.size());
+        for (Challenge challenge : challenges) {
+            h = mix(h, challenge.getId());
+            h = mix(h, flag(challenge.getCompleted()));
+        }
+
+        boolean soundEnabled = settings == null || settings.getSoundEnabled() == null || settings.getSoundEnabled();
+        boolean musicEnabled = settings == null || settings.getMusicEnabled() == null || settings.getMusicEnabled();
+        return mix(h, (soundEnabled ? 1 : 0) | (musicEnabled ? 2 : 0));
+    }
+
+    private static int flag(Boolean value) {
+        return value == null ? 2 : (value ? 1 : 0);
+    }
+
+    /**
+     * 把一个值混入哈希（SplitMix64 的混合函数）
+     */
+    private static long mix(long h, long value) {
+        long z = h * 0x9E3779B97F4A7C15L + value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public FingerprintStats getStats() {
+        FingerprintStats stats = new FingerprintStats();
+        stats.setEnabled(enabled);
+        synchronized (entries) {
+            stats.setSize(entries.size());
+        }
+        stats.setHits(hits.sum());
+        stats.setMisses(misses.sum());
+        long total = stats.getHits() + stats.getMisses();
+        stats.setHitRate(total == 0 ? 0.0 : (double) stats.getHits() / total);
+        return stats;
+    }
+
+    /**
+     * 指纹记录
+     */
+    @Data
+    public static class Entry {
+        private final long fingerprint;
+        private final long version;
+    }
+
+    /**
+     * 统计信息
+     */
+    @Data
+    public static class FingerprintStats {
+        private boolean enabled;
+        private int size;
+
+        /**
+         * 与上次数据相同、跳过写入的保存次数
+         */
+        private long hits;
+
+        /**
+         * 正常写入的保存次数
+         */
+        private long misses;
+
+        private double hitRate;
+    }
+}
@@ -7,6 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.lyf.testapi.dto.*;
 import org.lyf.testapi.entity.UserGameData;
 import org.lyf.testapi.mapper.UserGameDataMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -21,90 +22,70 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserGameDataService {
 
+    /**
+     * 增量保存合并时因并发修改失败的最大重试次数
+     */
+    private static final int MAX_PATCH_RETRIES = 3;
+
+    /**
+     * 客户端持有默认数据（版本号0）保存时写入数据库校验的版本号，不会与任何数据的版本号相同，只允许插入
+     * 数据库中的版本号都大于0（迁移前的旧数据在 migrate_add_version.sql 中改为1）
+     */
+    private static final Long NO_ROW_VERSION = -1L;
+
     private final UserGameDataMapper userGameDataMapper;
+    private final UserGameDataWriteBuffer userGameDataWriteBuffer;
+    private final UserGameDataBatchWriter userGameDataBatchWriter;
+    private final UserGameDataCache userGameDataCache;
+    private final UserGameDataBodyCache userGameDataBodyCache;
+    private final UserGameDataFingerprints userGameDataFingerprints;
+    private final OfflineIncomeCalculator offlineIncomeCalculator;
+    private final Leaderboard leaderboard;
+    private final DefaultUserGameData defaultUserGameData;
+    private final ApiMetrics apiMetrics;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * 合并同一用户并发的读缓存未命中加载（客户端启动时会并行发出多个请求），只查询一次数据库
+     * 结果为null表示数据库中没有该用户的数据
+     */
+    private final SingleFlight<String, UserGameDataResponse> loading = new SingleFlight<>();
+
+    /**
+     * 助理、挑战、设置数据的存储格式：json（三个JSON列）或 binary（紧凑编码写入 state_blob 列）
+     * 读取时两种格式都支持，与写入格式无关
+     */
+    @Value("${app.storage.format:json}")
+    private String storageFormat;
+
     /**
      * 获取用户游戏数据
+     * 开启离线收益时返回的金钱包含离线收益（见 OfflineIncomeCalculator），读缓存中保存的仍是数据库中的数据
      *
      * @param userId 用户ID
      * @return 用户游戏数据响应
      */
     public UserGameDataResponse getUserGameData(String userId) {
+        UserGameDataResponse response = loadUserGameData(userId);
+        return offlineIncomeCalculator.apply(response, LocalDateTime.now());
+    }
+
+    private UserGameDataResponse loadUserGameData(String userId) {
         try {
             log.debug("获取用户游戏数据, userId:{}", userId);
-            UserGameData userGameData = userGameDataMapper.selectByUserId(userId);
-
-            // 如果用户不存在，创建并插入默认初始数据
-            if (userGameData == null) {
-                log.info("用户首次登录, 创建默认数据并插入数据库, userId:{}", userId);
-                return createAndInsertDefaultData(userId);
+            UserGameDataResponse cached = userGameDataCache.get(userId);
+            if (cached != null) {
+                return cached;
             }
 
-            // 转换为响应DTO
-            UserGameDataResponse response = new UserGameDataResponse();
-            response.setUserId(userGameData.getUserId());
-            response.setLastUpdateTime(userGameData.getLastUpdateTime());
-
-            // 设置玩家信息
-            PlayerInfo playerInfo = new PlayerInfo();
-            playerInfo.setPlayerLevel(userGameData.getPlayerLevel());
-            playerInfo.setMoney(userGameData.getMoney());
-            playerInfo.setClickRewardBase(userGameData.getClickRewardBase());
-            playerInfo.setClickMultiplier(userGameData.getClickMultiplier());
-            playerInfo.setUpgradeCost(userGameData.getUpgradeCost());
-            // 如果字段不存在（旧数据），返回默认值 0
-            playerInfo.setTrainingCount(userGameData.getTrainingCount() != null ? userGameData.getTrainingCount() : 0);
-            response.setPlayerInfo(playerInfo);
-
-            // 解析助理数据JSON
-            try {
-                List<Assistant> assistants = objectMapper.readValue(
-                        userGameData.getAssistantsData(),
-                        new TypeReference<List<Assistant>>() {}
-                );
-                response.setAssistants(assistants);
-            } catch (Exception e) {
-                log.error("解析助理数据JSON失败, userId:{}", userId, e);
-                response.setAssistants(createDefaultAssistants());
-            }
+            // 同一用户的并发加载共享一次数据库查询
+            UserGameDataResponse response = loading.execute(userId, () -> loadFromStorage(userId));
 
-            // 解析挑战数据JSON
-            try {
-                List<Challenge> challenges = objectMapper.readValue(
-                        userGameData.getChallengesData(),
-                        new TypeReference<List<Challenge>>() {}
-                );
-                response.setChallenges(challenges);
-            } catch (Exception e) {
-                log.error("解析挑战数据JSON失败, userId:{}", userId, e);
-                response.setChallenges(createDefaultChallenges());
+            // 如果用户不存在，返回默认数据（版本号为0），第一次保存时才写入数据库
+            if (response == null) {
+                log.info("用户首次登录, 返回默认数据, userId:{}", userId);
+                return defaultUserGameData.create(userId);
             }
-
-            // 解析设置数据JSON
-            try {
-                if (userGameData.getSettingsData() != null && !userGameData.getSettingsData().trim().isEmpty()) {
-                    Settings settings = objectMapper.readValue(
-                            userGameData.getSettingsData(),
-                            Settings.class
-                    );
-                    // 如果设置项缺失，使用默认值
-                    if (settings.getSoundEnabled() == null) {
-                        settings.setSoundEnabled(true);
-                    }
-                    if (settings.getMusicEnabled() == null) {
-                        settings.setMusicEnabled(true);
-                    }
-                    response.setSettings(settings);
-                } else {
-                    // 如果数据库中没有设置数据，使用默认设置
-                    response.setSettings(Settings.createDefault());
-                }
-            } catch (Exception e) {
-                log.error("解析设置数据JSON失败, userId:{}", userId, e);
-                response.setSettings(Settings.createDefault());
-            }
-
             return response;
         } catch (Exception e) {
             log.error("获取用户游戏数据异常, userId:{}", userId, e);
@@ -113,6 +94,48 @@ public class UserGameDataService {
         }
     }
 
+    /**
+     * 从写缓冲或数据库加载用户游戏数据并放入读缓存
+     *
+     * @return 用户游戏数据，不存在时返回null
+     */
+    private UserGameDataResponse loadFromStorage(String userId) {
+        // 写缓冲中尚未写入数据库的数据比数据库中的更新
+        UserGameData userGameData = userGameDataWriteBuffer.getPending(userId);
+        if (userGameData == null) {
+            userGameData = userGameDataMapper.selectByUserId(userId);
+        }
+        if (userGameData == null) {
+            return null;
+        }
+
+        // 转换为响应DTO
+        UserGameDataResponse response = convertToResponse(userGameData);
+        rememberFingerprint(response, userGameData.getStateFingerprint());
+
+        userGameDataCache.put(userId, response);
+        return response;
+    }
+
+    /**
+     * 获取用户游戏数据的当前版本号，用于判断缓存的响应体是否仍然有效
+     * 依次查询读缓存、写缓冲和数据库（只查询 version 列）
+     *
+     * @param userId 用户ID
+     * @return 当前版本号，用户数据不存在时返回null
+     */
+    public Long getCurrentVersion(String userId) {
+        UserGameDataResponse cached = userGameDataCache.get(userId);
+        if (cached != null) {
+            return cached.getVersion();
+        }
+        UserGameData pending = userGameDataWriteBuffer.getPending(userId);
+        if (pending != null) {
+            return pending.getVersion();
+        }
+        return userGameDataMapper.selectVersionByUserId(userId);
+    }
+
     /**
      * 保存用户游戏数据
      *
@@ -130,40 +153,366 @@ public class UserGameDataService {
                 return new SaveResult(false, null, validateError);
             }
 
+            // 与数据库中的数据完全相同时跳过写入
+            Long fingerprint = null;
+            if (userGameDataFingerprints.isEnabled()) {
+                fingerprint = UserGameDataFingerprints.fingerprint(request.getPlayerInfo(), request.getAssistants(),
+                        request.getChallenges(), request.getSettings());
+                SaveResult unchanged = checkUnchanged(request, fingerprint);
+                userGameDataFingerprints.record(unchanged != null);
+                if (unchanged != null) {
+                    return unchanged;
+                }
+            }
+
             // 转换为实体对象
             UserGameData userGameData = convertToEntity(request);
+            userGameData.setStateFingerprint(fingerprint);
             
             // 调试日志：打印 trainingCount 值
             log.info("保存用户游戏数据 - trainingCount: {}, userId:{}", 
                 userGameData.getTrainingCount(), request.getUserId());
 
-            // 查询是否存在
-            UserGameData existing = userGameDataMapper.selectByUserId(request.getUserId());
-            if (existing == null) {
-                // 插入新数据
-                userGameData.setCreateTime(LocalDateTime.now());
-                userGameData.setLastUpdateTime(LocalDateTime.now());
-                int result = userGameDataMapper.insert(userGameData);
-                log.debug("插入用户游戏数据, userId:{}, result:{}", request.getUserId(), result);
-            } else {
-                // 更新现有数据
-                userGameData.setId(existing.getId());
-                userGameData.setLastUpdateTime(LocalDateTime.now());
-                int result = userGameDataMapper.updateByUserId(userGameData);
-                log.debug("更新用户游戏数据, userId:{}, result:{}", request.getUserId(), result);
+            LocalDateTime now = LocalDateTime.now();
+            Long expectedVersion = request.getVersion();
+            // 新版本号取当前毫秒时间戳，并保证大于客户端持有的版本号
+            long version = Math.max(System.currentTimeMillis(), expectedVersion != null ? expectedVersion + 1 : 0L);
+            userGameData.setVersion(version);
+            userGameData.setCreateTime(now);
+            userGameData.setLastUpdateTime(now);
+            // 基于默认数据的保存只能是该用户的第一次保存，数据已存在时按版本冲突处理
+            Long guardVersion = expectedVersion != null && expectedVersion == 0 ? NO_ROW_VERSION : expectedVersion;
+
+            // 开启写缓冲时只更新内存数据，由后台线程合并写入数据库
+            if (userGameDataWriteBuffer.isEnabled()) {
+                UserGameDataWriteBuffer.PutResult putResult = userGameDataWriteBuffer.put(userGameData, guardVersion);
+                if (putResult == UserGameDataWriteBuffer.PutResult.CONFLICT) {
+                    log.warn("保存用户游戏数据版本冲突, userId:{}, expectedVersion:{}", request.getUserId(), expectedVersion);
+                    return SaveResult.conflict();
+                }
+                if (putResult == UserGameDataWriteBuffer.PutResult.ACCEPTED) {
+                    userGameDataCache.put(request.getUserId(), buildResponse(request, now, version));
+                    userGameDataBodyCache.invalidate(request.getUserId());
+                    rememberFingerprint(request.getUserId(), fingerprint, version);
+                    leaderboard.update(request.getUserId(), userGameData.getMoney(), userGameData.getPlayerLevel(), version);
+                    log.debug("用户游戏数据已放入写缓冲, userId:{}", request.getUserId());
+                    return new SaveResult(true, now, version, null);
+                }
+                log.debug("写缓冲已满, 直接写入数据库, userId:{}", request.getUserId());
             }
 
-            return new SaveResult(true, LocalDateTime.now(), null);
+            // 单条语句插入或更新，传入版本号时由数据库校验版本，拒绝基于旧数据的保存
+            // 开启批量写入时与其他并发请求合并为一个批次提交
+            int result = userGameDataBatchWriter.isEnabled()
+                    ? userGameDataBatchWriter.upsert(userGameData, guardVersion)
+                    : userGameDataMapper.upsert(userGameData, guardVersion);
+            log.debug("保存用户游戏数据, userId:{}, result:{}", request.getUserId(), result);
+            if (guardVersion != null && result < 2) {
+                // 影响行数不是2时可能是新插入，也可能是版本不一致未更新（批量执行时还可能是未知），通过版本号区分
+                Long currentVersion = userGameDataMapper.selectVersionByUserId(request.getUserId());
+                if (currentVersion == null || currentVersion != version) {
+                    log.warn("保存用户游戏数据版本冲突, userId:{}, expectedVersion:{}, currentVersion:{}",
+                            request.getUserId(), expectedVersion, currentVersion);
+                    userGameDataCache.invalidate(request.getUserId());
+                    return SaveResult.conflict();
+                }
+            }
+
+            // 用本次保存的数据刷新读缓存和排行榜
+            userGameDataCache.put(request.getUserId(), buildResponse(request, now, version));
+            userGameDataBodyCache.invalidate(request.getUserId());
+            rememberFingerprint(request.getUserId(), fingerprint, version);
+            leaderboard.update(request.getUserId(), userGameData.getMoney(), userGameData.getPlayerLevel(), version);
+
+            return new SaveResult(true, now, version, null);
         } catch (Exception e) {
             log.error("保存用户游戏数据异常, userId:{}", request.getUserId(), e);
             return new SaveResult(false, null, "保存失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 判断保存的数据是否与数据库中的数据完全相同
+     * 本节点记录的指纹相同时，再查询数据库中的指纹和版本号确认（其他节点可能已修改数据）；
+     * 传入的版本号与数据库不一致时不在这里处理，按正常保存流程返回冲突
+     *
+     * @return 数据相同时返回成功结果（版本号和最后更新时间保持不变），否则返回null
+     */
+    private SaveResult checkUnchanged(UserGameDataRequest request, long fingerprint) {
+        UserGameDataFingerprints.Entry entry = userGameDataFingerprints.get(request.getUserId());
+        if (entry == null || entry.getFingerprint() != fingerprint
+                || (request.getVersion() != null && request.getVersion() != entry.getVersion())) {
+            return null;
+        }
+
+        // 写缓冲中尚未写入数据库的数据比数据库中的更新
+        UserGameData current = userGameDataWriteBuffer.getPending(request.getUserId());
+        if (current == null) {
+            current = userGameDataMapper.selectFingerprintByUserId(request.getUserId());
+        }
+        if (current == null || !Long.valueOf(fingerprint).equals(current.getStateFingerprint())
+                || current.getVersion() == null || current.getVersion() != entry.getVersion()) {
+            userGameDataFingerprints.invalidate(request.getUserId());
+            return null;
+        }
+        log.debug("保存的数据与数据库相同, 跳过写入, userId:{}, version:{}", request.getUserId(), current.getVersion());
+        return new SaveResult(true, current.getLastUpdateTime(), current.getVersion(), null);
+    }
+
+    /**
+     * 记录用户数据的指纹，用于识别之后的重复保存
+     *
+     * @param response    用户数据
+     * @param fingerprint 数据库中记录的指纹，为空时根据数据计算（数据库中未记录的指纹不会被确认，只用于预先筛选）
+     */
+    private void rememberFingerprint(UserGameDataResponse response, Long fingerprint) {
+        if (!userGameDataFingerprints.isEnabled() || response.getVersion() == null || response.getVersion() == 0) {
+            return;
+        }
+        if (fingerprint == null) {
+            fingerprint = UserGameDataFingerprints.fingerprint(response.getPlayerInfo(), response.getAssistants(),
+                    response.getChallenges(), response.getSettings());
+        }
+        rememberFingerprint(response.getUserId(), fingerprint, response.getVersion());
+    }
+
+    private void rememberFingerprint(String userId, Long fingerprint, long version) {
+        if (fingerprint != null) {
+            userGameDataFingerprints.put(userId, fingerprint, version);
+        }
+    }
+
+    /**
+     * 增量保存用户游戏数据
+     * 优先用一条只修改变化列的 UPDATE 完成；用户数据不存在、开启了写缓冲、金钱或等级超出范围、
+     * 或者助理/挑战在JSON数组中的位置与id不对应时，读取当前数据合并后按完整保存处理
+     *
+     * @param patch 增量保存请求
+     * @return 保存结果响应
+     */
+    public SaveResult patchUserGameData(UserGameDataPatchRequest patch) {
+        try {
+            log.debug("增量保存用户游戏数据, userId:{}", patch.getUserId());
+
+            String validateError = validatePatchRequest(patch);
+            if (validateError != null) {
+                log.warn("增量数据校验失败, userId:{}, error:{}", patch.getUserId(), validateError);
+                return new SaveResult(false, null, validateError);
+            }
+
+            // 开启写缓冲时最新数据可能还在内存中，只能合并后放入写缓冲
+            if (!userGameDataWriteBuffer.isEnabled()) {
+                LocalDateTime now = LocalDateTime.now();
+                Long expectedVersion = patch.getVersion();
+                long version = Math.max(System.currentTimeMillis(), expectedVersion != null ? expectedVersion + 1 : 0L);
+                // 有未计入的离线收益（最后更新时间早于起算时间）时不更新，读取当前数据合并离线收益后保存
+                int result = userGameDataMapper.patchByUserId(patch, version, now,
+                        offlineIncomeCalculator.getIncomeStartTime(now));
+                log.debug("增量保存用户游戏数据, userId:{}, result:{}", patch.getUserId(), result);
+                if (result > 0) {
+                    refreshCacheAfterPatch(patch, now, version);
+                    leaderboard.add(patch.getUserId(), patch.getMoneyDelta() != null ? patch.getMoneyDelta() : 0L,
+                            patch.getPlayerLevelDelta() != null ? patch.getPlayerLevelDelta() : 0, version);
+                    return new SaveResult(true, now, version, null);
+                }
+            }
+
+            return mergeAndSave(patch);
+        } catch (Exception e) {
+            log.error("增量保存用户游戏数据异常, userId:{}", patch.getUserId(), e);
+            return new SaveResult(false, null, "保存失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取当前数据，合并增量后按完整数据保存
+     * 开启离线收益时当前数据先计入离线收益，客户端获取数据时看到的离线收益随本次保存写入数据库
+     * 请求未传版本号时，合并期间数据被其他请求修改会重新读取合并，最多重试 MAX_PATCH_RETRIES 次
+     */
+    private SaveResult mergeAndSave(UserGameDataPatchRequest patch) {
+        String userId = patch.getUserId();
+        for (int attempt = 0; ; attempt++) {
+            UserGameData current = userGameDataWriteBuffer.getPending(userId);
+            if (current == null) {
+                current = userGameDataMapper.selectByUserId(userId);
+            }
+            UserGameDataResponse base = current != null
+                    ? offlineIncomeCalculator.apply(convertToResponse(current), LocalDateTime.now())
+                    : defaultUserGameData.create(userId);
+
+            if (current != null && patch.getVersion() != null && !patch.getVersion().equals(base.getVersion())) {
+                log.warn("增量保存用户游戏数据版本冲突, userId:{}, expectedVersion:{}, currentVersion:{}",
+                        userId, patch.getVersion(), base.getVersion());
+                return SaveResult.conflict();
+            }
+            if (patch.getAssistants() != null) {
+                for (Assistant change : patch.getAssistants()) {
+                    if (base.getAssistants().stream().noneMatch(a -> change.getId().equals(a.getId()))) {
+                        return new SaveResult(false, null, "助理ID不存在: " + change.getId());
+                    }
+                }
+            }
+            if (patch.getCompletedChallengeIds() != null) {
+                for (Integer challengeId : patch.getCompletedChallengeIds()) {
+                    if (base.getChallenges().stream().noneMatch(c -> challengeId.equals(c.getId()))) {
+                        return new SaveResult(false, null, "挑战ID不存在: " + challengeId);
+                    }
+                }
+            }
+
+            UserGameDataRequest request = applyPatch(base, patch);
+            // 以读取到的版本号保存，合并期间数据被修改时保存会因版本冲突失败；
+            // 用户数据不存在时以默认数据的版本号0保存，只有数据库中仍没有该用户时才能插入，并发的首次保存只有一个成功
+            request.setVersion(base.getVersion());
+            SaveResult result = saveUserGameData(request);
+            if (!result.isConflict() || patch.getVersion() != null || attempt >= MAX_PATCH_RETRIES) {
+                return result;
+            }
+            log.debug("增量保存合并期间数据已变化, 重新合并, userId:{}, attempt:{}", userId, attempt + 1);
+        }
+    }
+
+    /**
+     * 增量保存成功后刷新读缓存
+     * 传入了版本号且缓存中正好是该版本时直接在缓存数据上合并，否则使新版本之前的缓存数据失效
+     */
+    private void refreshCacheAfterPatch(UserGameDataPatchRequest patch, LocalDateTime lastUpdateTime, long version) {
+        userGameDataBodyCache.invalidate(patch.getUserId());
+        userGameDataFingerprints.invalidate(patch.getUserId());
+        UserGameDataResponse cached = patch.getVersion() != null ? userGameDataCache.get(patch.getUserId()) : null;
+        if (cached != null && patch.getVersion().equals(cached.getVersion())) {
+            userGameDataCache.put(patch.getUserId(), buildResponse(applyPatch(cached, patch), lastUpdateTime, version));
+        } else {
+            userGameDataCache.invalidate(patch.getUserId(), version);
+        }
+    }
+
+    /**
+     * 将增量合并到已有数据上，生成完整的保存请求（不修改已有数据）
+     */
+    private UserGameDataRequest applyPatch(UserGameDataResponse base, UserGameDataPatchRequest patch) {
+        UserGameDataRequest request = new UserGameDataRequest();
+        request.setUserId(patch.getUserId());
+
+        PlayerInfo source = base.getPlayerInfo();
+        PlayerInfo playerInfo = new PlayerInfo();
+        playerInfo.setPlayerLevel(patch.getPlayerLevelDelta() != null
+                ? source.getPlayerLevel() + patch.getPlayerLevelDelta() : source.getPlayerLevel());
+        playerInfo.setMoney(patch.getMoneyDelta() != null ? source.getMoney() + patch.getMoneyDelta() : source.getMoney());
+        playerInfo.setClickRewardBase(patch.getClickRewardBase() != null ? patch.getClickRewardBase() : source.getClickRewardBase());
+        playerInfo.setClickMultiplier(patch.getClickMultiplier() != null ? patch.getClickMultiplier() : source.getClickMultiplier());
+        playerInfo.setUpgradeCost(patch.getUpgradeCost() != null ? patch.getUpgradeCost() : source.getUpgradeCost());
+        playerInfo.setTrainingCount(patch.getTrainingCount() != null ? patch.getTrainingCount() : source.getTrainingCount());
+        request.setPlayerInfo(playerInfo);
+
+        List<Assistant> assistants = new ArrayList<>();
+        for (Assistant existing : base.getAssistants()) {
+            Assistant assistant = new Assistant();
+            assistant.setId(existing.getId());
+            assistant.setUnlocked(existing.getUnlocked());
+            assistant.setLevel(existing.getLevel());
+            if (patch.getAssistants() != null) {
+                for (Assistant change : patch.getAssistants()) {
+                    if (change.getId().equals(assistant.getId())) {
+                        if (change.getUnlocked() != null) {
+                            assistant.setUnlocked(change.getUnlocked());
+                        }
+                        if (change.getLevel() != null) {
+                            assistant.setLevel(change.getLevel());
+                        }
+                    }
+                }
+            }
+            assistants.add(assistant);
+        }
+        request.setAssistants(assistants);
+
+        List<Challenge> challenges = new ArrayList<>();
+        for (Challenge existing : base.getChallenges()) {
+            Challenge challenge = new Challenge();
+            challenge.setId(existing.getId());
+            challenge.setCompleted(existing.getCompleted());
+            if (patch.getCompletedChallengeIds() != null && patch.getCompletedChallengeIds().contains(challenge.getId())) {
+                challenge.setCompleted(true);
+            }
+            challenges.add(challenge);
+        }
+        request.setChallenges(challenges);
+
+        Settings settings = new Settings();
+        Settings baseSettings = base.getSettings() != null ? base.getSettings() : Settings.createDefault();
+        Settings changedSettings = patch.getSettings() != null ? patch.getSettings() : new Settings();
+        settings.setSoundEnabled(changedSettings.getSoundEnabled() != null
+                ? changedSettings.getSoundEnabled() : baseSettings.getSoundEnabled());
+        settings.setMusicEnabled(changedSettings.getMusicEnabled() != null
+                ? changedSettings.getMusicEnabled() : baseSettings.getMusicEnabled());
+        request.setSettings(settings);
+
+        return request;
+    }
+
+    /**
+     * 增量数据校验（规则与完整保存一致，金钱和等级的范围在合并后校验）
+     */
+    private String validatePatchRequest(UserGameDataPatchRequest patch) {
+        if (patch.getUserId() == null || patch.getUserId().trim().isEmpty()) {
+            return "用户ID不能为空";
+        }
+        if (patch.getPlayerLevelDelta() != null && Math.abs((long) patch.getPlayerLevelDelta()) > 999) {
+            return "玩家等级必须在1-999之间";
+        }
+        if (patch.getClickRewardBase() != null && patch.getClickRewardBase() < 0) {
+            return "点击收益基础值不能为负数";
+        }
+        if (patch.getClickMultiplier() != null && patch.getClickMultiplier() < 0) {
+            return "点击收益倍率不能为负数";
+        }
+        if (patch.getUpgradeCost() != null && patch.getUpgradeCost() < 0) {
+            return "升级所需金币不能为负数";
+        }
+        if (patch.getTrainingCount() != null && patch.getTrainingCount() < 0) {
+            return "助理培训次数不能为负数";
+        }
+
+        if (patch.getAssistants() != null) {
+            for (Assistant assistant : patch.getAssistants()) {
+                if (assistant.getId() == null || assistant.getId() < 1) {
+                    return "助理ID必须大于0";
+                }
+                if (assistant.getUnlocked() == null && assistant.getLevel() == null) {
+                    return "助理数据不能为空";
+                }
+                if (assistant.getLevel() != null && (assistant.getLevel() < 0 || assistant.getLevel() > 50)) {
+                    return "助理等级必须在0-50之间";
+                }
+            }
+        }
+
+        if (patch.getCompletedChallengeIds() != null) {
+            for (Integer challengeId : patch.getCompletedChallengeIds()) {
+                if (challengeId == null || challengeId < 1) {
+                    return "挑战ID必须大于0";
+                }
+            }
+        }
+
+        boolean settingsChanged = patch.getSettings() != null
+                && (patch.getSettings().getSoundEnabled() != null || patch.getSettings().getMusicEnabled() != null);
+        boolean assistantsChanged = patch.getAssistants() != null && !patch.getAssistants().isEmpty();
+        boolean challengesChanged = patch.getCompletedChallengeIds() != null && !patch.getCompletedChallengeIds().isEmpty();
+        if (patch.getMoneyDelta() == null && patch.getPlayerLevelDelta() == null && patch.getClickRewardBase() == null
+                && patch.getClickMultiplier() == null && patch.getUpgradeCost() == null && patch.getTrainingCount() == null
+                && !assistantsChanged && !challengesChanged && !settingsChanged) {
+            return "没有需要保存的数据";
+        }
+
+        return null;
+    }
+
     /**
      * 数据校验
      */
-    private String validateRequest(UserGameDataRequest request) {
+    String validateRequest(UserGameDataRequest request) {
         if (request.getUserId() == null || request.getUserId().trim().isEmpty()) {
             return "用户ID不能为空";
         }
@@ -220,7 +569,7 @@ public class UserGameDataService {
     /**
      * 转换为实体对象
      */
-    private UserGameData convertToEntity(UserGameDataRequest request) throws Exception {
+    UserGameData convertToEntity(UserGameDataRequest request) throws Exception {
         UserGameData userGameData = new UserGameData();
         userGameData.setUserId(request.getUserId());
 
@@ -233,13 +582,6 @@ public class UserGameDataService {
         // 如果请求中未包含 trainingCount 字段，使用默认值 0
         userGameData.setTrainingCount(playerInfo.getTrainingCount() != null ? playerInfo.getTrainingCount() : 0);
 
-        // 将助理数据转换为JSON
-        userGameData.setAssistantsData(objectMapper.writeValueAsString(request.getAssistants()));
-
-        // 将挑战数据转换为JSON
-        userGameData.setChallengesData(objectMapper.writeValueAsString(request.getChallenges()));
-
-        // 将设置数据转换为JSON
         Settings settings = request.getSettings();
         if (settings == null) {
             // 如果请求中未包含 settings 字段，使用默认设置
@@ -253,52 +595,157 @@ public class UserGameDataService {
                 settings.setMusicEnabled(true);
             }
         }
-        userGameData.setSettingsData(objectMapper.writeValueAsString(settings));
+        request.setSettings(settings);
+        fillStateColumns(userGameData, request.getAssistants(), request.getChallenges(), settings);
 
         return userGameData;
     }
 
     /**
-     * 创建并插入默认数据到数据库
+     * 写入助理、挑战、设置数据
+     * 紧凑格式下能编码时只写 state_blob，三个JSON列置空；否则写JSON列并清空 state_blob
+     */
+    private void fillStateColumns(UserGameData userGameData, List<Assistant> assistants, List<Challenge> challenges,
+                                  Settings settings) throws Exception {
+        byte[] stateBlob = "binary".equalsIgnoreCase(storageFormat)
+                ? GameStateCodec.encode(assistants, challenges, settings) : null;
+        if (stateBlob != null) {
+            userGameData.setStateBlob(stateBlob);
+            return;
+        }
+        long start = System.nanoTime();
+        userGameData.setAssistantsData(objectMapper.writeValueAsString(assistants));
+        userGameData.setChallengesData(objectMapper.writeValueAsString(challenges));
+        userGameData.setSettingsData(objectMapper.writeValueAsString(settings));
+        apiMetrics.recordJsonSerialize(System.nanoTime() - start);
+    }
+
+    /**
+     * 将已有数据的JSON列编码为紧凑格式（用于存量数据迁移）
      *
-     * @param userId 用户ID
+     * @param userGameData 用户游戏数据
+     * @return 紧凑格式数据，无法编码时返回null
+     */
+    public byte[] encodeStateBlob(UserGameData userGameData) {
+        UserGameDataResponse response = convertToResponse(userGameData);
+        return GameStateCodec.encode(response.getAssistants(), response.getChallenges(), response.getSettings());
+    }
+
+    /**
+     * 将实体对象转换为响应DTO（解析助理、挑战和设置JSON）
+     *
+     * @param userGameData 用户游戏数据实体
      * @return 用户游戏数据响应
      */
-    private UserGameDataResponse createAndInsertDefaultData(String userId) {
-        try {
-            // 创建默认响应数据
-            UserGameDataResponse response = createDefaultData(userId);
-
-            // 转换为实体对象并插入数据库
-            UserGameData userGameData = new UserGameData();
-            userGameData.setUserId(userId);
-            userGameData.setPlayerLevel(response.getPlayerInfo().getPlayerLevel());
-            userGameData.setMoney(response.getPlayerInfo().getMoney());
-            userGameData.setClickRewardBase(response.getPlayerInfo().getClickRewardBase());
-            userGameData.setClickMultiplier(response.getPlayerInfo().getClickMultiplier());
-            userGameData.setUpgradeCost(response.getPlayerInfo().getUpgradeCost());
-            userGameData.setTrainingCount(response.getPlayerInfo().getTrainingCount() != null ? response.getPlayerInfo().getTrainingCount() : 0);
-
-            // 将助理和挑战数据转换为JSON
-            userGameData.setAssistantsData(objectMapper.writeValueAsString(response.getAssistants()));
-            userGameData.setChallengesData(objectMapper.writeValueAsString(response.getChallenges()));
-            // 将设置数据转换为JSON
-            userGameData.setSettingsData(objectMapper.writeValueAsString(response.getSettings()));
+    UserGameDataResponse convertToResponse(UserGameData userGameData) {
+        UserGameDataResponse response = new UserGameDataResponse();
+        response.setUserId(userGameData.getUserId());
+        response.setLastUpdateTime(userGameData.getLastUpdateTime());
+        // 旧数据没有版本号时返回 0
+        response.setVersion(userGameData.getVersion() != null ? userGameData.getVersion() : 0L);
 
-            LocalDateTime now = LocalDateTime.now();
-            userGameData.setCreateTime(now);
-            userGameData.setLastUpdateTime(now);
+        // 设置玩家信息
+        PlayerInfo playerInfo = new PlayerInfo();
+        playerInfo.setPlayerLevel(userGameData.getPlayerLevel());
+        playerInfo.setMoney(userGameData.getMoney());
+        playerInfo.setClickRewardBase(userGameData.getClickRewardBase());
+        playerInfo.setClickMultiplier(userGameData.getClickMultiplier());
+        playerInfo.setUpgradeCost(userGameData.getUpgradeCost());
+        // 如果字段不存在（旧数据），返回默认值 0
+        playerInfo.setTrainingCount(userGameData.getTrainingCount() != null ? userGameData.getTrainingCount() : 0);
+        response.setPlayerInfo(playerInfo);
 
-            // 插入数据库
-            int result = userGameDataMapper.insert(userGameData);
-            log.info("插入默认用户游戏数据成功, userId:{}, result:{}", userId, result);
+        // 紧凑格式数据直接解码，不需要解析JSON
+        if (userGameData.getStateBlob() != null) {
+            try {
+                GameStateCodec.GameState state = GameStateCodec.decode(userGameData.getStateBlob());
+                response.setAssistants(state.getAssistants());
+                response.setChallenges(state.getChallenges());
+                response.setSettings(state.getSettings());
+                return response;
+            } catch (IllegalArgumentException e) {
+                log.error("解码紧凑格式数据失败, 尝试解析JSON数据, userId:{}", userGameData.getUserId(), e);
+            }
+        }
 
-            return response;
+        long jsonStart = System.nanoTime();
+
+        // 解析助理数据JSON
+        try {
+            List<Assistant> assistants = objectMapper.readValue(
+                    userGameData.getAssistantsData(),
+                    new TypeReference<List<Assistant>>() {}
+            );
+            response.setAssistants(assistants);
         } catch (Exception e) {
-            log.error("创建并插入默认数据失败, userId:{}", userId, e);
-            // 插入失败时仍然返回默认数据（不插入数据库）
-            return createDefaultData(userId);
+            log.error("解析助理数据JSON失败, userId:{}", userGameData.getUserId(), e);
+            response.setAssistants(DefaultUserGameData.newAssistants());
+        }
+
+        // 解析挑战数据JSON
+        try {
+            List<Challenge> challenges = objectMapper.readValue(
+                    userGameData.getChallengesData(),
+                    new TypeReference<List<Challenge>>() {}
+            );
+            response.setChallenges(challenges);
+        } catch (Exception e) {
+            log.error("解析挑战数据JSON失败, userId:{}", userGameData.getUserId(), e);
+            response.setChallenges(DefaultUserGameData.newChallenges());
         }
+
+        // 解析设置数据JSON
+        try {
+            if (userGameData.getSettingsData() != null && !userGameData.getSettingsData().trim().isEmpty()) {
+                Settings settings = objectMapper.readValue(
+                        userGameData.getSettingsData(),
+                        Settings.class
+                );
+                // 如果设置项缺失，使用默认值
+                if (settings.getSoundEnabled() == null) {
+                    settings.setSoundEnabled(true);
+                }
+                if (settings.getMusicEnabled() == null) {
+                    settings.setMusicEnabled(true);
+                }
+                response.setSettings(settings);
+            } else {
+                // 如果数据库中没有设置数据，使用默认设置
+                response.setSettings(Settings.createDefault());
+            }
+        } catch (Exception e) {
+            log.error("解析设置数据JSON失败, userId:{}", userGameData.getUserId(), e);
+            response.setSettings(Settings.createDefault());
+        }
+        apiMetrics.recordJsonParse(System.nanoTime() - jsonStart);
+
+        return response;
+    }
+
+    /**
+     * 根据保存请求组装响应数据（用于刷新读缓存）
+     * 调用前请求已经过 convertToEntity 处理，settings 缺失项已补全
+     */
+    private UserGameDataResponse buildResponse(UserGameDataRequest request, LocalDateTime lastUpdateTime, long version) {
+        UserGameDataResponse response = new UserGameDataResponse();
+        response.setUserId(request.getUserId());
+        response.setLastUpdateTime(lastUpdateTime);
+        response.setVersion(version);
+
+        PlayerInfo source = request.getPlayerInfo();
+        PlayerInfo playerInfo = new PlayerInfo();
+        playerInfo.setPlayerLevel(source.getPlayerLevel());
+        playerInfo.setMoney(source.getMoney());
+        playerInfo.setClickRewardBase(source.getClickRewardBase());
+        playerInfo.setClickMultiplier(source.getClickMultiplier());
+        playerInfo.setUpgradeCost(source.getUpgradeCost());
+        playerInfo.setTrainingCount(source.getTrainingCount() != null ? source.getTrainingCount() : 0);
+        response.setPlayerInfo(playerInfo);
+
+        response.setAssistants(request.getAssistants());
+        response.setChallenges(request.getChallenges());
+        response.setSettings(request.getSettings() != null ? request.getSettings() : Settings.createDefault());
+        return response;
     }
 
     /**
@@ -307,26 +754,20 @@ public class UserGameDataService {
      * @param userId 用户ID
      * @return 用户游戏数据响应
      */
-    private UserGameDataResponse createDefaultData(String userId) {
+    UserGameDataResponse createDefaultData(String userId) {
         UserGameDataResponse response = new UserGameDataResponse();
         response.setUserId(userId);
         response.setLastUpdateTime(LocalDateTime.now());
+        response.setVersion(0L);
 
         // 默认玩家信息
-        PlayerInfo playerInfo = new PlayerInfo();
-        playerInfo.setPlayerLevel(1);
-        playerInfo.setMoney(0L);
-        playerInfo.setClickRewardBase(100L);
-        playerInfo.setClickMultiplier(1.0);
-        playerInfo.setUpgradeCost(10L);
-        playerInfo.setTrainingCount(0); // 默认培训次数为 0
-        response.setPlayerInfo(playerInfo);
+        response.setPlayerInfo(DefaultUserGameData.newPlayerInfo());
 
         // 默认助理数据
-        response.setAssistants(createDefaultAssistants());
+        response.setAssistants(DefaultUserGameData.newAssistants());
 
         // 默认挑战数据
-        response.setChallenges(createDefaultChallenges());
+        response.setChallenges(DefaultUserGameData.newChallenges());
 
         // 默认设置数据
         response.setSettings(Settings.createDefault());
@@ -335,32 +776,29 @@ public class UserGameDataService {
     }
 
     /**
-     * 创建默认助理数据
+     * 获取加载统计信息
      */
-    private List<Assistant> createDefaultAssistants() {
-        List<Assistant> assistants = new ArrayList<>();
-        for (int i = 1; i <= 4; i++) {
-            Assistant assistant = new Assistant();
-            assistant.setId(i);
-            assistant.setUnlocked(false);
-            assistant.setLevel(0);
-            assistants.add(assistant);
-        }
-        return assistants;
+    public LoadStats getLoadStats() {
+        LoadStats stats = new LoadStats();
+        stats.setLoads(loading.getExecutions());
+        stats.setCoalesced(loading.getCoalesced());
+        return stats;
     }
 
     /**
-     * 创建默认挑战数据
+     * 加载统计信息
      */
-    private List<Challenge> createDefaultChallenges() {
-        List<Challenge> challenges = new ArrayList<>();
-        for (int i = 1; i <= 5; i++) {
-            Challenge challenge = new Challenge();
-            challenge.setId(i);
-            challenge.setCompleted(false);
-            challenges.add(challenge);
-        }
-        return challenges;
+    @lombok.Data
+    public static class LoadStats {
+        /**
+         * 读缓存未命中时实际查询写缓冲和数据库的次数
+         */
+        private long loads;
+
+        /**
+         * 与同一用户正在进行的加载合并、未查询数据库的次数
+         */
+        private long coalesced;
     }
 
     /**
@@ -370,13 +808,33 @@ public class UserGameDataService {
     public static class SaveResult {
         private Boolean success;
         private LocalDateTime lastUpdateTime;
+        private Long version;
         private String error;
 
+        /**
+         * 是否因版本冲突保存失败（客户端需要重新获取数据）
+         */
+        private boolean conflict;
+
         public SaveResult(Boolean success, LocalDateTime lastUpdateTime, String error) {
+            this(success, lastUpdateTime, null, error);
+        }
+
+        public SaveResult(Boolean success, LocalDateTime lastUpdateTime, Long version, String error) {
             this.success = success;
             this.lastUpdateTime = lastUpdateTime;
+            this.version = version;
             this.error = error;
         }
+
+        /**
+         * 版本冲突的保存结果
+         */
+        public static SaveResult conflict() {
+            SaveResult result = new SaveResult(false, null, "数据已在其他设备更新，请重新获取数据后再保存");
+            result.setConflict(true);
+            return result;
+        }
     }
 }
 
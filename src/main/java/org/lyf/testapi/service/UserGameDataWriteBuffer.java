@@ -0,0 +1,351 @@
+package org.lyf.testapi.service;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.lyf.testapi.entity.UserGameData;
+import org.lyf.testapi.mapper.UserGameDataMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户游戏数据写缓冲（write-behind）
+ * 开启后保存请求只更新内存中每个用户的最新数据，由后台线程按固定间隔或脏数据数量阈值写入数据库，
+ * 同一用户在一个刷新周期内的多次保存会合并为一次写入；应用关闭时会把剩余数据全部写入
+ * 版本号校验在放入时完成：缓冲中已有数据时在内存中校验，否则查询数据库中的版本号校验，校验失败直接返回冲突；
+ * 写入数据库时仍按放入时的版本号校验，只有其他节点在此期间修改了数据才会失败，这时数据被丢弃并计入统计，
+ * 同时清除该用户的读缓存、响应体缓存和数据指纹，并按数据库中的数据刷新排行榜，客户端下次保存时会收到版本冲突
+ * 待写入数据达到上限（max-pending）时不再接收新用户的数据，由调用方直接写入数据库，数据库不可用时缓冲不会无限增长
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UserGameDataWriteBuffer {
+
+    private final UserGameDataMapper userGameDataMapper;
+    private final UserGameDataBatchWriter userGameDataBatchWriter;
+    private final UserGameDataCache userGameDataCache;
+    private final UserGameDataBodyCache userGameDataBodyCache;
+    private final UserGameDataFingerprints userGameDataFingerprints;
+    private final Leaderboard leaderboard;
+
+    /**
+     * 是否开启写缓冲（默认关闭，保存请求直接写数据库）
+     */
+    @Value("${app.write-behind.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 刷新间隔（毫秒）
+     */
+    @Value("${app.write-behind.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    /**
+     * 脏数据数量阈值，达到后立即触发一次刷新
+     */
+    @Value("${app.write-behind.max-dirty:1000}")
+    private int maxDirty;
+
+    /**
+     * 待写入数据数量上限，达到后新用户的保存直接写入数据库（缓冲中已有数据的用户仍然放入缓冲）
+     */
+    @Value("${app.write-behind.max-pending:10000}")
+    private int maxPending;
+
+    /**
+     * 待写入的数据
+     * Key: userId
+     * Value: 该用户最新一次保存的数据
+     */
+    private final Map<String, PendingWrite> dirty = new ConcurrentHashMap<>();
+
+    /**
+     * 是否已有待执行的刷新任务（避免阈值触发时重复提交）
+     */
+    private final AtomicBoolean flushPending = new AtomicBoolean(false);
+
+    /**
+     * 刷新锁，保证同一时刻只有一个线程在写数据库
+     */
+    private final Object flushLock = new Object();
+
+    private ScheduledExecutorService scheduler;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    /**
+     * 放入结果
+     */
+    public enum PutResult {
+        /**
+         * 已放入缓冲
+         */
+        ACCEPTED,
+
+        /**
+         * 版本号与缓冲或数据库中的数据不一致，数据未放入缓冲
+         */
+        CONFLICT,
+
+        /**
+         * 待写入数据已达上限，数据未放入缓冲，需要直接写入数据库
+         */
+        FULL
+    }
+
+    /**
+     * 待写入数据
+     */
+    private static class PendingWrite {
+        private final UserGameData data;
+
+        /**
+         * 写入数据库时校验的版本号：合并后的多次保存以第一次保存时客户端持有的版本号为准，
+         * 被合并的数据已写入数据库时改为该数据的版本号
+         */
+        private final Long expectedVersion;
+
+        PendingWrite(UserGameData data, Long expectedVersion) {
+            this.data = data;
+            this.expectedVersion = expectedVersion;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "write-behind-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("用户游戏数据写缓冲已开启, flushIntervalMs:{}, maxDirty:{}", flushIntervalMs, maxDirty);
+    }
+
+    /**
+     * 是否开启写缓冲
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 放入待写入数据，覆盖该用户之前尚未写入的数据
+     * 缓冲中没有该用户的数据时查询数据库中的版本号校验（与 upsert 一致，数据库中没有该用户时总是可以插入）；
+     * 查询在 compute 中执行，校验和放入之间该用户的数据不会被刷新写入数据库
+     *
+     * @param userGameData    用户游戏数据（需已设置userId、version和lastUpdateTime）
+     * @param expectedVersion 客户端持有的版本号，为空表示不校验
+     * @return 放入结果，只有 ACCEPTED 表示数据已放入缓冲
+     */
+    public PutResult put(UserGameData userGameData, Long expectedVersion) {
+        if (userGameData.getCreateTime() == null) {
+            userGameData.setCreateTime(LocalDateTime.now());
+        }
+        PutResult[] result = {PutResult.ACCEPTED};
+        dirty.compute(userGameData.getUserId(), (userId, existing) -> {
+            if (existing != null) {
+                if (expectedVersion != null && !expectedVersion.equals(existing.data.getVersion())) {
+                    result[0] = PutResult.CONFLICT;
+                    return existing;
+                }
+                return new PendingWrite(userGameData, existing.expectedVersion);
+            }
+            if (dirty.size() >= maxPending) {
+                result[0] = PutResult.FULL;
+                return null;
+            }
+            if (expectedVersion != null) {
+                Long currentVersion = userGameDataMapper.selectVersionByUserId(userId);
+                if (currentVersion != null && !expectedVersion.equals(currentVersion)) {
+                    result[0] = PutResult.CONFLICT;
+                    return null;
+                }
+            }
+            return new PendingWrite(userGameData, expectedVersion);
+        });
+        if (result[0] == PutResult.FULL) {
+            bypassed.increment();
+            return result[0];
+        }
+        if (result[0] == PutResult.ACCEPTED && scheduler != null && dirty.size() >= maxDirty
+                && flushPending.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+        return result[0];
+    }
+
+    /**
+     * 获取尚未写入数据库的数据
+     *
+     * @param userId 用户ID
+     * @return 待写入数据，不存在返回null
+     */
+    public UserGameData getPending(String userId) {
+        PendingWrite pending = dirty.get(userId);
+        return pending != null ? pending.data : null;
+    }
+
+    /**
+     * 将所有待写入数据写入数据库
+     * 写入失败的数据保留在缓冲中，等待下次刷新重试；开启批量写入时整轮数据合并为批次提交
+     *
+     * @return 成功写入的条数
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            flushPending.set(false);
+            List<Map.Entry<String, PendingWrite>> entries = new ArrayList<>(dirty.entrySet());
+            List<CompletableFuture<Integer>> results = new ArrayList<>(entries.size());
+            for (Map.Entry<String, PendingWrite> entry : entries) {
+                PendingWrite pending = entry.getValue();
+                results.add(userGameDataBatchWriter.submit(pending.data, pending.expectedVersion));
+            }
+
+            int written = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                String userId = entries.get(i).getKey();
+                PendingWrite pending = entries.get(i).getValue();
+                try {
+                    int result = results.get(i).get();
+                    if (pending.expectedVersion != null && result < 2) {
+                        Long currentVersion = userGameDataMapper.selectVersionByUserId(userId);
+                        if (!pending.data.getVersion().equals(currentVersion)) {
+                            log.error("写缓冲数据版本冲突（其他节点已修改数据）, 丢弃, userId:{}, version:{}, "
+                                    + "expectedVersion:{}, currentVersion:{}",
+                                    userId, pending.data.getVersion(), pending.expectedVersion, currentVersion);
+                            conflicts.increment();
+                            discard(userId, pending);
+                            continue;
+                        }
+                    }
+                    // 刷新期间到达的新数据保留到下次刷新，其版本号校验改为基于刚写入的这一份数据
+                    dirty.computeIfPresent(userId, (key, current) -> current == pending ? null
+                            : current.expectedVersion != null ? new PendingWrite(current.data, pending.data.getVersion())
+                            : current);
+                    written++;
+                    writes.increment();
+                    log.debug("写缓冲刷新用户游戏数据, userId:{}, result:{}", userId, result);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    log.error("写缓冲刷新用户游戏数据失败, userId:{}", userId, e);
+                }
+            }
+            return written;
+        }
+    }
+
+    /**
+     * 丢弃版本冲突的数据
+     * 刷新期间合并在这份数据之上的新数据基于同一个旧版本号，一并丢弃；
+     * 读缓存等保存时写入的内容已不再对应数据库中的数据，全部清除
+     */
+    private void discard(String userId, PendingWrite pending) {
+        dirty.computeIfPresent(userId, (key, current) ->
+                current == pending || Objects.equals(current.expectedVersion, pending.expectedVersion) ? null : current);
+        userGameDataCache.invalidate(userId);
+        userGameDataBodyCache.invalidate(userId);
+        userGameDataFingerprints.invalidate(userId);
+        // 被丢弃的数据的版本号可能比数据库中的新，先移除再按数据库中的数据放入
+        leaderboard.remove(userId);
+        UserGameData current = userGameDataMapper.selectByUserId(userId);
+        if (current != null) {
+            leaderboard.update(userId, current.getMoney() != null ? current.getMoney() : 0L,
+                    current.getPlayerLevel() != null ? current.getPlayerLevel() : 1,
+                    current.getVersion() != null ? current.getVersion() : 0L);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            int written = flush();
+            if (written > 0) {
+                log.debug("写缓冲刷新完成, written:{}, remaining:{}", written, dirty.size());
+            }
+        } catch (Exception e) {
+            log.error("写缓冲刷新异常", e);
+        }
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public WriteBufferStats getStats() {
+        WriteBufferStats stats = new WriteBufferStats();
+        stats.setEnabled(enabled);
+        stats.setDirty(dirty.size());
+        stats.setWritten(writes.sum());
+        stats.setConflicts(conflicts.sum());
+        stats.setBypassed(bypassed.sum());
+        return stats;
+    }
+
+    /**
+     * 应用关闭时停止定时刷新，并写入剩余数据
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int written = flush();
+        log.info("应用关闭, 写缓冲已刷新, written:{}, remaining:{}", written, dirty.size());
+    }
+
+    /**
+     * 统计信息
+     */
+    @Data
+    public static class WriteBufferStats {
+        private boolean enabled;
+
+        /**
+         * 当前待写入数据数量
+         */
+        private int dirty;
+
+        /**
+         * 刷新时成功写入数据库的条数
+         */
+        private long written;
+
+        /**
+         * 刷新时因其他节点修改了数据而被丢弃的保存次数（客户端已收到保存成功），不为0时需要排查
+         */
+        private long conflicts;
+
+        /**
+         * 待写入数据达到上限后直接写入数据库的保存次数
+         */
+        private long bypassed;
+    }
+}
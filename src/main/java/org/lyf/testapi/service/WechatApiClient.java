@@ -0,0 +1,224 @@
+package org.lyf.testapi.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 微信服务端接口客户端
+ * 使用连接池复用长连接，连接、读取、等待连接均有超时，并发请求数不超过连接池大小（等待连接超时后直接失败，
+ * 不会无限占用Tomcat线程）；同一个code的并发请求（客户端重试）合并为一次微信接口调用
+ */
+@Component
+@Slf4j
+public class WechatApiClient {
+
+    @Value("${wechat.appid}")
+    private String appid;
+
+    @Value("${wechat.secret}")
+    private String secret;
+
+    /**
+     * 微信接口地址（测试时可指向本地模拟服务）
+     */
+    @Value("${wechat.api.base-url:https://api.weixin.qq.com}")
+    private String baseUrl;
+
+    /**
+     * 建立连接超时时间（毫秒）
+     */
+    @Value("${wechat.api.connect-timeout-ms:1000}")
+    private int connectTimeoutMs;
+
+    /**
+     * 读取响应超时时间（毫秒）
+     */
+    @Value("${wechat.api.read-timeout-ms:3000}")
+    private int readTimeoutMs;
+
+    /**
+     * 连接池已满时等待空闲连接的超时时间（毫秒）
+     */
+    @Value("${wechat.api.pool-wait-ms:200}")
+    private int poolWaitMs;
+
+    /**
+     * 连接池大小，即同时进行的最大请求数
+     */
+    @Value("${wechat.api.max-connections:50}")
+    private int maxConnections;
+
+    /**
+     * 空闲连接保留时间（毫秒），超过后关闭
+     */
+    @Value("${wechat.api.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+
+    private final SingleFlight<String, Code2SessionResponse> code2SessionFlight = new SingleFlight<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @PostConstruct
+    public void init() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        // 空闲超过2秒的连接在复用前检查是否已被服务端关闭
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .setConnectionRequestTimeout(poolWaitMs)
+                .build();
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+        log.info("微信接口客户端已初始化, baseUrl:{}, maxConnections:{}, connectTimeoutMs:{}, readTimeoutMs:{}",
+                baseUrl, maxConnections, connectTimeoutMs, readTimeoutMs);
+    }
+
+    /**
+     * 调用 code2Session 接口，用登录凭证code换取openid和session_key
+     * 同一个code已有请求在进行时等待该请求的结果
+     *
+     * @param code 微信登录凭证code
+     * @return 微信接口响应（包含错误码时 errcode 不为空且不为0）
+     * @throws IOException 网络错误、超时（InterruptedIOException 的子类）或HTTP状态码不是200
+     */
+    public Code2SessionResponse code2Session(String code) throws Exception {
+        return code2SessionFlight.execute(code, () -> requestCode2Session(code));
+    }
+
+    private Code2SessionResponse requestCode2Session(String code) throws Exception {
+        URI uri = new URIBuilder(baseUrl + "/sns/jscode2session")
+                .addParameter("appid", appid)
+                .addParameter("secret", secret)
+                .addParameter("js_code", code)
+                .addParameter("grant_type", "authorization_code")
+                .build();
+
+        long start = System.currentTimeMillis();
+        try (CloseableHttpResponse response = httpClient.execute(new HttpGet(uri))) {
+            int status = response.getStatusLine().getStatusCode();
+            // 读完响应体，连接才能放回连接池复用
+            String body = response.getEntity() != null
+                    ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+            log.debug("微信code2Session接口响应, status:{}, costMs:{}, body:{}", status, System.currentTimeMillis() - start, body);
+            if (status != 200) {
+                throw new IOException("微信接口HTTP状态码异常: " + status);
+            }
+            return objectMapper.readValue(body, Code2SessionResponse.class);
+        }
+    }
+
+    /**
+     * 获取客户端统计信息
+     */
+    public ClientStats getStats() {
+        PoolStats poolStats = connectionManager.getTotalStats();
+        ClientStats stats = new ClientStats();
+        stats.setLeased(poolStats.getLeased());
+        stats.setAvailable(poolStats.getAvailable());
+        stats.setPending(poolStats.getPending());
+        stats.setMaxConnections(poolStats.getMax());
+        stats.setCalls(code2SessionFlight.getExecutions());
+        stats.setCoalesced(code2SessionFlight.getCoalesced());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * code2Session 接口响应
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Code2SessionResponse {
+        private String openid;
+
+        @JsonProperty("session_key")
+        private String sessionKey;
+
+        private String unionid;
+
+        /**
+         * 错误码，成功时为空或0
+         */
+        private Integer errcode;
+
+        private String errmsg;
+
+        /**
+         * 是否为错误响应
+         */
+        public boolean isError() {
+            return errcode != null && errcode != 0;
+        }
+    }
+
+    /**
+     * 客户端统计信息
+     */
+    @Data
+    public static class ClientStats {
+        /**
+         * 正在使用的连接数
+         */
+        private int leased;
+
+        /**
+         * 空闲可复用的连接数
+         */
+        private int available;
+
+        /**
+         * 等待连接的请求数
+         */
+        private int pending;
+
+        private int maxConnections;
+
+        /**
+         * 实际调用微信接口的次数
+         */
+        private long calls;
+
+        /**
+         * 被合并的重复请求次数
+         */
+        private long coalesced;
+    }
+}
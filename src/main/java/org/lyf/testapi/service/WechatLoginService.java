@@ -1,69 +1,160 @@
 package org.lyf.testapi.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 微信登录服务类
+ * 微信接口调用经过熔断器和隔离线程池：微信接口持续失败或变慢时熔断器打开，登录请求直接返回503，
+ * 不再占用连接和Tomcat线程；隔离线程池的线程和队列都已满时同样直接返回503
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class WechatLoginService {
 
-    @Value("${wechat.appid}")
-    private String appid;
+    /**
+     * token有效期（秒）
+     */
+    @Value("${app.token.expires-in:7200}")
+    private int expiresIn;
 
-    @Value("${wechat.secret}")
-    private String secret;
+    /**
+     * 微信服务端接口客户端（连接池、超时、相同code请求合并）
+     */
+    private final WechatApiClient wechatApiClient;
 
-    @Autowired
-    private RestTemplate restTemplate;
-    
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * Token存储（由 app.token.mode 选择内存存储或无状态签名token）
+     */
+    private final TokenStore tokenStore;
 
     /**
-     * Token存储（内存缓存）
-     * Key: token
-     * Value: openid
-     * 实际生产环境建议使用Redis
+     * 熔断器滑动窗口大小（最近的调用次数）
      */
-    private final Map<String, TokenInfo> tokenCache = new ConcurrentHashMap<>();
+    @Value("${wechat.api.circuit-breaker.window-size:50}")
+    private int breakerWindowSize;
 
     /**
-     * 定时清理过期token的线程池
+     * 熔断器开始计算失败率所需的最少调用次数
      */
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    @Value("${wechat.api.circuit-breaker.minimum-calls:20}")
+    private int breakerMinimumCalls;
 
     /**
-     * Token信息内部类
+     * 失败率阈值（百分比），达到后熔断器打开
      */
-    @lombok.Data
-    private static class TokenInfo {
-        private String openid;
-        private String sessionKey;
-        private long expireTime;
+    @Value("${wechat.api.circuit-breaker.failure-rate-threshold:50}")
+    private int breakerFailureRateThreshold;
 
-        public TokenInfo(String openid, String sessionKey, int expiresIn) {
-            this.openid = openid;
-            this.sessionKey = sessionKey;
-            this.expireTime = System.currentTimeMillis() + expiresIn * 1000L;
-        }
+    /**
+     * 慢调用率阈值（百分比），达到后熔断器打开
+     */
+    @Value("${wechat.api.circuit-breaker.slow-call-rate-threshold:80}")
+    private int breakerSlowCallRateThreshold;
+
+    /**
+     * 超过该耗时的调用记为慢调用（毫秒）
+     */
+    @Value("${wechat.api.circuit-breaker.slow-call-duration-ms:2000}")
+    private long breakerSlowCallDurationMs;
+
+    /**
+     * 熔断器打开后的持续时间（毫秒），之后进入半开状态放行探测调用
+     */
+    @Value("${wechat.api.circuit-breaker.open-duration-ms:10000}")
+    private long breakerOpenDurationMs;
+
+    /**
+     * 半开状态放行的探测调用次数
+     */
+    @Value("${wechat.api.circuit-breaker.half-open-calls:3}")
+    private int breakerHalfOpenCalls;
+
+    /**
+     * 隔离线程池大小，即同时调用微信接口的最大登录请求数
+     */
+    @Value("${wechat.api.bulkhead.threads:20}")
+    private int bulkheadThreads;
+
+    /**
+     * 隔离线程池的等待队列长度，队列满时直接拒绝
+     */
+    @Value("${wechat.api.bulkhead.queue-size:100}")
+    private int bulkheadQueueSize;
+
+    /**
+     * 登录请求等待微信接口结果的最长时间（毫秒，包括排队时间）
+     */
+    @Value("${wechat.api.bulkhead.timeout-ms:5000}")
+    private long bulkheadTimeoutMs;
+
+    private CircuitBreaker circuitBreaker;
+    private ThreadPoolExecutor bulkhead;
+
+    /**
+     * 异步登录的超时计时线程
+     */
+    private ScheduledExecutorService timeoutScheduler;
+
+    /**
+     * 隔离线程池拒绝的次数
+     */
+    private final LongAdder bulkheadRejected = new LongAdder();
+
+    /**
+     * 等待微信接口结果超时的次数
+     */
+    private final LongAdder bulkheadTimeouts = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        circuitBreaker = new CircuitBreaker("wechat-login", breakerWindowSize, breakerMinimumCalls,
+                breakerFailureRateThreshold, breakerSlowCallRateThreshold, breakerSlowCallDurationMs,
+                breakerOpenDurationMs, breakerHalfOpenCalls);
 
-        public boolean isExpired() {
-            return System.currentTimeMillis() > expireTime;
+        AtomicInteger threadIndex = new AtomicInteger();
+        bulkhead = new ThreadPoolExecutor(bulkheadThreads, bulkheadThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(bulkheadQueueSize), r -> {
+            Thread thread = new Thread(r, "wechat-login-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        bulkhead.allowCoreThreadTimeOut(true);
+
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wechat-login-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (bulkhead != null) {
+            bulkhead.shutdownNow();
+        }
+        if (timeoutScheduler != null) {
+            timeoutScheduler.shutdownNow();
         }
     }
 
@@ -76,65 +167,170 @@ public class WechatLoginService {
     public TokenResult loginByCode(String code) {
         try {
             log.debug("微信登录开始, code:{}", code);
-            
-            // 输出当前使用的AppID和AppSecret（debug级别，用于调试）
-            log.debug("当前使用的微信配置 - AppID: {}, AppSecret: {}", appid, secret);
-
-            // 调用微信 code2Session 接口
-            String url = String.format(
-                    "https://api.weixin.qq.com/sns/jscode2session?appid=%s&secret=%s&js_code=%s&grant_type=authorization_code",
-                    appid, secret, code
-            );
-            
-            log.debug("请求微信接口URL: {}", url.replace(secret, "***")); // 隐藏secret，只显示部分URL
-
-            String response = restTemplate.getForObject(url, String.class);
-            log.debug("微信接口响应: {}", response);
-
-            // 解析响应
-            Map<String, Object> wxResponse = objectMapper.readValue(response, Map.class);
-
-            // 检查是否有错误
-            if (wxResponse.containsKey("errcode")) {
-                Integer errcode = (Integer) wxResponse.get("errcode");
-                String errmsg = (String) wxResponse.get("errmsg");
-                log.warn("微信登录失败, errcode:{}, errmsg:{}", errcode, errmsg);
-                return new TokenResult(false, null, 0, "微信登录失败: " + errmsg);
-            }
 
-            // 获取 openid 和 session_key
-            String openid = (String) wxResponse.get("openid");
-            String sessionKey = (String) wxResponse.get("session_key");
-            String unionid = (String) wxResponse.get("unionid");
+            // 调用微信 code2Session 接口（经过熔断器和隔离线程池）
+            return toTokenResult(callCode2Session(code));
+        } catch (Exception e) {
+            log.error("微信登录异常, code:{}", code, e);
+            return new TokenResult(false, null, 0, "服务器内部错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 异步登录：微信接口在隔离线程池中调用，调用线程不等待结果
+     * 熔断、隔离线程池已满、调用失败和超时（bulkhead.timeout-ms）的处理与 loginByCode 相同
+     *
+     * @param code 微信登录凭证code
+     * @return Token信息，在微信接口返回后完成
+     */
+    public CompletableFuture<TokenResult> loginByCodeAsync(String code) {
+        log.debug("微信登录开始（异步）, code:{}", code);
+        long permit = circuitBreaker.tryAcquire();
+        if (permit < 0) {
+            log.warn("微信接口熔断中，登录请求直接拒绝");
+            return CompletableFuture.completedFuture(TokenResult.unavailable("微信服务繁忙，请稍后重试"));
+        }
 
-            if (openid == null || openid.isEmpty()) {
-                log.error("未获取到openid");
-                return new TokenResult(false, null, 0, "未获取到openid");
+        long start = System.nanoTime();
+        CompletableFuture<WechatApiClient.Code2SessionResponse> future = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = bulkhead.submit(() -> {
+                try {
+                    future.complete(wechatApiClient.code2Session(code));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            onBulkheadRejected(permit);
+            return CompletableFuture.completedFuture(TokenResult.unavailable("微信服务繁忙，请稍后重试"));
+        }
+        // 超时后结束等待并中断微信接口调用
+        ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> {
+            if (future.completeExceptionally(new TimeoutException())) {
+                task.cancel(true);
             }
+        }, bulkheadTimeoutMs, TimeUnit.MILLISECONDS);
 
-            log.info("微信登录成功, openid:{}, unionid:{}", openid, unionid);
+        return future.handle((response, error) -> {
+            timeout.cancel(false);
+            if (error instanceof TimeoutException) {
+                bulkheadTimeouts.increment();
+                circuitBreaker.onError(permit, System.nanoTime() - start);
+                log.warn("微信登录超时, code:{}, timeoutMs:{}", code, bulkheadTimeoutMs);
+                return TokenResult.unavailable("微信服务繁忙，请稍后重试");
+            }
+            if (error != null) {
+                circuitBreaker.onError(permit, System.nanoTime() - start);
+                log.warn("微信接口调用失败, code:{}, error:{}", code, error.toString());
+                return TokenResult.unavailable("微信服务繁忙，请稍后重试");
+            }
+            try {
+                return toTokenResult(recordResponse(permit, start, response));
+            } catch (Exception e) {
+                log.error("微信登录异常, code:{}", code, e);
+                return new TokenResult(false, null, 0, "服务器内部错误: " + e.getMessage());
+            }
+        });
+    }
 
-            // 生成自定义登录态token
-            String token = UUID.randomUUID().toString().replace("-", "");
+    /**
+     * 根据微信接口响应生成登录结果（成功时签发token）
+     *
+     * @param wxResponse 微信接口响应，为null表示微信接口不可用
+     */
+    private TokenResult toTokenResult(WechatApiClient.Code2SessionResponse wxResponse) {
+        if (wxResponse == null) {
+            return TokenResult.unavailable("微信服务繁忙，请稍后重试");
+        }
 
-            // 存储token与openid的映射关系（2小时过期）
-            int expiresIn = 7200; // 2小时
-            tokenCache.put(token, new TokenInfo(openid, sessionKey, expiresIn));
+        // 检查是否有错误
+        if (wxResponse.isError()) {
+            log.warn("微信登录失败, errcode:{}, errmsg:{}", wxResponse.getErrcode(), wxResponse.getErrmsg());
+            return new TokenResult(false, null, 0, "微信登录失败: " + wxResponse.getErrmsg());
+        }
 
-            // 定时清理过期token（每小时清理一次）
-            scheduler.schedule(() -> {
-                tokenCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
-            }, 1, TimeUnit.HOURS);
+        // 获取 openid 和 session_key
+        String openid = wxResponse.getOpenid();
+        String sessionKey = wxResponse.getSessionKey();
+        String unionid = wxResponse.getUnionid();
 
-            log.debug("生成token成功, token:{}, openid:{}", token, openid);
+        if (openid == null || openid.isEmpty()) {
+            log.error("未获取到openid");
+            return new TokenResult(false, null, 0, "未获取到openid");
+        }
 
-            return new TokenResult(true, token, expiresIn, null);
-        } catch (Exception e) {
-            log.error("微信登录异常, code:{}", code, e);
-            return new TokenResult(false, null, 0, "服务器内部错误: " + e.getMessage());
+        log.info("微信登录成功, openid:{}, unionid:{}", openid, unionid);
+
+        // 生成自定义登录态token，并存储token与openid的映射关系（默认2小时过期）
+        String token = tokenStore.issue(openid, sessionKey, expiresIn);
+
+        log.debug("生成token成功, token:{}, openid:{}", token, openid);
+
+        return new TokenResult(true, token, expiresIn, null);
+    }
+
+    /**
+     * 在隔离线程池中调用微信接口，并把结果计入熔断器
+     * 网络错误、超时、HTTP状态码异常以及微信返回系统繁忙（errcode=-1）记为失败，
+     * code无效等业务错误说明微信接口本身正常，记为成功
+     *
+     * @param code 微信登录凭证code
+     * @return 微信接口响应；熔断器打开、隔离线程池已满或调用失败时返回null
+     */
+    private WechatApiClient.Code2SessionResponse callCode2Session(String code) throws InterruptedException {
+        long permit = circuitBreaker.tryAcquire();
+        if (permit < 0) {
+            log.warn("微信接口熔断中，登录请求直接拒绝");
+            return null;
+        }
+
+        long start = System.nanoTime();
+        Future<WechatApiClient.Code2SessionResponse> future;
+        try {
+            future = bulkhead.submit(() -> wechatApiClient.code2Session(code));
+        } catch (RejectedExecutionException e) {
+            onBulkheadRejected(permit);
+            return null;
+        }
+
+        try {
+            return recordResponse(permit, start, future.get(bulkheadTimeoutMs, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            bulkheadTimeouts.increment();
+            circuitBreaker.onError(permit, System.nanoTime() - start);
+            log.warn("微信登录超时, code:{}, timeoutMs:{}", code, bulkheadTimeoutMs);
+            return null;
+        } catch (ExecutionException e) {
+            circuitBreaker.onError(permit, System.nanoTime() - start);
+            log.warn("微信接口调用失败, code:{}, error:{}", code, e.getCause().toString());
+            return null;
         }
     }
 
+    /**
+     * 把微信接口的正常响应计入熔断器，系统繁忙（errcode=-1）记为失败
+     */
+    private WechatApiClient.Code2SessionResponse recordResponse(long permit, long start,
+                                                                WechatApiClient.Code2SessionResponse response) {
+        long duration = System.nanoTime() - start;
+        if (response.getErrcode() != null && response.getErrcode() == -1) {
+            circuitBreaker.onError(permit, duration);
+        } else {
+            circuitBreaker.onSuccess(permit, duration);
+        }
+        return response;
+    }
+
+    private void onBulkheadRejected(long permit) {
+        circuitBreaker.release(permit);
+        bulkheadRejected.increment();
+        log.warn("微信登录隔离线程池已满，登录请求直接拒绝, active:{}, queued:{}",
+                bulkhead.getActiveCount(), bulkhead.getQueue().size());
+    }
+
     /**
      * 通过token获取openid
      *
@@ -146,19 +342,49 @@ public class WechatLoginService {
             return null;
         }
 
-        TokenInfo tokenInfo = tokenCache.get(token);
-        if (tokenInfo == null) {
-            log.debug("token不存在, token:{}", token);
-            return null;
+        String openid = tokenStore.resolve(token);
+        if (openid == null) {
+            log.debug("token不存在或已过期, token:{}", token);
         }
+        return openid;
+    }
 
-        if (tokenInfo.isExpired()) {
-            log.debug("token已过期, token:{}", token);
-            tokenCache.remove(token);
-            return null;
+    /**
+     * 退出登录，吊销token
+     *
+     * @param token 自定义登录态token
+     * @return token是否已失效，吊销未生效（token仍然有效）时返回false
+     */
+    public boolean logout(String token) {
+        if (token == null || token.isEmpty()) {
+            return true;
+        }
+        if (!tokenStore.revoke(token)) {
+            log.warn("token吊销未生效, token仍然有效");
+            return false;
         }
+        log.debug("token已吊销, token:{}", token);
+        return true;
+    }
+
+    /**
+     * 获取token统计信息
+     */
+    public TokenStore.TokenStats getTokenStats() {
+        return tokenStore.getStats();
+    }
 
-        return tokenInfo.getOpenid();
+    /**
+     * 获取微信接口熔断器和隔离线程池统计信息
+     */
+    public UpstreamStats getUpstreamStats() {
+        UpstreamStats stats = new UpstreamStats();
+        stats.setCircuitBreaker(circuitBreaker.getStats());
+        stats.setBulkheadActive(bulkhead.getActiveCount());
+        stats.setBulkheadQueued(bulkhead.getQueue().size());
+        stats.setBulkheadRejected(bulkheadRejected.sum());
+        stats.setTimeouts(bulkheadTimeouts.sum());
+        return stats;
     }
 
     /**
@@ -171,12 +397,51 @@ public class WechatLoginService {
         private Integer expiresIn;
         private String error;
 
+        /**
+         * 是否因为微信接口不可用（熔断、隔离线程池已满、超时或调用失败）而失败
+         */
+        private boolean unavailable;
+
         public TokenResult(Boolean success, String token, Integer expiresIn, String error) {
             this.success = success;
             this.token = token;
             this.expiresIn = expiresIn;
             this.error = error;
         }
+
+        public static TokenResult unavailable(String error) {
+            TokenResult result = new TokenResult(false, null, 0, error);
+            result.setUnavailable(true);
+            return result;
+        }
+    }
+
+    /**
+     * 微信接口熔断器和隔离线程池统计信息
+     */
+    @Data
+    public static class UpstreamStats {
+        private CircuitBreaker.BreakerStats circuitBreaker;
+
+        /**
+         * 正在调用微信接口的线程数
+         */
+        private int bulkheadActive;
+
+        /**
+         * 排队等待的登录请求数
+         */
+        private int bulkheadQueued;
+
+        /**
+         * 隔离线程池已满被拒绝的次数
+         */
+        private long bulkheadRejected;
+
+        /**
+         * 等待微信接口结果超时的次数
+         */
+        private long timeouts;
     }
 }
 
@@ -11,6 +11,9 @@ CREATE TABLE IF NOT EXISTS user_game_data (
     assistants_data JSON COMMENT '助理数据JSON',
     challenges_data JSON COMMENT '挑战数据JSON',
     settings_data JSON COMMENT '用户设置（JSON格式，包含音效、背景音乐等设置项）',
+    state_blob VARBINARY(64) COMMENT '助理、挑战、设置数据的紧凑二进制编码（app.storage.format=binary 时写入，不为空时优先于JSON列）',
+    state_fingerprint BIGINT COMMENT '玩家信息、助理、挑战、设置数据的64位指纹（app.save-dedup.enabled=true 时写入，增量保存后置空）',
+    version BIGINT NOT NULL DEFAULT 0 COMMENT '数据版本号（乐观锁，取值为写入时的毫秒时间戳）',
     last_update_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '最后更新时间',
     create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     INDEX idx_user_id (user_id),
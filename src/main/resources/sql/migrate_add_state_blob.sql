@@ -0,0 +1,16 @@
+-- 数据库迁移脚本：添加 state_blob 字段
+-- 执行时间：2026-10-18
+-- 原因：助理、挑战、设置数据可以按紧凑二进制格式存储（9字节左右），代替三个JSON列，
+--       减小行大小并省去每次读写的JSON解析和序列化
+
+-- 添加 state_blob 字段（旧数据为空，继续读取JSON列）
+ALTER TABLE `user_game_data` 
+ADD COLUMN `state_blob` VARBINARY(64) NULL COMMENT '助理、挑战、设置数据的紧凑二进制编码（app.storage.format=binary 时写入，不为空时优先于JSON列）' 
+AFTER `settings_data`;
+
+-- 存量数据迁移：
+-- 1. 执行本脚本后配置 app.storage.format=binary，之后保存的数据按紧凑格式写入
+-- 2. 存量数据在下一次保存时自动转换；如需一次性转换，配置 app.storage.migrate-on-startup=true，
+--    应用启动后在后台分页转换（转换后会清空三个JSON列），完成后可关闭该配置
+-- 3. 回退到 JSON 格式：配置 app.storage.format=json，之后保存的数据重新写入JSON列；
+--    回退前请保留 state_blob 列，未再次保存的数据仍从 state_blob 读取
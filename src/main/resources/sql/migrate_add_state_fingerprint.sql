@@ -0,0 +1,9 @@
+-- 数据库迁移脚本：添加 state_fingerprint 字段
+-- 执行时间：2026-10-18
+-- 原因：客户端定时自动保存经常提交与数据库完全相同的数据，记录数据指纹后可以识别这类重复保存并跳过写入，
+--       减少无意义的 UPDATE（redo log、binlog）
+
+-- 添加 state_fingerprint 字段（旧数据为空，下一次保存时写入）
+ALTER TABLE `user_game_data` 
+ADD COLUMN `state_fingerprint` BIGINT NULL COMMENT '玩家信息、助理、挑战、设置数据的64位指纹（app.save-dedup.enabled=true 时写入，增量保存后置空）' 
+AFTER `state_blob`;
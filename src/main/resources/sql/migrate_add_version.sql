@@ -0,0 +1,13 @@
+-- 数据库迁移脚本：添加 version 字段
+-- 执行时间：2026-10-18
+-- 原因：保存接口改为单条语句插入或更新（INSERT ... ON DUPLICATE KEY UPDATE），
+--       通过版本号实现乐观锁，拒绝基于旧数据的保存，避免覆盖其他设备更新的数据
+
+-- 添加 version 字段（旧数据版本号为 0）
+ALTER TABLE `user_game_data` 
+ADD COLUMN `version` BIGINT NOT NULL DEFAULT 0 COMMENT '数据版本号（乐观锁，取值为写入时的毫秒时间戳）' 
+AFTER `settings_data`;
+
+-- 旧数据的版本号改为 1：版本号 0 表示客户端持有的是未写入数据库的默认数据，
+-- 以版本号 0 保存时只允许插入，数据库中不能有版本号为 0 的数据
+UPDATE `user_game_data` SET `version` = 1 WHERE `version` = 0;
@@ -0,0 +1,173 @@
+package org.lyf.testapi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lyf.testapi.dto.UserGameDataPatchRequest;
+import org.lyf.testapi.entity.UserGameData;
+import org.lyf.testapi.service.ApiMetrics;
+import org.lyf.testapi.service.AsyncRequestExecutor;
+import org.lyf.testapi.service.DefaultUserGameData;
+import org.lyf.testapi.service.InMemoryUserGameDataMapper;
+import org.lyf.testapi.service.Leaderboard;
+import org.lyf.testapi.service.OfflineIncomeCalculator;
+import org.lyf.testapi.service.UserGameDataBatchWriter;
+import org.lyf.testapi.service.UserGameDataBodyCache;
+import org.lyf.testapi.service.UserGameDataCache;
+import org.lyf.testapi.service.UserGameDataFingerprints;
+import org.lyf.testapi.service.UserGameDataService;
+import org.lyf.testapi.service.UserGameDataWriteBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class GameControllerTests {
+
+    private static final String OPENID = "openid-1";
+
+    private UserGameDataBodyCache bodyCache;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // 增量 UPDATE 只支持金钱变化量，数据存在且版本号一致时更新
+        InMemoryUserGameDataMapper mapper = new InMemoryUserGameDataMapper() {
+            @Override
+            public synchronized int patchByUserId(UserGameDataPatchRequest patch, long version,
+                                                  LocalDateTime lastUpdateTime, LocalDateTime incomeStartTime) {
+                UserGameData current = selectByUserId(patch.getUserId());
+                if (current == null || patch.getMoneyDelta() == null
+                        || (patch.getVersion() != null && !patch.getVersion().equals(current.getVersion()))) {
+                    return 0;
+                }
+                current.setMoney(current.getMoney() + patch.getMoneyDelta());
+                current.setVersion(version);
+                current.setLastUpdateTime(lastUpdateTime);
+                return 1;
+            }
+        };
+
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        UserGameDataCache cache = new UserGameDataCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        bodyCache = new UserGameDataBodyCache(objectMapper);
+        ReflectionTestUtils.setField(bodyCache, "enabled", true);
+        ReflectionTestUtils.setField(bodyCache, "maxSize", 100);
+        DefaultUserGameData defaults = new DefaultUserGameData(objectMapper);
+        defaults.init();
+
+        // 写缓冲、批量写入、重复保存检测、离线收益、排行榜、异步处理均为默认的关闭状态
+        UserGameDataBatchWriter batchWriter = new UserGameDataBatchWriter(null, null, mapper);
+        UserGameDataFingerprints fingerprints = new UserGameDataFingerprints();
+        Leaderboard leaderboard = new Leaderboard(mapper);
+        OfflineIncomeCalculator offlineIncomeCalculator = new OfflineIncomeCalculator();
+        UserGameDataWriteBuffer writeBuffer = new UserGameDataWriteBuffer(mapper, batchWriter, cache, bodyCache,
+                fingerprints, leaderboard);
+        UserGameDataService service = new UserGameDataService(mapper, writeBuffer, batchWriter, cache, bodyCache,
+                fingerprints, offlineIncomeCalculator, leaderboard, defaults, new ApiMetrics());
+        ReflectionTestUtils.setField(service, "storageFormat", "json");
+
+        GameController controller = new GameController(service, null, new AsyncRequestExecutor(), bodyCache, null,
+                offlineIncomeCalculator, leaderboard, defaults);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void ifNoneMatchReturnsNotModifiedOnlyForCurrentEtag() throws Exception {
+        save(100);
+        MvcResult first = getUserData(null, 200);
+        String etag = first.getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        assertTrue(first.getResponse().getContentAsString(StandardCharsets.UTF_8).contains("\"money\":100"));
+
+        MvcResult notModified = getUserData(etag, 304);
+        assertEquals(etag, notModified.getResponse().getHeader("ETag"));
+        assertEquals(0, notModified.getResponse().getContentLength());
+
+        // 其他ETag（其他版本的数据）返回完整响应体，与第一次的字节相同
+        MvcResult miss = getUserData("\"0123456789abcdef0123456789abcdef\"", 200);
+        assertEquals(etag, miss.getResponse().getHeader("ETag"));
+        assertEquals(first.getResponse().getContentAsString(StandardCharsets.UTF_8),
+                miss.getResponse().getContentAsString(StandardCharsets.UTF_8));
+
+        // 第一次序列化后都直接使用缓存的字节
+        assertEquals(1L, bodyCache.getStats().getSerializations());
+        assertEquals(1L, bodyCache.getStats().getNotModified());
+        assertEquals(2L, bodyCache.getStats().getHits());
+    }
+
+    @Test
+    void etagChangesAfterSaveAndPatch() throws Exception {
+        save(100);
+        String etag = getUserData(null, 200).getResponse().getHeader("ETag");
+
+        // 完整保存后旧ETag不再匹配，返回新数据
+        save(200);
+        MvcResult afterSave = getUserData(etag, 200);
+        String savedEtag = afterSave.getResponse().getHeader("ETag");
+        assertNotEquals(etag, savedEtag);
+        assertTrue(afterSave.getResponse().getContentAsString(StandardCharsets.UTF_8).contains("\"money\":200"));
+
+        // 增量保存（列级更新）后同样返回新数据
+        mockMvc.perform(patch("/api/game/user-data").requestAttr("openid", OPENID)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"moneyDelta\":5}"))
+                .andExpect(jsonPath("$.code").value(200));
+        MvcResult afterPatch = getUserData(savedEtag, 200);
+        String patchedEtag = afterPatch.getResponse().getHeader("ETag");
+        assertNotEquals(savedEtag, patchedEtag);
+        assertTrue(afterPatch.getResponse().getContentAsString(StandardCharsets.UTF_8).contains("\"money\":205"));
+
+        getUserData(patchedEtag, 304);
+    }
+
+    @Test
+    void defaultDataHasStableEtag() throws Exception {
+        MvcResult first = getUserData(null, 200);
+        String etag = first.getResponse().getHeader("ETag");
+        assertTrue(first.getResponse().getContentAsString(StandardCharsets.UTF_8).contains("\"version\":0"));
+        getUserData(etag, 304);
+
+        // 第一次保存后默认数据的ETag失效
+        save(100);
+        assertNotEquals(etag, getUserData(etag, 200).getResponse().getHeader("ETag"));
+    }
+
+    private MvcResult getUserData(String ifNoneMatch, int expectedStatus) throws Exception {
+        return mockMvc.perform(ifNoneMatch != null
+                        ? get("/api/game/user-data").requestAttr("openid", OPENID).header("If-None-Match", ifNoneMatch)
+                        : get("/api/game/user-data").requestAttr("openid", OPENID))
+                .andExpect(status().is(expectedStatus))
+                .andReturn();
+    }
+
+    private void save(long money) throws Exception {
+        String body = "{\"playerInfo\":{\"playerLevel\":3,\"money\":" + money + ",\"clickRewardBase\":100,"
+                + "\"clickMultiplier\":1.0,\"upgradeCost\":10,\"trainingCount\":0},"
+                + "\"assistants\":[{\"id\":1,\"unlocked\":true,\"level\":2},{\"id\":2,\"unlocked\":false,\"level\":0}],"
+                + "\"challenges\":[{\"id\":1,\"completed\":true},{\"id\":2,\"completed\":false}]}";
+        mockMvc.perform(post("/api/game/user-data").requestAttr("openid", OPENID)
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.code").value(200));
+    }
+}
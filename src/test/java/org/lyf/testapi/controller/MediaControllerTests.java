@@ -0,0 +1,104 @@
+package org.lyf.testapi.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lyf.testapi.service.ResourceFiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class MediaControllerTests {
+
+    @TempDir
+    Path resources;
+
+    private final byte[] video = new byte[100_000];
+    private MockMvc mockMvc;
+    private String etag;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (int i = 0; i < video.length; i++) {
+            video[i] = (byte) (i * 31);
+        }
+        Path file = resources.resolve("assist/7/success.mp4");
+        Files.createDirectories(file.getParent());
+        Files.write(file, video);
+
+        ResourceFiles resourceFiles = new ResourceFiles();
+        ReflectionTestUtils.setField(resourceFiles, "resourcesPath", resources.toString());
+        resourceFiles.init();
+        etag = resourceFiles.get("assist/7/success.mp4").getEtag();
+        mockMvc = MockMvcBuilders.standaloneSetup(new MediaController(resourceFiles)).build();
+    }
+
+    @Test
+    void servesWholeFileWithValidators() throws Exception {
+        MvcResult result = mockMvc.perform(get("/resources/assist/7/success.mp4"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("Content-Type", "video/mp4"))
+                .andExpect(header().longValue("Content-Length", video.length))
+                .andReturn();
+        assertArrayEquals(video, result.getResponse().getContentAsByteArray());
+
+        mockMvc.perform(get("/resources/assist/7/success.mp4").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/resources/assist/8/success.mp4"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void servesSingleRanges() throws Exception {
+        MvcResult result = mockMvc.perform(get("/resources/assist/7/success.mp4").header("Range", "bytes=1000-1999"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 1000-1999/" + video.length))
+                .andExpect(header().longValue("Content-Length", 1000))
+                .andReturn();
+        assertArrayEquals(Arrays.copyOfRange(video, 1000, 2000), result.getResponse().getContentAsByteArray());
+
+        result = mockMvc.perform(get("/resources/assist/7/success.mp4").header("Range", "bytes=-500"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 99500-99999/" + video.length))
+                .andReturn();
+        assertArrayEquals(Arrays.copyOfRange(video, 99_500, 100_000), result.getResponse().getContentAsByteArray());
+
+        // 续传到文件末尾，结束位置超出长度时截断
+        mockMvc.perform(get("/resources/assist/7/success.mp4").header("Range", "bytes=99000-200000"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 99000-99999/" + video.length));
+
+        mockMvc.perform(get("/resources/assist/7/success.mp4").header("Range", "bytes=100000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */" + video.length));
+    }
+
+    @Test
+    void fallsBackToWholeFileWhenRangeCannotBeHonoured() throws Exception {
+        // 文件已变化（If-Range 不匹配）
+        mockMvc.perform(get("/resources/assist/7/success.mp4")
+                        .header("Range", "bytes=0-99").header("If-Range", "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", video.length));
+        mockMvc.perform(get("/resources/assist/7/success.mp4")
+                        .header("Range", "bytes=0-99").header("If-Range", etag))
+                .andExpect(status().isPartialContent());
+        // 多个范围和格式错误的 Range 都返回完整文件
+        mockMvc.perform(get("/resources/assist/7/success.mp4").header("Range", "bytes=0-9,20-29"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/resources/assist/7/success.mp4").header("Range", "bytes=9-0"))
+                .andExpect(status().isOk());
+    }
+}
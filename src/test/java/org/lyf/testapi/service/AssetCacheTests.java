@@ -0,0 +1,129 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssetCacheTests {
+
+    @TempDir
+    Path resources;
+
+    private ResourceFiles resourceFiles;
+    private AssetCache assetCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // 测试文件在开始监听前写入，避免监听线程移除缓存影响断言
+        byte[] text = new byte[1500];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) ('a' + i % 4);
+        }
+        Files.write(resources.resolve("desk.meta"), text);
+        Random random = new Random(1);
+        for (String name : new String[]{"desk.png", "a.png", "b.png", "c.png"}) {
+            byte[] bytes = new byte[1000];
+            random.nextBytes(bytes);
+            Files.write(resources.resolve(name), bytes);
+        }
+        Files.write(resources.resolve("d.png"), new byte[]{1});
+        Files.write(resources.resolve("big.png"), new byte[2001]);
+        Files.createDirectories(resources.resolve("music"));
+        resourceFiles = new ResourceFiles();
+        ReflectionTestUtils.setField(resourceFiles, "resourcesPath", resources.toString());
+        resourceFiles.init();
+        assetCache = new AssetCache(resourceFiles);
+        ReflectionTestUtils.setField(assetCache, "enabled", true);
+        ReflectionTestUtils.setField(assetCache, "maxBytes", 3000L);
+        ReflectionTestUtils.setField(assetCache, "maxFileBytes", 2000L);
+        assetCache.init();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        resourceFiles.shutdown();
+    }
+
+    @Test
+    void keepsGzipVariantOnlyWhenItIsSmaller() throws Exception {
+        AssetCache.Asset meta = assetCache.get("desk.meta");
+        assertNotNull(meta.getGzipBytes());
+        assertArrayEquals(meta.getBytes(), gunzip(meta.getGzipBytes()));
+        AssetCache.Asset png = assetCache.get("desk.png");
+        assertNull(png.getGzipBytes());
+        assertEquals("image/png", png.getContentType());
+        assertSame(png, assetCache.get("desk.png"));
+
+        assertNull(assetCache.get("big.png"));
+        assertNull(assetCache.get("missing.png"));
+        assertNull(assetCache.get("../outside.png"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOverByteLimit() throws Exception {
+        assetCache.get("a.png");
+        assetCache.get("b.png");
+        assetCache.get("a.png");
+        assetCache.get("c.png");
+        assertEquals(3, assetCache.getStats().getSize());
+
+        assetCache.get("d.png");
+        AssetCache.AssetCacheStats stats = assetCache.getStats();
+        assertEquals(1, stats.getEvictions());
+        assertEquals(3, stats.getSize());
+        assertTrue(stats.getBytes() <= 3000);
+
+        // b.png 最久未访问，已被淘汰
+        long misses = stats.getMisses();
+        assetCache.get("a.png");
+        assertEquals(misses, assetCache.getStats().getMisses());
+        assetCache.get("b.png");
+        assertEquals(misses + 1, assetCache.getStats().getMisses());
+    }
+
+    @Test
+    void dropsChangedFilesReportedByWatcher() throws Exception {
+        Path file = resources.resolve("music/button.mp3");
+        Files.write(file, "old".getBytes(StandardCharsets.UTF_8));
+        AssetCache.Asset old = assetCache.get("music/button.mp3");
+
+        Files.write(file, "new!".getBytes(StandardCharsets.UTF_8));
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (assetCache.getStats().getInvalidations() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        AssetCache.Asset current = assetCache.get("music/button.mp3");
+        assertArrayEquals("new!".getBytes(StandardCharsets.UTF_8), current.getBytes());
+        assertNotEquals(old.getEtag(), current.getEtag());
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[512];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class AssetManifestTests {
+
+    @TempDir
+    Path resources;
+
+    private ResourceFiles resourceFiles;
+    private AssetManifest assetManifest;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        write("assist/1/egg.png", "egg");
+        write("desk.png", "desk");
+        write("music/button.mp3", "click");
+        write(".DS_Store", "hidden");
+
+        resourceFiles = new ResourceFiles();
+        ReflectionTestUtils.setField(resourceFiles, "resourcesPath", resources.toString());
+        resourceFiles.init();
+        assetManifest = new AssetManifest(resourceFiles);
+        assetManifest.init();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        resourceFiles.shutdown();
+    }
+
+    @Test
+    void mapsFilesToContentHashedUrls() {
+        AssetManifest.Manifest manifest = assetManifest.getManifest();
+        assertEquals(3, manifest.getFiles().size());
+        assertEquals("/assets/" + hash("egg") + "/assist/1/egg.png", manifest.getFiles().get("assist/1/egg.png"));
+        assertEquals("/assets/" + hash("click") + "/music/button.mp3", manifest.getFiles().get("music/button.mp3"));
+        assertFalse(manifest.getFiles().containsKey(".DS_Store"));
+        assertSame(manifest, assetManifest.getManifest());
+    }
+
+    @Test
+    void updatesOnlyChangedEntries() throws Exception {
+        // 关闭目录监听，由测试直接通知变化
+        resourceFiles.shutdown();
+        AssetManifest.Manifest before = assetManifest.getManifest();
+        long updates = assetManifest.getStats().getFileUpdates();
+
+        write("desk.png", "new desk");
+        write("assist/2/egg.png", "egg");
+        Files.delete(resources.resolve("music/button.mp3"));
+        assetManifest.update("desk.png");
+        assetManifest.update("assist/2");
+        assetManifest.update("music/button.mp3");
+
+        AssetManifest.Manifest after = assetManifest.getManifest();
+        assertEquals(updates + 2, assetManifest.getStats().getFileUpdates());
+        assertEquals("/assets/" + hash("new desk") + "/desk.png", after.getFiles().get("desk.png"));
+        assertEquals("/assets/" + hash("egg") + "/assist/2/egg.png", after.getFiles().get("assist/2/egg.png"));
+        assertFalse(after.getFiles().containsKey("music/button.mp3"));
+        assertEquals(before.getFiles().get("assist/1/egg.png"), after.getFiles().get("assist/1/egg.png"));
+        assertNotEquals(before.getVersion(), after.getVersion());
+    }
+
+    private void write(String relativePath, String content) throws Exception {
+        Path file = resources.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String hash(String content) {
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8)).substring(0, AssetManifest.HASH_LENGTH);
+    }
+}
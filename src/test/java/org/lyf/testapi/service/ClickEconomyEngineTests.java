@@ -0,0 +1,136 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.lyf.testapi.dto.ClickBatchRequest;
+import org.lyf.testapi.dto.PlayerInfo;
+import org.lyf.testapi.dto.UserGameDataPatchRequest;
+import org.lyf.testapi.dto.UserGameDataResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClickEconomyEngineTests {
+
+    @Test
+    void rewardDoublesWithEachTraining() {
+        PlayerInfo playerInfo = new PlayerInfo();
+        playerInfo.setClickRewardBase(100L);
+        playerInfo.setClickMultiplier(1.5);
+        playerInfo.setTrainingCount(0);
+        assertEquals(150, ClickEconomyEngine.clickReward(playerInfo));
+        playerInfo.setTrainingCount(3);
+        assertEquals(1200, ClickEconomyEngine.clickReward(playerInfo));
+
+        playerInfo.setClickMultiplier(1.25);
+        playerInfo.setClickRewardBase(3L);
+        playerInfo.setTrainingCount(null);
+        assertEquals(3, ClickEconomyEngine.clickReward(playerInfo));
+
+        playerInfo.setTrainingCount(1000);
+        assertEquals(Long.MAX_VALUE, ClickEconomyEngine.clickReward(playerInfo));
+    }
+
+    @Test
+    void limitsClicksToBudgetRefilledOverTime() {
+        ClickEconomyEngine engine = new ClickEconomyEngine(null);
+        ReflectionTestUtils.setField(engine, "maxClicksPerSecond", 10);
+        ReflectionTestUtils.setField(engine, "maxWindowMs", 5000L);
+        ReflectionTestUtils.setField(engine, "maxUsers", 2);
+
+        // 初始额度为 5秒 * 10次
+        assertEquals(30, engine.acquire("a", 30, 0));
+        assertEquals(20, engine.acquire("a", 30, 0));
+        assertEquals(0, engine.acquire("a", 1, 0));
+        assertEquals(15, engine.acquire("a", 30, 1500));
+        // 额度最多累积5秒
+        assertEquals(50, engine.acquire("a", 100, 60_000));
+
+        engine.acquire("b", 1, 60_000);
+        engine.acquire("c", 1, 60_000);
+        assertEquals(2, engine.getStats().getUsers());
+    }
+
+    @Test
+    void failedSaveRefundsClickBudget() {
+        StubUserGameDataService service = new StubUserGameDataService();
+        ClickEconomyEngine engine = new ClickEconomyEngine(service);
+        ReflectionTestUtils.setField(engine, "maxClicksPerSecond", 10);
+        ReflectionTestUtils.setField(engine, "maxWindowMs", 5000L);
+        ReflectionTestUtils.setField(engine, "maxUsers", 100);
+
+        // 读取后数据被修改，客户端传入的版本号已过期
+        service.results.add(UserGameDataService.SaveResult.conflict());
+        ClickEconomyEngine.ClickResult result = engine.applyClicks(request(30, 1L));
+        assertTrue(result.isConflict());
+        assertEquals(1, service.patches);
+
+        // 未传版本号时重试次数用完
+        service.results.addAll(Arrays.asList(UserGameDataService.SaveResult.conflict(),
+                UserGameDataService.SaveResult.conflict(), UserGameDataService.SaveResult.conflict(),
+                UserGameDataService.SaveResult.conflict()));
+        assertTrue(engine.applyClicks(request(30, null)).isConflict());
+        assertEquals(5, service.patches);
+
+        service.results.add(new UserGameDataService.SaveResult(false, null, "保存失败"));
+        assertFalse(engine.applyClicks(request(30, 1L)).isSuccess());
+
+        // 失败的上报没有占用额度
+        assertEquals(0L, engine.getStats().getAcceptedClicks());
+        service.results.add(new UserGameDataService.SaveResult(true, LocalDateTime.now(), 2L, null));
+        result = engine.applyClicks(request(50, 1L));
+        assertTrue(result.isSuccess());
+        assertEquals(50, result.getAcceptedClicks());
+        assertEquals(5000L, result.getReward());
+        assertEquals(50L, engine.getStats().getAcceptedClicks());
+    }
+
+    private static ClickBatchRequest request(int count, Long version) {
+        ClickBatchRequest request = new ClickBatchRequest();
+        request.setUserId("user");
+        request.setCount(count);
+        request.setEndTime(System.currentTimeMillis());
+        request.setStartTime(request.getEndTime() - 5000);
+        request.setVersion(version);
+        return request;
+    }
+
+    /**
+     * 读取时总是返回版本号为1的数据，保存时按顺序返回预设的结果
+     */
+    private static class StubUserGameDataService extends UserGameDataService {
+
+        private final Deque<SaveResult> results = new ArrayDeque<>();
+        private int patches;
+
+        StubUserGameDataService() {
+            super(null, null, null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public UserGameDataResponse getUserGameData(String userId) {
+            PlayerInfo playerInfo = new PlayerInfo();
+            playerInfo.setClickRewardBase(100L);
+            playerInfo.setClickMultiplier(1.0);
+            playerInfo.setTrainingCount(0);
+            playerInfo.setMoney(0L);
+            UserGameDataResponse response = new UserGameDataResponse();
+            response.setUserId(userId);
+            response.setPlayerInfo(playerInfo);
+            response.setVersion(1L);
+            return response;
+        }
+
+        @Override
+        public SaveResult patchUserGameData(UserGameDataPatchRequest patch) {
+            patches++;
+            return results.pop();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.lyf.testapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.lyf.testapi.dto.Result;
+import org.lyf.testapi.dto.UserGameDataResponse;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DefaultUserGameDataTests {
+
+    @Test
+    void serializedBodyMatchesNormalSerialization() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        DefaultUserGameData defaults = new DefaultUserGameData(objectMapper);
+        defaults.init();
+
+        // userId 中的特殊字符需要与正常序列化一样转义
+        for (String userId : new String[]{"oAbc-123_XYZ", "a\"b\\c", "用户"}) {
+            UserGameDataResponse response = defaults.create(userId);
+            assertArrayEquals(objectMapper.writeValueAsBytes(Result.success(response)), defaults.serialize(userId));
+            assertEquals(0L, response.getVersion());
+            assertNull(response.getLastUpdateTime());
+            assertTrue(defaults.isDefault(response));
+        }
+        assertEquals(3L, defaults.getStats().getServed());
+
+        // 每个用户的默认数据是独立的对象，修改后不影响之后创建的默认数据和共用的响应体
+        UserGameDataResponse response = defaults.create("user");
+        response.getPlayerInfo().setMoney(100L);
+        response.getAssistants().get(0).setUnlocked(true);
+        response.getChallenges().get(0).setCompleted(true);
+        response.getSettings().setSoundEnabled(false);
+        response.getAssistants().clear();
+        UserGameDataResponse other = defaults.create("user");
+        assertEquals(0L, other.getPlayerInfo().getMoney());
+        assertFalse(other.getAssistants().get(0).getUnlocked());
+        assertFalse(other.getChallenges().get(0).getCompleted());
+        assertTrue(other.getSettings().getSoundEnabled());
+        assertArrayEquals(objectMapper.writeValueAsBytes(Result.success(other)), defaults.serialize("user"));
+
+        // 默认数据以标记识别，标记不会返回给客户端
+        UserGameDataResponse copy = new UserGameDataResponse();
+        copy.setPlayerInfo(other.getPlayerInfo());
+        assertFalse(defaults.isDefault(copy));
+        assertFalse(new String(defaults.serialize("user"), StandardCharsets.UTF_8).contains("defaultData"));
+    }
+}
@@ -0,0 +1,83 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.lyf.testapi.dto.Assistant;
+import org.lyf.testapi.dto.Challenge;
+import org.lyf.testapi.dto.Settings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GameStateCodecTests {
+
+    @Test
+    void roundTripsAssistantsChallengesAndSettings() {
+        List<Assistant> assistants = assistants(4);
+        assistants.get(0).setUnlocked(true);
+        assistants.get(0).setLevel(50);
+        assistants.get(2).setUnlocked(true);
+        assistants.get(2).setLevel(7);
+        List<Challenge> challenges = challenges(10);
+        challenges.get(1).setCompleted(true);
+        challenges.get(9).setCompleted(true);
+        Settings settings = Settings.createDefault();
+        settings.setMusicEnabled(false);
+
+        byte[] bytes = GameStateCodec.encode(assistants, challenges, settings);
+        assertEquals(3 + 4 + 2 + 1, bytes.length);
+
+        GameStateCodec.GameState state = GameStateCodec.decode(bytes);
+        assertEquals(assistants, state.getAssistants());
+        assertEquals(challenges, state.getChallenges());
+        assertEquals(settings, state.getSettings());
+    }
+
+    @Test
+    void defaultStateFitsInNineBytes() {
+        assertEquals(9, GameStateCodec.encode(assistants(4), challenges(5), Settings.createDefault()).length);
+    }
+
+    @Test
+    void returnsNullWhenIdsAreNotSequential() {
+        List<Assistant> assistants = assistants(4);
+        assistants.get(3).setId(7);
+        assertNull(GameStateCodec.encode(assistants, challenges(5), null));
+    }
+
+    @Test
+    void rejectsUnknownFormatAndTruncatedData() {
+        byte[] bytes = GameStateCodec.encode(assistants(4), challenges(5), null);
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertThrows(IllegalArgumentException.class, () -> GameStateCodec.decode(truncated));
+        bytes[0] = 9;
+        assertThrows(IllegalArgumentException.class, () -> GameStateCodec.decode(bytes));
+    }
+
+    private static List<Assistant> assistants(int count) {
+        List<Assistant> assistants = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Assistant assistant = new Assistant();
+            assistant.setId(i);
+            assistant.setUnlocked(false);
+            assistant.setLevel(0);
+            assistants.add(assistant);
+        }
+        return assistants;
+    }
+
+    private static List<Challenge> challenges(int count) {
+        List<Challenge> challenges = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Challenge challenge = new Challenge();
+            challenge.setId(i);
+            challenge.setCompleted(false);
+            challenges.add(challenge);
+        }
+        return challenges;
+    }
+}
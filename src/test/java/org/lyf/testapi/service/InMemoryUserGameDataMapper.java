@@ -0,0 +1,93 @@
+package org.lyf.testapi.service;
+
+import org.lyf.testapi.dto.UserGameDataPatchRequest;
+import org.lyf.testapi.entity.UserGameData;
+import org.lyf.testapi.mapper.UserGameDataMapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存中的 Mapper，按 MySQL 的约定实现 upsert 的版本号校验和返回值（found rows 模式），其他写入方法不支持
+ * 增量 UPDATE 总是返回0，增量保存走合并后完整保存的路径
+ */
+public class InMemoryUserGameDataMapper implements UserGameDataMapper {
+
+    final Map<String, UserGameData> rows = new ConcurrentHashMap<>();
+
+    /**
+     * 每次 upsert 执行前调用，用于在写入过程中插入其他操作
+     */
+    volatile Runnable beforeUpsert;
+
+    /**
+     * 每次 selectByUserId 执行前调用，用于统计查询次数、阻塞或模拟查询失败
+     */
+    volatile Runnable beforeSelect;
+
+    @Override
+    public UserGameData selectByUserId(String userId) {
+        Runnable hook = beforeSelect;
+        if (hook != null) {
+            hook.run();
+        }
+        return rows.get(userId);
+    }
+
+    @Override
+    public synchronized int upsert(UserGameData userGameData, Long expectedVersion) {
+        Runnable hook = beforeUpsert;
+        if (hook != null) {
+            hook.run();
+        }
+        UserGameData current = rows.get(userGameData.getUserId());
+        if (current == null) {
+            rows.put(userGameData.getUserId(), userGameData);
+            return 1;
+        }
+        if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+            return 1;
+        }
+        rows.put(userGameData.getUserId(), userGameData);
+        return 2;
+    }
+
+    @Override
+    public Long selectVersionByUserId(String userId) {
+        UserGameData current = rows.get(userId);
+        return current != null ? current.getVersion() : null;
+    }
+
+    @Override
+    public UserGameData selectFingerprintByUserId(String userId) {
+        return rows.get(userId);
+    }
+
+    @Override
+    public int insert(UserGameData userGameData) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int patchByUserId(UserGameDataPatchRequest patch, long version, LocalDateTime lastUpdateTime,
+                             LocalDateTime incomeStartTime) {
+        return 0;
+    }
+
+    @Override
+    public List<UserGameData> selectJsonStatePage(long afterId, int limit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int updateStateBlob(Long id, Long version, byte[] stateBlob) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<UserGameData> selectScorePage(long afterId, int limit) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,60 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTests {
+
+    @Test
+    void bucketsCoverValuesWithBoundedRelativeError() {
+        for (long micros = 0; micros < 5_000_000; micros += 1 + micros / 7) {
+            int index = LatencyHistogram.bucketIndex(micros);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(upper >= micros, "upper bound below value " + micros);
+            assertTrue(upper - micros <= micros / 16, "bucket too wide for " + micros);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < micros, "value fits previous bucket " + micros);
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    void reportsQuantilesOfRecordedLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram(60_000);
+        // 1000次：990次1毫秒，9次50毫秒，1次800毫秒
+        for (int i = 0; i < 990; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(800));
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000, snapshot.getWindowCount());
+        assertEquals(1.0, snapshot.getP50Ms(), 1.0 / 16);
+        assertEquals(1.0, snapshot.getP99Ms(), 1.0 / 16);
+        assertEquals(50.0, snapshot.getP999Ms(), 50.0 / 16);
+        assertEquals(800.0, snapshot.getMaxMs(), 0.001);
+        assertEquals(990 + 450 + 800, snapshot.getSumMs(), 0.001);
+    }
+
+    @Test
+    void quantilesForgetDataOlderThanTwoWindows() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(50);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(500));
+        Thread.sleep(120);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(1, snapshot.getWindowCount());
+        assertEquals(2.0, snapshot.getP999Ms(), 2.0 / 16);
+    }
+}
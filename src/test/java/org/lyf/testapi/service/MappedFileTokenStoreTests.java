@@ -0,0 +1,219 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MappedFileTokenStoreTests {
+
+    /**
+     * 文件头长度，以及 openid 为8个字符时一条记录的长度：类型 + 长度 + 记录体（过期时间 + token + openid）+ CRC
+     */
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 1 + 4 + (8 + 2 + 32 + 2 + 8) + 4;
+
+    @TempDir
+    Path dir;
+
+    private final List<MappedFileTokenStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (MappedFileTokenStore store : stores) {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    void tokensSurviveRestart() throws Exception {
+        MappedFileTokenStore store = open();
+        String first = store.issue("openid-1", "sk", 3600);
+        String second = store.issue("openid-2", "sk", 3600);
+        String revoked = store.issue("openid-3", "sk", 3600);
+        String expired = store.issue("openid-4", "sk", -1);
+        store.revoke(revoked);
+        close(store);
+
+        MappedFileTokenStore restarted = open();
+        assertEquals("openid-1", restarted.resolve(first));
+        assertEquals("openid-2", restarted.resolve(second));
+        assertNull(restarted.resolve(revoked));
+        assertNull(restarted.resolve(expired));
+        assertEquals(2, restarted.getStats().getLive());
+    }
+
+    @Test
+    void replayDropsCorruptedTail() throws Exception {
+        MappedFileTokenStore store = open();
+        String first = store.issue("openid-1", "sk", 3600);
+        String second = store.issue("openid-2", "sk", 3600);
+        String third = store.issue("openid-3", "sk", 3600);
+        close(store);
+
+        // 第三条记录的记录体损坏（进程在写入过程中退出）
+        Path file = singleFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long position = HEADER_SIZE + 2L * RECORD_SIZE + 5 + 20;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xFF);
+        }
+
+        MappedFileTokenStore restarted = open();
+        assertEquals("openid-1", restarted.resolve(first));
+        assertEquals("openid-2", restarted.resolve(second));
+        assertNull(restarted.resolve(third));
+
+        // 损坏的内容被截断，之后追加的记录在下次重放时可以读到
+        String fourth = restarted.issue("openid-4", "sk", 3600);
+        close(restarted);
+        MappedFileTokenStore reopened = open();
+        assertEquals("openid-4", reopened.resolve(fourth));
+        assertNull(reopened.resolve(third));
+        assertEquals(3, reopened.getStats().getLive());
+    }
+
+    @Test
+    void compactionKeepsLiveTokensAndReleasesOldFile() throws Exception {
+        MappedFileTokenStore store = open();
+        Path oldFile = singleFile();
+        // 保持对旧映射的引用，避免GC回收后释放映射，只有压缩主动释放时映射才会消失（不能再访问该缓冲区）
+        Object oldBuffer = ReflectionTestUtils.getField(store, "buffer");
+        List<String> live = new ArrayList<>();
+        // 1MB 的文件写满签发和吊销记录后触发压缩（吊销记录不含 openid，比签发记录短）
+        int records = 1024 * 1024 / RECORD_SIZE + 100;
+        for (int i = 0; i < records; i++) {
+            String token = store.issue(String.format("openid-%d", i % 10), "sk", 3600);
+            if (i % 100 == 0) {
+                live.add(token);
+            } else {
+                store.revoke(token);
+            }
+        }
+
+        Path newFile = singleFile();
+        assertNotEquals(oldFile, newFile);
+        assertFalse(Files.exists(oldFile));
+        assertEquals(live.size(), store.getStats().getLive());
+        for (String token : live) {
+            assertEquals(8, store.resolve(token).getBytes(StandardCharsets.UTF_8).length);
+        }
+        assertFalse(isMapped(oldFile));
+        assertTrue(oldBuffer != ReflectionTestUtils.getField(store, "buffer"));
+
+        close(store);
+        MappedFileTokenStore restarted = open();
+        assertEquals(live.size(), restarted.getStats().getLive());
+        for (String token : live) {
+            assertTrue(restarted.resolve(token).startsWith("openid-"));
+        }
+    }
+
+    @Test
+    void failedCompactionKeepsCurrentFile() throws Exception {
+        MappedFileTokenStore store = open();
+        Path oldFile = singleFile();
+        // 下一代文件已存在（如其他进程留下），压缩无法创建新文件
+        Path blocker = dir.resolve("tokens-2.dat");
+        Files.write(blocker, new byte[]{1});
+
+        List<String> live = new ArrayList<>();
+        int records = 1024 * 1024 / RECORD_SIZE + 100;
+        IllegalStateException failure = null;
+        for (int i = 0; failure == null; i++) {
+            assertTrue(i < records);
+            try {
+                String token = store.issue(String.format("openid-%d", i % 10), "sk", 3600);
+                if (i % 100 == 0) {
+                    live.add(token);
+                } else {
+                    store.revoke(token);
+                }
+            } catch (IllegalStateException e) {
+                failure = e;
+            }
+        }
+
+        // 压缩失败后继续使用当前文件，不删除不是本次创建的文件
+        assertEquals(oldFile, ReflectionTestUtils.getField(store, "currentFile"));
+        assertTrue(Files.exists(oldFile));
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(blocker));
+        assertEquals(live.size(), store.getStats().getLive());
+        for (String token : live) {
+            assertTrue(store.resolve(token).startsWith("openid-"));
+        }
+
+        // 下一次追加时重新压缩
+        Files.delete(blocker);
+        live.add(store.issue("openid-x", "sk", 3600));
+        assertEquals(blocker, singleFile());
+        close(store);
+
+        MappedFileTokenStore restarted = open();
+        assertEquals(live.size(), restarted.getStats().getLive());
+        for (String token : live) {
+            assertTrue(restarted.resolve(token).startsWith("openid-"));
+        }
+    }
+
+    private MappedFileTokenStore open() throws IOException {
+        MappedFileTokenStore store = new MappedFileTokenStore();
+        ReflectionTestUtils.setField(store, "storeDir", dir.toString());
+        ReflectionTestUtils.setField(store, "fileSizeMb", 1);
+        ReflectionTestUtils.setField(store, "tickMs", 1000L);
+        ReflectionTestUtils.setField(store, "expiresIn", 3600);
+        ReflectionTestUtils.setField(store, "maxTokens", 100_000);
+        store.init();
+        stores.add(store);
+        return store;
+    }
+
+    private void close(MappedFileTokenStore store) {
+        store.shutdown();
+        stores.remove(store);
+    }
+
+    private Path singleFile() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "tokens-*.dat")) {
+            stream.forEach(files::add);
+        }
+        assertEquals(1, files.size());
+        return files.get(0);
+    }
+
+    /**
+     * 文件是否仍被当前进程映射（只在有 /proc 的系统上检查）
+     */
+    private static boolean isMapped(Path file) throws IOException {
+        Path maps = Paths.get("/proc/self/maps");
+        assumeTrue(Files.isReadable(maps));
+        String path = file.toAbsolutePath().toString();
+        for (String line : Files.readAllLines(maps)) {
+            if (line.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
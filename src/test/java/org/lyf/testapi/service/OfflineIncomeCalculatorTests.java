@@ -0,0 +1,100 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lyf.testapi.dto.Assistant;
+import org.lyf.testapi.dto.OfflineIncome;
+import org.lyf.testapi.dto.PlayerInfo;
+import org.lyf.testapi.dto.UserGameDataResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OfflineIncomeCalculatorTests {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0, 0);
+
+    private OfflineIncomeCalculator calculator;
+
+    @BeforeEach
+    void setUp() {
+        calculator = new OfflineIncomeCalculator();
+        ReflectionTestUtils.setField(calculator, "enabled", true);
+        ReflectionTestUtils.setField(calculator, "rewardPerLevelSecond", 2L);
+        ReflectionTestUtils.setField(calculator, "minOfflineMs", 60_000L);
+        ReflectionTestUtils.setField(calculator, "maxOfflineMs", 3_600_000L);
+    }
+
+    @Test
+    void incomeGrowsWithAssistantLevelsAndTraining() {
+        // 已解锁助理等级之和为 3 + 2，未解锁的助理不计
+        UserGameDataResponse data = data(NOW.minusMinutes(10), 1, 3, 2, 0);
+        OfflineIncome income = calculator.calculate(data, NOW);
+        assertEquals(2L * 5 * 600 * 2, income.getAmount());
+        assertEquals(600L, income.getOfflineSeconds());
+        assertFalse(income.getCapped());
+
+        // 离线时长不足阈值时视为在线
+        assertNull(calculator.calculate(data(NOW.minusSeconds(59), 1, 3, 2, 0), NOW));
+        // 离线时长最多按1小时计算
+        income = calculator.calculate(data(NOW.minusDays(2), 0, 1, 0, 0), NOW);
+        assertEquals(2L * 3600, income.getAmount());
+        assertTrue(income.getCapped());
+        // 收益不超过金钱的表示范围
+        income = calculator.calculate(data(NOW.minusDays(2), 1000, 50, 50, 50), NOW);
+        assertEquals(Long.MAX_VALUE - 100, income.getAmount());
+    }
+
+    @Test
+    void applyReturnsCopyWithIncomeAndKeepsVersion() {
+        UserGameDataResponse data = data(NOW.minusMinutes(2), 0, 1, 0, 0);
+        UserGameDataResponse applied = calculator.apply(data, NOW);
+        assertEquals(100L + 240, applied.getPlayerInfo().getMoney());
+        assertEquals(data.getVersion(), applied.getVersion());
+        assertEquals(240L, applied.getOfflineIncome().getAmount());
+        // 原对象可能在读缓存中，不能修改
+        assertEquals(100L, data.getPlayerInfo().getMoney());
+        assertNull(data.getOfflineIncome());
+        assertEquals(0L, calculator.getStableUntil(applied));
+
+        UserGameDataResponse online = data(NOW.minusSeconds(10), 0, 1, 0, 0);
+        assertSame(online, calculator.apply(online, NOW));
+
+        ReflectionTestUtils.setField(calculator, "enabled", false);
+        assertSame(data, calculator.apply(data, NOW));
+        assertNull(calculator.getIncomeStartTime(NOW));
+        assertEquals(Long.MAX_VALUE, calculator.getStableUntil(data));
+    }
+
+    private static UserGameDataResponse data(LocalDateTime lastUpdateTime, int trainingCount, int... levels) {
+        UserGameDataResponse data = new UserGameDataResponse();
+        data.setUserId("user");
+        data.setLastUpdateTime(lastUpdateTime);
+        data.setVersion(1704081600000L);
+
+        PlayerInfo playerInfo = new PlayerInfo();
+        playerInfo.setPlayerLevel(1);
+        playerInfo.setMoney(100L);
+        playerInfo.setTrainingCount(trainingCount);
+        data.setPlayerInfo(playerInfo);
+
+        List<Assistant> assistants = new ArrayList<>();
+        for (int i = 0; i < levels.length; i++) {
+            Assistant assistant = new Assistant();
+            assistant.setId(i + 1);
+            assistant.setUnlocked(levels[i] > 0);
+            assistant.setLevel(levels[i]);
+            assistants.add(assistant);
+        }
+        data.setAssistants(assistants);
+        return data;
+    }
+}
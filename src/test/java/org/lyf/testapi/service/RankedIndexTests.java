@@ -0,0 +1,73 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RankedIndexTests {
+
+    @Test
+    void ranksByScoreDescendingThenUserId() {
+        RankedIndex index = new RankedIndex();
+        index.put("b", 100);
+        index.put("a", 100);
+        index.put("c", 300);
+        index.put("d", 50);
+
+        assertEquals(1, index.rank("c"));
+        assertEquals(2, index.rank("a"));
+        assertEquals(3, index.rank("b"));
+        assertEquals(4, index.rank("d"));
+        assertEquals(0, index.rank("missing"));
+
+        index.put("d", 1000);
+        assertEquals(1, index.rank("d"));
+        assertEquals(new RankedIndex.Entry(2, "c", 300), index.range(1, 1).get(0));
+
+        index.remove("c");
+        assertEquals(3, index.size());
+        assertNull(index.getScore("c"));
+        assertEquals(2, index.rank("a"));
+        assertEquals(2, index.range(1, 10).size());
+        assertTrue(index.range(3, 10).isEmpty());
+    }
+
+    @Test
+    void matchesSortedListAfterRandomUpdates() {
+        RankedIndex index = new RankedIndex();
+        Map<String, Long> scores = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            String userId = "u" + random.nextInt(2000);
+            if (random.nextInt(10) == 0) {
+                index.remove(userId);
+                scores.remove(userId);
+            } else {
+                long score = random.nextInt(500);
+                index.put(userId, score);
+                scores.put(userId, score);
+            }
+        }
+
+        List<String> expected = new ArrayList<>(scores.keySet());
+        expected.sort(Comparator.comparing((String userId) -> -scores.get(userId)).thenComparing(userId -> userId));
+        assertEquals(expected.size(), index.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i + 1, index.rank(expected.get(i)));
+        }
+        List<RankedIndex.Entry> page = index.range(100, 50);
+        for (int i = 0; i < page.size(); i++) {
+            assertEquals(101 + i, page.get(i).getRank());
+            assertEquals(expected.get(100 + i), page.get(i).getUserId());
+        }
+    }
+}
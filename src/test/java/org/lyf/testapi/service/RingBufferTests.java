@@ -0,0 +1,85 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferTests {
+
+    @Test
+    void rejectsWhenFullAndKeepsOrder() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(5));
+        assertEquals(1, buffer.poll());
+        assertEquals(2, buffer.poll());
+        assertEquals(3, buffer.poll());
+        assertEquals(5, buffer.poll());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    void concurrentProducersNeitherLoseNorDuplicateAcceptedElements() throws Exception {
+        RingBuffer<Integer> buffer = new RingBuffer<>(256);
+        int producers = 4;
+        int perProducer = 50_000;
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    if (buffer.offer(base + i)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        int[] lastByProducer = new int[producers];
+        Arrays.fill(lastByProducer, -1);
+        start.countDown();
+        while (threads.stream().anyMatch(Thread::isAlive) || buffer.size() > 0) {
+            Integer value = buffer.poll();
+            if (value == null) {
+                continue;
+            }
+            assertTrue(seen.add(value));
+            // 同一生产者的元素按写入顺序取出
+            int producer = value / perProducer;
+            assertTrue(value > lastByProducer[producer]);
+            lastByProducer[producer] = value;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(accepted.get(), seen.size());
+    }
+}
@@ -0,0 +1,110 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SignedTokenStoreTests {
+
+    private static final String KEY_1 = "k1:" + key('a');
+    private static final String KEY_2 = "k2:" + key('b');
+
+    @Test
+    void rejectsTamperedTokens() {
+        SignedTokenStore store = store(KEY_1, "", 10);
+        String token = store.issue("openid-1", "sk", 3600);
+        assertEquals("openid-1", store.resolve(token));
+
+        String[] parts = token.split("\\.");
+        String otherOpenid = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("openid-2".getBytes(StandardCharsets.UTF_8));
+        // 修改openid、延长过期时间、修改签名、换用其他密钥ID都会导致签名不一致
+        assertNull(store.resolve(parts[0] + "." + otherOpenid + "." + parts[2] + "." + parts[3]));
+        assertNull(store.resolve(parts[0] + "." + parts[1] + "." + (Long.parseLong(parts[2]) + 3600) + "." + parts[3]));
+        String signature = (parts[3].charAt(0) == 'A' ? "B" : "A") + parts[3].substring(1);
+        assertNull(store.resolve(parts[0] + "." + parts[1] + "." + parts[2] + "." + signature));
+        assertNull(store.resolve("k2." + parts[1] + "." + parts[2] + "." + parts[3]));
+        // 格式错误
+        assertNull(store.resolve(parts[0] + "." + parts[1] + "." + parts[2]));
+        assertNull(store.resolve(parts[0] + "." + parts[1] + ".abc." + parts[3]));
+        assertNull(store.resolve(parts[0] + "." + parts[1] + "." + parts[2] + ".!!!"));
+
+        // 其他进程使用不同密钥签发的同名密钥ID的token
+        SignedTokenStore other = store("k1:" + key('c'), "", 10);
+        assertNull(store.resolve(other.issue("openid-1", "sk", 3600)));
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        SignedTokenStore store = store(KEY_1, "", 10);
+        String token = store.issue("openid-1", "sk", -1);
+        assertNull(store.resolve(token));
+        assertEquals(1L, store.getStats().getExpired());
+    }
+
+    @Test
+    void revocationFailsWhenRevokedSetIsFull() {
+        SignedTokenStore store = store(KEY_1, "", 2);
+        String first = store.issue("openid-1", "sk", 3600);
+        String second = store.issue("openid-2", "sk", 3600);
+        String third = store.issue("openid-3", "sk", 3600);
+
+        assertTrue(store.revoke(first));
+        assertNull(store.resolve(first));
+        // 重复吊销、吊销无效token都视为已失效
+        assertTrue(store.revoke(first));
+        assertTrue(store.revoke("invalid"));
+        assertTrue(store.revoke(second));
+
+        // 吊销集合已满且没有已过期的记录，吊销未生效，token仍然有效
+        assertFalse(store.revoke(third));
+        assertEquals("openid-3", store.resolve(third));
+        assertEquals(2L, store.getStats().getRevoked());
+    }
+
+    @Test
+    void rotatesKeys() {
+        SignedTokenStore before = store(KEY_1, "", 10);
+        String oldToken = before.issue("openid-1", "sk", 3600);
+
+        // 追加新密钥并切换签发密钥，旧token仍可校验
+        SignedTokenStore rotating = store(KEY_1 + "," + KEY_2, "k2", 10);
+        String newToken = rotating.issue("openid-2", "sk", 3600);
+        assertTrue(newToken.startsWith("k2."));
+        assertEquals("openid-1", rotating.resolve(oldToken));
+        assertEquals("openid-2", rotating.resolve(newToken));
+
+        // 删除旧密钥后旧token失效
+        SignedTokenStore after = store(KEY_2, "", 10);
+        assertNull(after.resolve(oldToken));
+        assertEquals("openid-2", after.resolve(newToken));
+
+        assertThrows(IllegalStateException.class, () -> store(KEY_1, "k2", 10));
+        assertThrows(IllegalStateException.class, () -> store("k1:" + Base64.getEncoder().encodeToString(new byte[16]), "", 10));
+        assertThrows(IllegalStateException.class, () -> store("k.1:" + key('a'), "", 10));
+    }
+
+    private static SignedTokenStore store(String hmacKeys, String activeKeyId, int maxRevoked) {
+        SignedTokenStore store = new SignedTokenStore();
+        ReflectionTestUtils.setField(store, "hmacKeys", hmacKeys);
+        ReflectionTestUtils.setField(store, "activeKeyId", activeKeyId);
+        ReflectionTestUtils.setField(store, "maxRevoked", maxRevoked);
+        store.init();
+        return store;
+    }
+
+    private static String key(char fill) {
+        byte[] secret = new byte[32];
+        Arrays.fill(secret, (byte) fill);
+        return Base64.getEncoder().encodeToString(secret);
+    }
+}
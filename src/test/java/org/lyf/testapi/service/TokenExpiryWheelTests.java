@@ -0,0 +1,110 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenExpiryWheelTests {
+
+    @Test
+    void expiresOnlyTokensWhoseTickHasPassed() {
+        List<String> expired = new ArrayList<>();
+        TokenExpiryWheel wheel = new TokenExpiryWheel(1000, 16, expired::add);
+        long now = System.currentTimeMillis();
+
+        wheel.schedule("a", now + 2_000);
+        wheel.schedule("b", now + 5_000);
+
+        assertEquals(0, wheel.advance(now + 1_000));
+        assertEquals(1, wheel.advance(now + 4_000));
+        assertEquals(1, wheel.advance(now + 7_000));
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains("a"));
+        assertTrue(expired.contains("b"));
+    }
+
+    @Test
+    void keepsTokensFromLaterRoundsInTheirSlot() {
+        List<String> expired = new ArrayList<>();
+        TokenExpiryWheel wheel = new TokenExpiryWheel(1000, 4, expired::add);
+        long now = System.currentTimeMillis();
+
+        // 时间轮跨度只有4秒，前几圈经过该时间槽时10秒后才过期的token不能被清理
+        wheel.schedule("late", now + 10_000);
+
+        assertEquals(0, wheel.advance(now + 6_000));
+        assertEquals(1, wheel.advance(now + 12_000));
+        assertEquals("late", expired.get(0));
+    }
+
+    @Test
+    void cancelledTokensAreUnlinked() {
+        List<String> expired = new ArrayList<>();
+        TokenExpiryWheel wheel = new TokenExpiryWheel(1000, 8, expired::add);
+        long now = System.currentTimeMillis();
+
+        TokenExpiryWheel.Node a = wheel.schedule("a", now + 2_000);
+        TokenExpiryWheel.Node b = wheel.schedule("b", now + 2_000);
+        TokenExpiryWheel.Node c = wheel.schedule("c", now + 2_000);
+        // 摘除同一时间槽中间的节点，重复摘除和摘除空节点不做处理
+        wheel.cancel(b);
+        wheel.cancel(b);
+        wheel.cancel(null);
+
+        assertEquals(2, wheel.advance(now + 4_000));
+        assertEquals(2, expired.size());
+        assertFalse(expired.contains("b"));
+
+        // 已过期出槽的节点再摘除不影响其他节点
+        wheel.cancel(a);
+        wheel.cancel(c);
+        TokenExpiryWheel.Node d = wheel.schedule("d", now + 5_000);
+        wheel.schedule("e", now + 5_000);
+        wheel.cancel(d);
+        assertEquals("e", wheel.pollEarliest());
+        assertNull(wheel.pollEarliest());
+    }
+
+    @Test
+    void revokedTokensLeaveTheWheel() {
+        MemoryTokenStore store = new MemoryTokenStore();
+        ReflectionTestUtils.setField(store, "tickMs", 1000L);
+        ReflectionTestUtils.setField(store, "expiresIn", 3600);
+        ReflectionTestUtils.setField(store, "maxTokens", 100);
+        store.init();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                store.revoke(store.issue("openid", "sk", 3600));
+            }
+            String live = store.issue("openid", "sk", 3600);
+
+            // 时间轮中只剩下未吊销的token
+            TokenExpiryWheel wheel = (TokenExpiryWheel) ReflectionTestUtils.getField(store, "wheel");
+            assertEquals(live, wheel.pollEarliest());
+            assertNull(wheel.pollEarliest());
+            assertEquals(1000L, store.getStats().getRevoked());
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    void pollEarliestReturnsNullWhenEmpty() {
+        TokenExpiryWheel wheel = new TokenExpiryWheel(1000, 8, token -> { });
+        assertNull(wheel.pollEarliest());
+
+        long now = System.currentTimeMillis();
+        wheel.schedule("x", now + 3_000);
+        wheel.schedule("y", now + 1_000);
+        assertEquals("y", wheel.pollEarliest());
+        assertEquals("x", wheel.pollEarliest());
+        assertNull(wheel.pollEarliest());
+    }
+}
@@ -0,0 +1,227 @@
+package org.lyf.testapi.service;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lyf.testapi.entity.UserGameData;
+import org.lyf.testapi.mapper.UserGameDataMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserGameDataBatchWriterTests {
+
+    private InMemoryUserGameDataMapper mapper;
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger rollbacks = new AtomicInteger();
+    private UserGameDataBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        // 金钱为负数的数据模拟数据库拒绝写入（逐条写入和批量执行都会失败）
+        mapper = new InMemoryUserGameDataMapper() {
+            @Override
+            public synchronized int upsert(UserGameData userGameData, Long expectedVersion) {
+                if (userGameData.getMoney() < 0) {
+                    throw new IllegalArgumentException("money out of range");
+                }
+                return super.upsert(userGameData, expectedVersion);
+            }
+        };
+        writer = new UserGameDataBatchWriter(sqlSessionFactory(), transactionManager(), mapper);
+        ReflectionTestUtils.setField(writer, "enabled", true);
+        ReflectionTestUtils.setField(writer, "windowMs", 200L);
+        ReflectionTestUtils.setField(writer, "maxBatchSize", 3);
+        ReflectionTestUtils.setField(writer, "maxQueue", 100);
+        ReflectionTestUtils.setField(writer, "timeoutMs", 5000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    void concurrentSubmitsShareOneBatch() throws Exception {
+        writer.init();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(writer.submit(data("user-" + i, 10L), null));
+        }
+        for (CompletableFuture<Integer> future : futures) {
+            assertEquals(1, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1L, writer.getStats().getBatches());
+        assertEquals(3L, writer.getStats().getRows());
+        assertEquals(1, commits.get());
+        assertEquals(3, mapper.rows.size());
+
+        // 批量执行时版本号校验的结果与逐条执行一致
+        assertEquals(1, writer.upsert(data("user-0", 20L), 999L));
+        assertEquals(10L, mapper.selectByUserId("user-0").getMoney());
+    }
+
+    @Test
+    void failedBatchFallsBackToSingleRows() throws Exception {
+        writer.init();
+        CompletableFuture<Integer> first = writer.submit(data("user-1", 10L), null);
+        CompletableFuture<Integer> bad = writer.submit(data("user-2", -1L), null);
+        CompletableFuture<Integer> third = writer.submit(data("user-3", 30L), null);
+
+        // 整批回滚后逐条重试，只有出错的一条失败
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, third.get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        assertEquals(1, rollbacks.get());
+        assertEquals(1L, writer.getStats().getFallbacks());
+        assertEquals(0L, writer.getStats().getBatches());
+        assertEquals(30L, mapper.selectByUserId("user-3").getMoney());
+        assertEquals(2, mapper.rows.size());
+    }
+
+    @Test
+    void shutdownWritesQueuedRows() throws Exception {
+        // 攒批窗口很长时关闭，队列中的数据在关闭时写完
+        ReflectionTestUtils.setField(writer, "windowMs", 60_000L);
+        ReflectionTestUtils.setField(writer, "maxBatchSize", 100);
+        writer.init();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(writer.submit(data("user-" + i, 10L), null));
+        }
+        writer.shutdown();
+        for (CompletableFuture<Integer> future : futures) {
+            assertTrue(future.isDone());
+            assertEquals(1, future.get());
+        }
+        assertEquals(5, mapper.rows.size());
+
+        // 关闭后直接写入
+        CompletableFuture<Integer> after = writer.submit(data("user-9", 10L), null);
+        assertTrue(after.isDone());
+        assertEquals(1, after.get());
+        assertEquals(0L, writer.getStats().getRejected());
+    }
+
+    @Test
+    void rowQueuedAfterShutdownDrainIsWrittenInline() throws Exception {
+        writer.init();
+        writer.shutdown();
+
+        // 放入队列的同时关闭完成（写入线程已退出，剩余数据已取走），数据不能留在队列中无人处理
+        ReflectionTestUtils.setField(writer, "running", true);
+        ReflectionTestUtils.setField(writer, "queue", new LinkedBlockingQueue<Object>() {
+            @Override
+            public boolean offer(Object o) {
+                boolean offered = super.offer(o);
+                ReflectionTestUtils.setField(writer, "running", false);
+                return offered;
+            }
+        });
+        CompletableFuture<Integer> future = writer.submit(data("user-1", 10L), null);
+        assertTrue(future.isDone());
+        assertEquals(1, future.get());
+        assertEquals(10L, mapper.selectByUserId("user-1").getMoney());
+        assertEquals(0, writer.getStats().getQueued());
+    }
+
+    private static UserGameData data(String userId, long money) {
+        UserGameData data = new UserGameData();
+        data.setUserId(userId);
+        data.setPlayerLevel(1);
+        data.setMoney(money);
+        data.setVersion(System.currentTimeMillis());
+        return data;
+    }
+
+    private PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                commits.incrementAndGet();
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                rollbacks.incrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * BATCH 会话：upsert 先记录下来，flushStatements 时一起执行；
+     * 有一条会失败时整批都不执行（模拟事务回滚）
+     */
+    private SqlSessionFactory sqlSessionFactory() {
+        return (SqlSessionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{SqlSessionFactory.class}, (factory, method, args) -> {
+                    if (!method.getName().equals("openSession") || args == null || args[0] != ExecutorType.BATCH) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    List<UserGameData> statements = new ArrayList<>();
+                    List<Long> expectedVersions = new ArrayList<>();
+                    UserGameDataMapper batchMapper = new InMemoryUserGameDataMapper() {
+                        @Override
+                        public int upsert(UserGameData userGameData, Long expectedVersion) {
+                            statements.add(userGameData);
+                            expectedVersions.add(expectedVersion);
+                            return 0;
+                        }
+                    };
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{SqlSession.class},
+                            (session, sessionMethod, sessionArgs) -> {
+                                switch (sessionMethod.getName()) {
+                                    case "getMapper":
+                                        return batchMapper;
+                                    case "flushStatements":
+                                        return flush(statements, expectedVersions);
+                                    case "close":
+                                        return null;
+                                    default:
+                                        throw new UnsupportedOperationException(sessionMethod.getName());
+                                }
+                            });
+                });
+    }
+
+    private List<BatchResult> flush(List<UserGameData> statements, List<Long> expectedVersions) {
+        for (UserGameData data : statements) {
+            if (data.getMoney() < 0) {
+                throw new IllegalArgumentException("money out of range");
+            }
+        }
+        int[] counts = new int[statements.size()];
+        for (int i = 0; i < statements.size(); i++) {
+            counts[i] = mapper.upsert(statements.get(i), expectedVersions.get(i));
+        }
+        BatchResult result = new BatchResult(null, "upsert");
+        result.setUpdateCounts(counts);
+        return Collections.singletonList(result);
+    }
+}
@@ -0,0 +1,137 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lyf.testapi.dto.UserGameDataResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class UserGameDataCacheTests {
+
+    private UserGameDataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserGameDataCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 2);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAndExpiredEntries() {
+        cache.put("a", response(1L));
+        cache.put("b", response(1L));
+        // 访问 a 后 b 成为最久未访问的条目
+        cache.get("a");
+        cache.put("c", response(1L));
+        assertNull(cache.get("b"));
+        assertEquals(1L, cache.get("a").getVersion());
+        assertEquals(1L, cache.get("c").getVersion());
+        assertEquals(2, cache.getStats().getSize());
+        assertEquals(1L, cache.getStats().getEvictions());
+
+        ReflectionTestUtils.setField(cache, "ttlMs", -1L);
+        // 放入 d 时淘汰 a，读取 d 时 d 已过期
+        cache.put("d", response(1L));
+        assertNull(cache.get("d"));
+        assertNull(cache.get("a"));
+        assertEquals(3L, cache.getStats().getEvictions());
+
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void keepsNewerVersionUntilItExpires() {
+        UserGameDataResponse saved = response(20L);
+        cache.put("a", saved);
+        // 保存之前读取数据库的加载在保存之后才放入缓存
+        cache.put("a", response(10L));
+        assertSame(saved, cache.get("a"));
+
+        UserGameDataResponse newer = response(30L);
+        cache.put("a", newer);
+        assertSame(newer, cache.get("a"));
+
+        // 已过期的数据不再阻止放入
+        ReflectionTestUtils.setField(cache, "ttlMs", -1L);
+        cache.put("b", response(50L));
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        UserGameDataResponse reloaded = response(40L);
+        cache.put("b", reloaded);
+        assertSame(reloaded, cache.get("b"));
+
+        cache.invalidate("a");
+        cache.put("a", response(10L));
+        assertEquals(10L, cache.get("a").getVersion());
+    }
+
+    @Test
+    void versionedInvalidateRejectsOlderLoads() {
+        cache.put("a", response(10L));
+        // 增量保存写入了版本20，缓存中没有完整的新数据
+        cache.invalidate("a", 20L);
+        assertNull(cache.get("a"));
+
+        // 增量保存之前开始的加载随后放入旧数据
+        cache.put("a", response(10L));
+        assertNull(cache.get("a"));
+
+        UserGameDataResponse reloaded = response(20L);
+        cache.put("a", reloaded);
+        assertSame(reloaded, cache.get("a"));
+
+        // 失效标记过期后不再阻止放入
+        ReflectionTestUtils.setField(cache, "ttlMs", -1L);
+        cache.invalidate("b", 50L);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        cache.put("b", response(40L));
+        assertEquals(40L, cache.get("b").getVersion());
+    }
+
+    @Test
+    void concurrentStaleLoadsDoNotOverwriteSave() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 200; round++) {
+                long version = round * 10L + 10;
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    // 一个线程保存新版本，其他线程放入保存之前加载的旧版本
+                    long putVersion = i == 0 ? version : version - 1 - i;
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        cache.put("a", response(putVersion));
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(5, TimeUnit.SECONDS);
+                }
+                assertEquals(version, cache.get("a").getVersion());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static UserGameDataResponse response(long version) {
+        UserGameDataResponse response = new UserGameDataResponse();
+        response.setVersion(version);
+        return response;
+    }
+}
@@ -0,0 +1,83 @@
+package org.lyf.testapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.lyf.testapi.dto.Assistant;
+import org.lyf.testapi.dto.Challenge;
+import org.lyf.testapi.dto.PlayerInfo;
+import org.lyf.testapi.dto.Settings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class UserGameDataFingerprintsTests {
+
+    @Test
+    void missingFieldsMatchExplicitDefaults() {
+        PlayerInfo implicit = playerInfo();
+        implicit.setTrainingCount(null);
+        PlayerInfo explicit = playerInfo();
+        explicit.setTrainingCount(0);
+
+        assertEquals(
+                UserGameDataFingerprints.fingerprint(implicit, assistants(), challenges(), null),
+                UserGameDataFingerprints.fingerprint(explicit, assistants(), challenges(), Settings.createDefault()));
+    }
+
+    @Test
+    void everyFieldChangesTheFingerprint() {
+        long base = UserGameDataFingerprints.fingerprint(playerInfo(), assistants(), challenges(), Settings.createDefault());
+
+        PlayerInfo richer = playerInfo();
+        richer.setMoney(richer.getMoney() + 1);
+        assertNotEquals(base, UserGameDataFingerprints.fingerprint(richer, assistants(), challenges(), Settings.createDefault()));
+
+        List<Assistant> leveled = assistants();
+        leveled.get(3).setLevel(1);
+        assertNotEquals(base, UserGameDataFingerprints.fingerprint(playerInfo(), leveled, challenges(), Settings.createDefault()));
+
+        List<Challenge> completed = challenges();
+        completed.get(4).setCompleted(true);
+        assertNotEquals(base, UserGameDataFingerprints.fingerprint(playerInfo(), assistants(), completed, Settings.createDefault()));
+
+        Settings muted = Settings.createDefault();
+        muted.setMusicEnabled(false);
+        assertNotEquals(base, UserGameDataFingerprints.fingerprint(playerInfo(), assistants(), challenges(), muted));
+    }
+
+    private static PlayerInfo playerInfo() {
+        PlayerInfo playerInfo = new PlayerInfo();
+        playerInfo.setPlayerLevel(12);
+        playerInfo.setMoney(5000L);
+        playerInfo.setClickRewardBase(100L);
+        playerInfo.setClickMultiplier(1.5);
+        playerInfo.setUpgradeCost(800L);
+        playerInfo.setTrainingCount(2);
+        return playerInfo;
+    }
+
+    private static List<Assistant> assistants() {
+        List<Assistant> assistants = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            Assistant assistant = new Assistant();
+            assistant.setId(i);
+            assistant.setUnlocked(i == 1);
+            assistant.setLevel(i == 1 ? 5 : 0);
+            assistants.add(assistant);
+        }
+        return assistants;
+    }
+
+    private static List<Challenge> challenges() {
+        List<Challenge> challenges = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Challenge challenge = new Challenge();
+            challenge.setId(i);
+            challenge.setCompleted(i == 1);
+            challenges.add(challenge);
+        }
+        return challenges;
+    }
+}
@@ -0,0 +1,292 @@
+package org.lyf.testapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lyf.testapi.dto.PlayerInfo;
+import org.lyf.testapi.dto.UserGameDataPatchRequest;
+import org.lyf.testapi.dto.UserGameDataRequest;
+import org.lyf.testapi.dto.UserGameDataResponse;
+import org.lyf.testapi.entity.UserGameData;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserGameDataServiceTests {
+
+    private static final String USER_ID = "user";
+
+    private InMemoryUserGameDataMapper mapper;
+    private UserGameDataCache cache;
+    private UserGameDataService service;
+
+    @BeforeEach
+    void setUp() {
+        mapper = new InMemoryUserGameDataMapper();
+        cache = new UserGameDataCache();
+        createService();
+    }
+
+    /**
+     * 用当前的 mapper 和读缓存创建服务
+     */
+    private void createService() {
+        // 读缓存、写缓冲、批量写入、离线收益、排行榜均为默认的关闭状态
+        UserGameDataBatchWriter batchWriter = new UserGameDataBatchWriter(null, null, mapper);
+        UserGameDataBodyCache bodyCache = new UserGameDataBodyCache(new ObjectMapper());
+        UserGameDataFingerprints fingerprints = new UserGameDataFingerprints();
+        Leaderboard leaderboard = new Leaderboard(mapper);
+        UserGameDataWriteBuffer writeBuffer = new UserGameDataWriteBuffer(mapper, batchWriter, cache, bodyCache,
+                fingerprints, leaderboard);
+        service = new UserGameDataService(mapper, writeBuffer, batchWriter, cache, bodyCache, fingerprints,
+                new OfflineIncomeCalculator(), leaderboard, new DefaultUserGameData(new ObjectMapper()),
+                new ApiMetrics());
+        ReflectionTestUtils.setField(service, "storageFormat", "json");
+    }
+
+    @Test
+    void concurrentFirstPatchesAreMergedNotOverwritten() {
+        // 第一次增量保存写入数据库前，另一个请求先完成了该用户的首次保存
+        mapper.beforeUpsert = () -> {
+            mapper.beforeUpsert = null;
+            sleepPastCurrentMillisecond();
+            assertTrue(service.patchUserGameData(moneyPatch(50L, null)).getSuccess());
+        };
+
+        UserGameDataService.SaveResult result = service.patchUserGameData(moneyPatch(100L, null));
+        assertTrue(result.getSuccess());
+        assertEquals(150L, mapper.selectByUserId(USER_ID).getMoney());
+        assertEquals(result.getVersion(), mapper.selectVersionByUserId(USER_ID));
+    }
+
+    @Test
+    void firstPatchWithVersionConflictsWhenRowAppeared() {
+        mapper.beforeUpsert = () -> {
+            mapper.beforeUpsert = null;
+            sleepPastCurrentMillisecond();
+            assertTrue(service.patchUserGameData(moneyPatch(50L, null)).getSuccess());
+        };
+
+        // 客户端持有默认数据（版本号0）时，其他请求已写入数据，本次保存不能覆盖
+        UserGameDataService.SaveResult result = service.patchUserGameData(moneyPatch(100L, 0L));
+        assertFalse(result.getSuccess());
+        assertTrue(result.isConflict());
+        assertEquals(50L, mapper.selectByUserId(USER_ID).getMoney());
+    }
+
+    @Test
+    void defaultBasedSaveDoesNotOverwriteLegacyRow() {
+        assertTrue(service.saveUserGameData(fullRequest(70L, null)).getSuccess());
+        // 添加版本号之前写入的旧数据：迁移后版本号为1，未执行回填时为0
+        for (long legacyVersion : new long[]{1L, 0L}) {
+            mapper.rows.get(USER_ID).setVersion(legacyVersion);
+
+            // 客户端持有的是默认数据（版本号0），数据库中已有数据时不能覆盖
+            UserGameDataService.SaveResult result = service.saveUserGameData(fullRequest(5L, 0L));
+            assertTrue(result.isConflict());
+            assertEquals(70L, mapper.selectByUserId(USER_ID).getMoney());
+            assertEquals(legacyVersion, mapper.selectVersionByUserId(USER_ID));
+        }
+    }
+
+    @Test
+    void patchMergesIntoMigratedLegacyRow() {
+        assertTrue(service.saveUserGameData(fullRequest(70L, null)).getSuccess());
+        mapper.rows.get(USER_ID).setVersion(1L);
+
+        UserGameDataService.SaveResult result = service.patchUserGameData(moneyPatch(30L, null));
+        assertTrue(result.getSuccess());
+        assertEquals(100L, mapper.selectByUserId(USER_ID).getMoney());
+        assertEquals(result.getVersion(), mapper.selectVersionByUserId(USER_ID));
+
+        // 基于默认数据的增量保存不能合并到已有数据上
+        assertTrue(service.patchUserGameData(moneyPatch(30L, 0L)).isConflict());
+        assertEquals(100L, mapper.selectByUserId(USER_ID).getMoney());
+    }
+
+    @Test
+    void concurrentLoadsShareOneQuery() throws Exception {
+        assertTrue(service.saveUserGameData(fullRequest(70L, null)).getSuccess());
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        mapper.beforeSelect = () -> {
+            queries.incrementAndGet();
+            await(release);
+        };
+
+        for (UserGameDataResponse response : loadConcurrently(8, release)) {
+            assertEquals(70L, response.getPlayerInfo().getMoney());
+        }
+        assertEquals(1, queries.get());
+        assertEquals(1L, service.getLoadStats().getLoads());
+        assertEquals(7L, service.getLoadStats().getCoalesced());
+    }
+
+    @Test
+    void loadFailureReachesAllWaiters() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        mapper.beforeSelect = () -> {
+            queries.incrementAndGet();
+            await(release);
+            throw new IllegalStateException("database unavailable");
+        };
+
+        // 等待的请求收到同一个异常，都返回异常时的默认数据，不会各自再查询数据库
+        for (UserGameDataResponse response : loadConcurrently(8, release)) {
+            assertEquals(0L, response.getVersion());
+            assertNotNull(response.getLastUpdateTime());
+            assertFalse(response.isDefaultData());
+        }
+        assertEquals(1, queries.get());
+        assertEquals(7L, service.getLoadStats().getCoalesced());
+
+        // 结果不保留，之后的加载重新查询
+        mapper.beforeSelect = queries::incrementAndGet;
+        assertTrue(service.getUserGameData(USER_ID).isDefaultData());
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void loadStartedBeforePatchDoesNotCacheOldData() throws Exception {
+        AtomicBoolean blockNextRead = new AtomicBoolean();
+        CountDownLatch read = new CountDownLatch(1);
+        CountDownLatch patched = new CountDownLatch(1);
+        mapper = new InMemoryUserGameDataMapper() {
+            @Override
+            public UserGameData selectByUserId(String userId) {
+                UserGameData row = super.selectByUserId(userId);
+                if (blockNextRead.compareAndSet(true, false)) {
+                    read.countDown();
+                    await(patched);
+                }
+                return row;
+            }
+
+            // 增量 UPDATE 只支持金钱变化量，数据存在且版本号一致时用新的一行替换
+            @Override
+            public synchronized int patchByUserId(UserGameDataPatchRequest patch, long version,
+                                                  LocalDateTime lastUpdateTime, LocalDateTime incomeStartTime) {
+                UserGameData current = rows.get(patch.getUserId());
+                if (current == null || patch.getMoneyDelta() == null
+                        || (patch.getVersion() != null && !patch.getVersion().equals(current.getVersion()))) {
+                    return 0;
+                }
+                UserGameData updated = new UserGameData();
+                BeanUtils.copyProperties(current, updated);
+                updated.setMoney(current.getMoney() + patch.getMoneyDelta());
+                updated.setVersion(version);
+                updated.setLastUpdateTime(lastUpdateTime);
+                rows.put(patch.getUserId(), updated);
+                return 1;
+            }
+        };
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        createService();
+        assertTrue(service.saveUserGameData(fullRequest(70L, null)).getSuccess());
+        // 缓存条目已被淘汰，下一次读取查询数据库
+        cache.invalidate(USER_ID);
+
+        // 加载读取到旧数据后，增量保存先完成，加载之后才放入缓存
+        blockNextRead.set(true);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<UserGameDataResponse> staleLoad = pool.submit(() -> service.getUserGameData(USER_ID));
+            await(read);
+            sleepPastCurrentMillisecond();
+            UserGameDataService.SaveResult result = service.patchUserGameData(moneyPatch(30L, null));
+            assertTrue(result.getSuccess());
+            patched.countDown();
+            assertEquals(70L, staleLoad.get(5, TimeUnit.SECONDS).getPlayerInfo().getMoney());
+
+            UserGameDataResponse response = service.getUserGameData(USER_ID);
+            assertEquals(100L, response.getPlayerInfo().getMoney());
+            assertEquals(result.getVersion(), response.getVersion());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 并发加载同一个用户，所有请求都进入加载（一个查询数据库，其余等待）后放行查询
+     */
+    private List<UserGameDataResponse> loadConcurrently(int threads, CountDownLatch release) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<UserGameDataResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> service.getUserGameData(USER_ID)));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (service.getLoadStats().getLoads() + service.getLoadStats().getCoalesced() < threads) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+            release.countDown();
+            List<UserGameDataResponse> responses = new ArrayList<>();
+            for (Future<UserGameDataResponse> future : futures) {
+                responses.add(future.get(5, TimeUnit.SECONDS));
+            }
+            return responses;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static UserGameDataRequest fullRequest(long money, Long version) {
+        UserGameDataRequest request = new UserGameDataRequest();
+        request.setUserId(USER_ID);
+        PlayerInfo playerInfo = DefaultUserGameData.newPlayerInfo();
+        playerInfo.setMoney(money);
+        request.setPlayerInfo(playerInfo);
+        request.setAssistants(DefaultUserGameData.newAssistants());
+        request.setChallenges(DefaultUserGameData.newChallenges());
+        request.setVersion(version);
+        return request;
+    }
+
+    private static UserGameDataPatchRequest moneyPatch(long moneyDelta, Long version) {
+        UserGameDataPatchRequest patch = new UserGameDataPatchRequest();
+        patch.setUserId(USER_ID);
+        patch.setMoneyDelta(moneyDelta);
+        patch.setVersion(version);
+        return patch;
+    }
+
+    /**
+     * 版本号取毫秒时间戳，保证另一个请求写入的版本号与本次不同
+     */
+    private static void sleepPastCurrentMillisecond() {
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
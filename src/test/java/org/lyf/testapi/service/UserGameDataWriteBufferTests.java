@@ -0,0 +1,231 @@
+package org.lyf.testapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lyf.testapi.dto.UserGameDataResponse;
+import org.lyf.testapi.entity.UserGameData;
+import org.lyf.testapi.service.UserGameDataWriteBuffer.PutResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserGameDataWriteBufferTests {
+
+    private static final String USER_ID = "user";
+
+    private InMemoryUserGameDataMapper mapper;
+    private UserGameDataCache cache;
+    private UserGameDataFingerprints fingerprints;
+    private Leaderboard leaderboard;
+    private UserGameDataWriteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        mapper = new InMemoryUserGameDataMapper();
+        mapper.rows.put(USER_ID, data(1L, 100L));
+
+        cache = new UserGameDataCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        fingerprints = new UserGameDataFingerprints();
+        ReflectionTestUtils.setField(fingerprints, "enabled", true);
+        ReflectionTestUtils.setField(fingerprints, "maxSize", 100);
+        leaderboard = new Leaderboard(mapper);
+        ReflectionTestUtils.setField(leaderboard, "enabled", true);
+
+        // 未开启批量写入时 submit 直接调用 mapper
+        buffer = new UserGameDataWriteBuffer(mapper, new UserGameDataBatchWriter(null, null, mapper), cache,
+                new UserGameDataBodyCache(new ObjectMapper()), fingerprints, leaderboard);
+        ReflectionTestUtils.setField(buffer, "maxPending", 100);
+    }
+
+    @Test
+    void repeatedSavesCoalesceIntoOneWrite() {
+        AtomicInteger upserts = new AtomicInteger();
+        mapper.beforeUpsert = upserts::incrementAndGet;
+        assertEquals(PutResult.ACCEPTED, buffer.put(data(2L, 200L), 1L));
+        assertEquals(PutResult.ACCEPTED, buffer.put(data(3L, 300L), 2L));
+        assertEquals(PutResult.ACCEPTED, buffer.put(data(4L, 400L), 3L));
+
+        // 写入数据库前读取到的是最后一次保存的数据
+        assertEquals(400L, buffer.getPending(USER_ID).getMoney());
+        assertEquals(100L, mapper.selectByUserId(USER_ID).getMoney());
+        assertEquals(1, buffer.getStats().getDirty());
+
+        assertEquals(1, buffer.flush());
+        assertEquals(1, upserts.get());
+        assertEquals(4L, mapper.selectVersionByUserId(USER_ID));
+        assertEquals(400L, mapper.selectByUserId(USER_ID).getMoney());
+        assertNull(buffer.getPending(USER_ID));
+        assertEquals(1L, buffer.getStats().getWritten());
+    }
+
+    @Test
+    void failedWriteIsRetriedOnNextFlush() {
+        assertEquals(PutResult.ACCEPTED, buffer.put(data(2L, 200L), 1L));
+        mapper.beforeUpsert = () -> {
+            mapper.beforeUpsert = null;
+            throw new IllegalStateException("database unavailable");
+        };
+
+        assertEquals(0, buffer.flush());
+        assertEquals(200L, buffer.getPending(USER_ID).getMoney());
+        assertEquals(1L, mapper.selectVersionByUserId(USER_ID));
+
+        assertEquals(1, buffer.flush());
+        assertEquals(200L, mapper.selectByUserId(USER_ID).getMoney());
+        assertEquals(0, buffer.getStats().getDirty());
+    }
+
+    @Test
+    void dirtyThresholdAndShutdownFlushPendingWrites() throws Exception {
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "flushIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(buffer, "maxDirty", 2);
+        buffer.init();
+        try {
+            // 待写入条数达到阈值时不等定时刷新，立即在后台写入
+            UserGameData other = data(1L, 50L);
+            other.setUserId("other");
+            assertEquals(PutResult.ACCEPTED, buffer.put(data(2L, 200L), 1L));
+            assertEquals(PutResult.ACCEPTED, buffer.put(other, null));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (buffer.getStats().getDirty() > 0) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+            assertEquals(200L, mapper.selectByUserId(USER_ID).getMoney());
+            assertEquals(50L, mapper.selectByUserId("other").getMoney());
+
+            // 未达到阈值的数据在关闭时写入
+            assertEquals(PutResult.ACCEPTED, buffer.put(data(3L, 300L), 2L));
+        } finally {
+            buffer.shutdown();
+        }
+        assertEquals(300L, mapper.selectByUserId(USER_ID).getMoney());
+        assertEquals(0, buffer.getStats().getDirty());
+    }
+
+    @Test
+    void saveArrivingDuringFlushIsWrittenOnNextFlush() throws Exception {
+        assertEquals(PutResult.ACCEPTED, buffer.put(data(2L, 200L), 1L));
+
+        // 第一份数据写入数据库的过程中，另一个线程基于它的版本号保存
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch saved = new CountDownLatch(1);
+        mapper.beforeUpsert = () -> {
+            mapper.beforeUpsert = null;
+            writing.countDown();
+            await(saved);
+        };
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> flushed = pool.submit(buffer::flush);
+            await(writing);
+            assertEquals(PutResult.ACCEPTED, buffer.put(data(3L, 300L), 2L));
+            saved.countDown();
+            assertEquals(1, flushed.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(2L, mapper.selectVersionByUserId(USER_ID));
+
+        // 下次刷新前合并的保存也基于已写入的版本号
+        assertEquals(PutResult.ACCEPTED, buffer.put(data(4L, 400L), 3L));
+        assertEquals(1, buffer.flush());
+        assertEquals(4L, mapper.selectVersionByUserId(USER_ID));
+        assertEquals(400L, mapper.selectByUserId(USER_ID).getMoney());
+        assertEquals(0, buffer.getStats().getDirty());
+    }
+
+    @Test
+    void staleVersionIsRejectedWhenSaved() {
+        // 缓冲中没有该用户的数据时按数据库中的版本号校验，缓冲中有数据时按缓冲中的版本号校验
+        assertEquals(PutResult.CONFLICT, buffer.put(data(2L, 200L), 0L));
+        assertEquals(PutResult.ACCEPTED, buffer.put(data(2L, 200L), 1L));
+        assertEquals(PutResult.CONFLICT, buffer.put(data(3L, 300L), 1L));
+        assertEquals(200L, buffer.getPending(USER_ID).getMoney());
+
+        // 数据库中没有该用户时与 upsert 一致，可以插入
+        UserGameData other = data(2L, 50L);
+        other.setUserId("other");
+        assertEquals(PutResult.ACCEPTED, buffer.put(other, 1L));
+
+        assertEquals(2, buffer.flush());
+        assertEquals(200L, mapper.selectByUserId(USER_ID).getMoney());
+        assertEquals(50L, mapper.selectByUserId("other").getMoney());
+        assertEquals(0L, buffer.getStats().getConflicts());
+    }
+
+    @Test
+    void fullBufferRejectsNewUsersOnly() {
+        ReflectionTestUtils.setField(buffer, "maxPending", 1);
+        assertEquals(PutResult.ACCEPTED, buffer.put(data(2L, 200L), 1L));
+
+        // 已在缓冲中的用户继续合并，新用户由调用方直接写入数据库
+        assertEquals(PutResult.ACCEPTED, buffer.put(data(3L, 300L), 2L));
+        UserGameData other = data(1L, 50L);
+        other.setUserId("other");
+        assertEquals(PutResult.FULL, buffer.put(other, null));
+        assertNull(buffer.getPending("other"));
+        assertEquals(1, buffer.getStats().getDirty());
+        assertEquals(1L, buffer.getStats().getBypassed());
+    }
+
+    @Test
+    void conflictDiscardsMergedSavesAndEvictsCaches() {
+        assertEquals(PutResult.ACCEPTED, buffer.put(data(2L, 200L), 1L));
+        // 放入后、刷新前其他节点修改了数据库中的数据
+        mapper.rows.put(USER_ID, data(5L, 500L));
+        mapper.beforeUpsert = () -> {
+            mapper.beforeUpsert = null;
+            buffer.put(data(3L, 300L), 2L);
+        };
+        UserGameDataResponse response = new UserGameDataResponse();
+        response.setVersion(3L);
+        cache.put(USER_ID, response);
+        fingerprints.put(USER_ID, 42L, 3L);
+        // 丢弃的数据版本号可能比其他节点写入的新
+        leaderboard.update(USER_ID, 300L, 1, 30L);
+
+        assertEquals(0, buffer.flush());
+        assertEquals(0, buffer.getStats().getDirty());
+        assertEquals(1L, buffer.getStats().getConflicts());
+        assertNull(buffer.getPending(USER_ID));
+        assertEquals(5L, mapper.selectVersionByUserId(USER_ID));
+        assertNull(cache.get(USER_ID));
+        assertNull(fingerprints.get(USER_ID));
+        assertEquals(500L, leaderboard.rankOf(Leaderboard.Type.MONEY, USER_ID).getScore());
+
+        // 客户端下次基于已确认的版本号保存时收到版本冲突
+        assertEquals(PutResult.CONFLICT, buffer.put(data(4L, 400L), 3L));
+    }
+
+    private static UserGameData data(long version, long money) {
+        UserGameData data = new UserGameData();
+        data.setUserId(USER_ID);
+        data.setPlayerLevel(1);
+        data.setMoney(money);
+        data.setVersion(version);
+        return data;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.lyf.testapi.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 使用本地模拟的微信接口测试 WechatApiClient
+ */
+class WechatApiClientTests {
+
+    private HttpServer server;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private volatile long delayMs;
+    /**
+     * 不为空时模拟接口收到请求后等待放行再返回
+     */
+    private volatile CountDownLatch release;
+    private volatile String responseBody = "{\"openid\":\"o123\",\"session_key\":\"sk\"}";
+    private WechatApiClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sns/jscode2session", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        client = new WechatApiClient();
+        ReflectionTestUtils.setField(client, "appid", "wx-test");
+        ReflectionTestUtils.setField(client, "secret", "secret");
+        ReflectionTestUtils.setField(client, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 500);
+        ReflectionTestUtils.setField(client, "readTimeoutMs", 300);
+        ReflectionTestUtils.setField(client, "poolWaitMs", 100);
+        ReflectionTestUtils.setField(client, "maxConnections", 4);
+        ReflectionTestUtils.setField(client, "idleTimeoutMs", 30000L);
+        client.init();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        hits.incrementAndGet();
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        try {
+            Thread.sleep(delayMs);
+            CountDownLatch latch = release;
+            if (latch != null && !latch.await(5, TimeUnit.SECONDS)) {
+                throw new IOException("request was not released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    void parsesResponseAndReusesConnection() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            WechatApiClient.Code2SessionResponse response = client.code2Session("code-" + i);
+            assertFalse(response.isError());
+            assertEquals("o123", response.getOpenid());
+            assertEquals("sk", response.getSessionKey());
+        }
+        assertEquals(5, hits.get());
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    void passesThroughWechatErrors() throws Exception {
+        responseBody = "{\"errcode\":40029,\"errmsg\":\"invalid code\"}";
+        WechatApiClient.Code2SessionResponse response = client.code2Session("bad");
+        assertTrue(response.isError());
+        assertEquals(40029, response.getErrcode());
+    }
+
+    @Test
+    void failsFastWhenUpstreamIsSlow() {
+        delayMs = 2000;
+        long start = System.nanoTime();
+        assertThrows(InterruptedIOException.class, () -> client.code2Session("slow"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+    }
+
+    @Test
+    void coalescesConcurrentRequestsForSameCode() throws Exception {
+        // 接口在所有请求都合并到第一个请求之后才返回，读超时不参与本用例
+        client.shutdown();
+        ReflectionTestUtils.setField(client, "readTimeoutMs", 10_000);
+        client.init();
+        release = new CountDownLatch(1);
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<WechatApiClient.Code2SessionResponse>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> client.code2Session("same-code")));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (client.getStats().getCoalesced() < callers - 1) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<WechatApiClient.Code2SessionResponse> result : results) {
+                assertEquals("o123", result.get(5, TimeUnit.SECONDS).getOpenid());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, hits.get());
+        assertEquals(1, client.getStats().getCalls());
+        assertEquals(callers - 1, client.getStats().getCoalesced());
+    }
+}
@@ -0,0 +1,228 @@
+package org.lyf.testapi.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 使用注入错误和延迟的本地模拟微信接口测试登录熔断与隔离
+ */
+class WechatLoginServiceTests {
+
+    private HttpServer server;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long delayMs;
+    private WechatApiClient client;
+    private WechatLoginService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sns/jscode2session", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        client = new WechatApiClient();
+        ReflectionTestUtils.setField(client, "appid", "wx-test");
+        ReflectionTestUtils.setField(client, "secret", "secret");
+        ReflectionTestUtils.setField(client, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 500);
+        ReflectionTestUtils.setField(client, "readTimeoutMs", 1000);
+        ReflectionTestUtils.setField(client, "poolWaitMs", 100);
+        ReflectionTestUtils.setField(client, "maxConnections", 10);
+        ReflectionTestUtils.setField(client, "idleTimeoutMs", 30000L);
+        client.init();
+
+        service = new WechatLoginService(client, new StubTokenStore());
+        ReflectionTestUtils.setField(service, "expiresIn", 7200);
+        ReflectionTestUtils.setField(service, "breakerWindowSize", 10);
+        ReflectionTestUtils.setField(service, "breakerMinimumCalls", 5);
+        ReflectionTestUtils.setField(service, "breakerFailureRateThreshold", 50);
+        ReflectionTestUtils.setField(service, "breakerSlowCallRateThreshold", 60);
+        ReflectionTestUtils.setField(service, "breakerSlowCallDurationMs", 100L);
+        ReflectionTestUtils.setField(service, "breakerOpenDurationMs", 300L);
+        ReflectionTestUtils.setField(service, "breakerHalfOpenCalls", 2);
+        ReflectionTestUtils.setField(service, "bulkheadThreads", 2);
+        ReflectionTestUtils.setField(service, "bulkheadQueueSize", 1);
+        ReflectionTestUtils.setField(service, "bulkheadTimeoutMs", 2000L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        service.shutdown();
+        client.shutdown();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        hits.incrementAndGet();
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = "{\"openid\":\"o123\",\"session_key\":\"sk\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    void opensOnErrorsThenRecoversThroughHalfOpenProbes() throws Exception {
+        status = 500;
+        for (int i = 0; i < 5; i++) {
+            WechatLoginService.TokenResult result = service.loginByCode("code-" + i);
+            assertFalse(result.getSuccess());
+            assertTrue(result.isUnavailable());
+        }
+        assertEquals("OPEN", service.getUpstreamStats().getCircuitBreaker().getState());
+
+        // 打开状态下直接拒绝，不再访问微信接口
+        int hitsWhenOpened = hits.get();
+        assertTrue(service.loginByCode("rejected").isUnavailable());
+        assertEquals(hitsWhenOpened, hits.get());
+        assertEquals(1, service.getUpstreamStats().getCircuitBreaker().getNotPermitted());
+
+        // 微信接口恢复，等待进入半开状态后探测调用成功即关闭
+        status = 200;
+        Thread.sleep(350);
+        assertTrue(service.loginByCode("probe-1").getSuccess());
+        assertEquals("HALF_OPEN", service.getUpstreamStats().getCircuitBreaker().getState());
+        assertTrue(service.loginByCode("probe-2").getSuccess());
+
+        CircuitBreaker.BreakerStats stats = service.getUpstreamStats().getCircuitBreaker();
+        assertEquals("CLOSED", stats.getState());
+        assertEquals(1L, stats.getTransitions().get("CLOSED->OPEN"));
+        assertEquals(1L, stats.getTransitions().get("OPEN->HALF_OPEN"));
+        assertEquals(1L, stats.getTransitions().get("HALF_OPEN->CLOSED"));
+    }
+
+    @Test
+    void opensOnSlowCallsAndReopensWhenProbeFails() throws Exception {
+        delayMs = 150;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.loginByCode("slow-" + i).getSuccess());
+        }
+        assertEquals("OPEN", service.getUpstreamStats().getCircuitBreaker().getState());
+
+        status = 500;
+        delayMs = 0;
+        Thread.sleep(350);
+        assertTrue(service.loginByCode("probe-1").isUnavailable());
+        assertTrue(service.loginByCode("probe-2").isUnavailable());
+
+        CircuitBreaker.BreakerStats stats = service.getUpstreamStats().getCircuitBreaker();
+        assertEquals("OPEN", stats.getState());
+        assertEquals(1L, stats.getTransitions().get("HALF_OPEN->OPEN"));
+    }
+
+    @Test
+    void asyncLoginCompletesOnBulkheadAndFeedsBreaker() throws Exception {
+        WechatLoginService.TokenResult result = service.loginByCodeAsync("async").get(5, TimeUnit.SECONDS);
+        assertTrue(result.getSuccess());
+        assertEquals("token-o123", result.getToken());
+
+        status = 500;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.loginByCodeAsync("async-" + i).get(5, TimeUnit.SECONDS).isUnavailable());
+        }
+        assertEquals("OPEN", service.getUpstreamStats().getCircuitBreaker().getState());
+        // 熔断中的异步登录立即完成
+        assertTrue(service.loginByCodeAsync("rejected").isDone());
+    }
+
+    @Test
+    void asyncLoginTimesOutLikeSyncLogin() throws Exception {
+        ReflectionTestUtils.setField(service, "bulkheadTimeoutMs", 200L);
+        delayMs = 3000;
+        long start = System.nanoTime();
+        WechatLoginService.TokenResult result = service.loginByCodeAsync("slow").get(5, TimeUnit.SECONDS);
+        assertTrue(result.isUnavailable());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 900);
+        assertEquals(1L, service.getUpstreamStats().getTimeouts());
+    }
+
+    @Test
+    void rejectsWhenBulkheadIsFull() throws Exception {
+        delayMs = 400;
+        // 2个线程 + 1个队列位置，其余请求直接拒绝
+        int callers = 6;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<WechatLoginService.TokenResult>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            String code = "code-" + i;
+            results.add(pool.submit(() -> {
+                ready.await();
+                return service.loginByCode(code);
+            }));
+        }
+        ready.countDown();
+
+        int succeeded = 0;
+        int rejected = 0;
+        for (Future<WechatLoginService.TokenResult> result : results) {
+            WechatLoginService.TokenResult tokenResult = result.get(5, TimeUnit.SECONDS);
+            if (tokenResult.getSuccess()) {
+                succeeded++;
+            } else if (tokenResult.isUnavailable()) {
+                rejected++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(3, succeeded);
+        assertEquals(3, rejected);
+        assertEquals(3, service.getUpstreamStats().getBulkheadRejected());
+        assertEquals(3, hits.get());
+    }
+
+    /**
+     * 固定返回相同token的 TokenStore
+     */
+    private static class StubTokenStore implements TokenStore {
+
+        @Override
+        public String issue(String openid, String sessionKey, int expiresIn) {
+            return "token-" + openid;
+        }
+
+        @Override
+        public String resolve(String token) {
+            return null;
+        }
+
+        @Override
+        public boolean revoke(String token) {
+            return true;
+        }
+
+        @Override
+        public TokenStats getStats() {
+            return null;
+        }
+    }
+}